@@ -1,14 +1,14 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
 
 import org.opencv.core.Core;
 
-import facemapping.DetectedFace;
 import facemapping.FaceDetector;
+import facemapping.FacePipeline;
 import processing.core.PApplet;
 import processing.core.PImage;
 import scene3D.Cube;
 import scene3D.World;
+import scene3Dabstract.RayHit;
 
 
 /**
@@ -48,11 +48,6 @@ public class Main extends PApplet {
 	 */
 	private boolean			debug		= false;
 
-	/**
-	 * Maintains a PImage of the face being detected
-	 */
-	private DetectedFace	detectedFace;
-
 	/**
 	 * Position of the camera
 	 */
@@ -64,6 +59,22 @@ public class Main extends PApplet {
 	 */
 	private FaceDetector	faceDetector;
 
+	/**
+	 * The time of the last frame, in milliseconds since the start
+	 */
+	private int				lastFrameMillis;
+
+	/**
+	 * The cube under the mouse when it was last clicked, or null if the last
+	 * click missed every cube
+	 */
+	private RayHit <Cube>	picked;
+
+	/**
+	 * Runs the face detection in the background
+	 */
+	private FacePipeline	pipeline;
+
 	/**
 	 * Rotation and elevation (yaw and pitch) of the camera.
 	 */
@@ -95,18 +106,41 @@ public class Main extends PApplet {
 			background(150);
 
 			update();
-			final PImage frame = faceDetector.getFrame();
+			final FacePipeline.Snapshot snapshot = pipeline.getSnapshot();
 
 			if (debug)
 				{
-					image(frame, 0, 0, width, height);
-
-					final PImage texture = detectedFace.toPImage();
+					image(snapshot.getFrame(), 0, 0, width, height);
 
 					pushMatrix();
 					translate(0, 0, 1);
 
-					image(texture, 0, 0, (200.0f / texture.height) * texture.width, 200);
+					// Every face followed has its own texture, side by side
+					float x = 0;
+					for (final PImage texture : snapshot.getTextures().isEmpty()
+					        ? Collections.singletonList(snapshot.getTexture()) : snapshot.getTextures())
+						{
+							image(texture, x, 0, (200.0f / texture.height) * texture.width, 200);
+							x += (200.0f / texture.height) * texture.width;
+						}
+
+					fill(255);
+					textAlign(LEFT, TOP);
+					text("Texture generation: " + snapshot.getGeneration() + ", uploads this frame: "
+					        + scene.getTextureUploadCount() + (pipeline.isEndOfStream() ? ", no more frames" : ""),
+					        10, 210);
+					text("Cubes drawn: " + scene.getVisibleCount() + ", culled: " + scene.getCulledCount(), 10, 230);
+					if (picked == null)
+						{
+							text("Picked: no cube", 10, 250);
+						}
+					else
+						{
+							final Cube cube = picked.getObject();
+							text(String.format("Picked: cube at (%.1f, %.1f, %.1f), %.1f units away",
+							        cube.getTranslationX(), cube.getTranslationY(), cube.getTranslationZ(),
+							        picked.getDistance()), 10, 250);
+						}
 					popMatrix();
 				}
 			else
@@ -142,6 +176,7 @@ public class Main extends PApplet {
 	@Override
 	public void exitActual( )
 		{
+			pipeline.stop();
 			faceDetector.releaseCamera();
 			System.exit(0);
 		}
@@ -185,6 +220,17 @@ public class Main extends PApplet {
 		}
 
 
+	/**
+	 * Picks the cube under the mouse when it is clicked, which is shown in
+	 * debug mode
+	 */
+	@Override
+	public void mouseClicked( )
+		{
+			picked = scene.pick(mouseX, mouseY);
+		}
+
+
 	/**
 	 * Detects if the mouse was moved in the Processing application
 	 */
@@ -222,7 +268,18 @@ public class Main extends PApplet {
 	@Override
 	public void setup( )
 		{
-			faceDetector = new FaceDetector();
+			try
+				{
+					faceDetector = new FaceDetector();
+					faceDetector.setTracking(true);
+				}
+			catch (final IllegalStateException e)
+				{
+					System.err.println("Exiting application: " + e.getMessage());
+					System.exit(1);
+				}
+			pipeline = new FacePipeline(faceDetector);
+			pipeline.start();
 
 			surface.setResizable(false);
 
@@ -234,67 +291,26 @@ public class Main extends PApplet {
 			worldY = height / 2;
 
 			worldToPixel = (width / 2) / WORLD_SCALE;
-		}
-
-
-	/**
-	 * Takes the output of a face texture and splits it into three textures for
-	 * each side of a cube accounting for the position of the origin in image
-	 * coordinates.
-	 *
-	 * @param face
-	 *            A detected face
-	 * @return A list of three square textures containing (in order): the left
-	 *         side of the face, the front of the face, and the right side of
-	 *         the face.
-	 */
-	private List <PImage> splitFaceTexture(DetectedFace face)
-		{
-			final List <PImage> textures = new ArrayList <PImage>(3);
-			final PImage faceTexture = face.toPImage();
-			final PImage left = new PImage(300, 300);
-			final PImage front = new PImage(300, 300);
-			final PImage right = new PImage(300, 300);
-
-			for (int i = 0; i < 300; i++)
-				{
-					for (int j = 0; j < 300; j++)
-						{
-							front.set(i, j, faceTexture.get(i + 100, 300 - j));
-
-							if (i < 100)
-								{
-									left.set(i + 200, 300 - j, faceTexture.get(500 - i, j));
-									right.set(i, 300 - j, faceTexture.get(i + 400, j));
-								}
-						}
-				}
-			textures.add(left);
-			textures.add(front);
-			textures.add(right);
 
-			return textures;
+			lastFrameMillis = millis();
 		}
 
 
 	/**
-	 * The main update function of the application
+	 * The main update function of the application. The world is advanced by
+	 * the time since the last frame in fixed simulation steps. The face
+	 * detection runs on the threads of the FacePipeline, so this only picks up
+	 * its latest texture and never waits on the webcam.
 	 */
 	public void update( )
 		{
-			final DetectedFace face = faceDetector.detectFace();
-			if (face != null)
-				{
-					detectedFace = face;
-				}
-
-			scene.update();
-			final List <PImage> textures = splitFaceTexture(face);
-			for (final Cube c : scene.getCollection())
-				{
-					c.setLeftTexture(textures.get(0));
-					c.setFrontTexture(textures.get(1));
-					c.setRightTexture(textures.get(2));
-				}
+			final int now = millis();
+			scene.advance((now - lastFrameMillis) / 1000f);
+			lastFrameMillis = now;
+
+			// The cubes share the face texture, so it is only uploaded to the
+			// GPU when the pipeline publishes a new generation
+			final FacePipeline.Snapshot snapshot = pipeline.getSnapshot();
+			scene.setFaceTexture(snapshot.getTexture(), snapshot.getGeneration());
 		}
 }
@@ -0,0 +1,137 @@
+package benchmark;
+
+
+import java.util.Iterator;
+
+import processing.core.PApplet;
+import scene3D.BroadPhase;
+import scene3D.BruteForceBroadPhase;
+import scene3D.Cube;
+import scene3D.SweepAndPruneBroadPhase;
+import scene3D.UniformGridBroadPhase;
+import scene3D.World;
+
+
+/**
+ * Measures how the update of the world scales with the number of cubes for
+ * each broad phase, serially and in parallel, and checks that all of them find
+ * the same collisions.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class CollisionBenchmark {
+
+	/**
+	 * The size of the cells of the uniform grid, about the size of the
+	 * largest cubes
+	 */
+	private static final float	CELL_SIZE			= 60;
+
+	/**
+	 * The numbers of cubes to benchmark
+	 */
+	private static final int[ ]	CUBE_COUNTS			= { 10, 100, 1000, 5000 };
+
+	/**
+	 * The number of timed updates
+	 */
+	private static final int	FRAMES				= 50;
+
+	/**
+	 * The parallel threshold of the world when the passes are split between
+	 * threads
+	 */
+	private static final int	PARALLEL_THRESHOLD	= 256;
+
+	/**
+	 * The seed of the random placement of the cubes, so that every broad phase
+	 * gets the same world
+	 */
+	private static final long	SEED				= 42;
+
+	/**
+	 * The number of updates run before timing
+	 */
+	private static final int	WARMUP_FRAMES		= 10;
+
+
+	/**
+	 * Checks that two worlds colored the same cubes as colliding.
+	 *
+	 * @param expected
+	 *            The reference world
+	 * @param actual
+	 *            The world to check
+	 * @return True if every cube has the same color in both worlds.
+	 */
+	private static boolean haveSameCollisions(World expected, World actual)
+		{
+			final Iterator <Cube> e = expected.getCollection().iterator();
+			final Iterator <Cube> a = actual.getCollection().iterator();
+			while (e.hasNext() && a.hasNext())
+				{
+					if (e.next().getColor() != a.next().getColor()) { return false; }
+				}
+			return !e.hasNext() && !a.hasNext();
+		}
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			final String[ ] names = { "Brute force", "Sweep and prune", "Uniform grid", "Parallel sweep" };
+			final int[ ] thresholds = { 0, 0, 0, PARALLEL_THRESHOLD };
+
+			for (final int count : CUBE_COUNTS)
+				{
+					final BroadPhase[ ] broadPhases = { new BruteForceBroadPhase(), new SweepAndPruneBroadPhase(),
+					        new UniformGridBroadPhase(CELL_SIZE), new SweepAndPruneBroadPhase() };
+					World reference = null;
+
+					for (int p = 0; p < broadPhases.length; p++)
+						{
+							applet.randomSeed(SEED);
+							final World world = new World(applet, count);
+							world.setBroadPhase(broadPhases[p]);
+							world.setParallelThreshold(thresholds[p]);
+
+							for (int i = 0; i < WARMUP_FRAMES; i++)
+								{
+									world.update();
+								}
+
+							final long start = System.nanoTime();
+							long tests = 0;
+							for (int i = 0; i < FRAMES; i++)
+								{
+									world.update();
+									tests += world.getNarrowPhaseTestCount();
+								}
+							final double time = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+							if (reference == null)
+								{
+									reference = world;
+								}
+							else
+								if (!haveSameCollisions(reference, world))
+									{
+										System.err.println(names[p] + " found different collisions with " + count
+										        + " cubes");
+										System.exit(1);
+									}
+
+							System.out.printf("%5d cubes, %-16s: %8.3f ms/update, %8d exact tests/update%n", count,
+							        names[p], time, tests / FRAMES);
+						}
+				}
+		}
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+
+import processing.core.PApplet;
+import scene3D.ContactManager;
+import scene3D.Cube;
+import scene3D.World;
+
+
+/**
+ * Compares the number of full separating axis tests run for each update with
+ * and without testing the axis cached during the previous update first, and
+ * checks that both find the same contacts on every update.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class ContactBenchmark {
+
+	/**
+	 * The numbers of cubes to benchmark
+	 */
+	private static final int[ ]	CUBE_COUNTS	= { 100, 500, 1000 };
+
+	/**
+	 * The number of timed updates
+	 */
+	private static final int	FRAMES		= 200;
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			final int[ ] events = new int[3];
+			final ContactManager.ContactListener counter = new ContactManager.ContactListener() {
+
+				@Override
+				public void contactBegan(Cube first, Cube second)
+					{
+						events[0]++;
+					}
+
+
+				@Override
+				public void contactEnded(Cube first, Cube second)
+					{
+						events[2]++;
+					}
+
+
+				@Override
+				public void contactPersisted(Cube first, Cube second)
+					{
+						events[1]++;
+					}
+			};
+
+			for (final int count : CUBE_COUNTS)
+				{
+					final int[ ] expected = new int[FRAMES];
+					for (int pass = 0; pass < 2; pass++)
+						{
+							applet.randomSeed(42);
+							final World world = new World(applet, count);
+							final ContactManager contacts = world.getContactManager();
+							contacts.setWarmStarting(pass == 1);
+							contacts.setContactListener(counter);
+							events[0] = events[1] = events[2] = 0;
+
+							long pairs = 0, full = 0, warm = 0, touching = 0;
+							final long start = System.nanoTime();
+							for (int i = 0; i < FRAMES; i++)
+								{
+									world.update();
+									pairs += world.getNarrowPhaseTestCount();
+									full += contacts.getFullTestCount();
+									warm += contacts.getWarmStartedCount();
+									touching += contacts.getContactCount();
+									if (pass == 0)
+										{
+											expected[i] = contacts.getContactCount();
+										}
+									else
+										if (contacts.getContactCount() != expected[i])
+											{
+												System.err.println("The cached axes found different contacts on update " + i);
+												System.exit(1);
+											}
+								}
+							final double time = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+							System.out.printf(
+							        "%d cubes, %-8s %.3f ms/update, %d pairs, %d full SAT tests, %d warm started, "
+							                + "%d contacts per update; %d began, %d stayed, %d ended%n",
+							        count, pass == 1 ? "cached" : "uncached", time, pairs / FRAMES, full / FRAMES,
+							        warm / FRAMES, touching / FRAMES, events[0], events[1], events[2]);
+						}
+				}
+		}
+}
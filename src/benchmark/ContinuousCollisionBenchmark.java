@@ -0,0 +1,147 @@
+package benchmark;
+
+
+import java.util.Iterator;
+
+import processing.core.PApplet;
+import scene3D.Cube;
+import scene3D.World;
+
+
+/**
+ * Shows two cubes passing through each other without being detected when
+ * they are only tested at their poses, and measures what sweeping the cubes
+ * along their velocities costs for worlds of many cubes.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class ContinuousCollisionBenchmark {
+
+	/**
+	 * The numbers of cubes to time
+	 */
+	private static final int[ ]		CUBE_COUNTS	= { 1000, 5000 };
+
+	/**
+	 * The number of timed updates
+	 */
+	private static final int		FRAMES		= 50;
+
+	/**
+	 * The speeds at which the two cubes are thrown at each other, in units per
+	 * step
+	 */
+	private static final float[ ]	SPEEDS		= { 5, 10, 20, 40, 80 };
+
+
+	/**
+	 * Throws two cubes at each other so that they pass through each other
+	 * halfway through a step, and checks if they were found to collide.
+	 *
+	 * @param applet
+	 *            The applet the world is created with
+	 * @param speed
+	 *            The speed of each cube, in units per step
+	 * @param continuous
+	 *            Whether the world uses continuous collision detection
+	 * @return True if the cubes were found to collide.
+	 */
+	private static boolean collide(PApplet applet, float speed, boolean continuous)
+		{
+			applet.randomSeed(42);
+			final World world = new World(applet, 2);
+			world.setContinuousCollisionDetection(continuous);
+
+			// Starting at an odd number of half steps from each other, the
+			// cubes are never at the same place at the end of a step
+			final int steps = Math.max(1, (int)(100 / speed));
+			final float start = speed * (steps + 0.5f);
+
+			final Iterator <Cube> cubes = world.getCollection().iterator();
+			final Cube left = cubes.next(), right = cubes.next();
+			place(left, -start, speed);
+			place(right, start, -speed);
+
+			world.update();
+			final int apart = left.getColor();
+			boolean collided = false;
+			for (int i = 0; i < (steps + 2); i++)
+				{
+					world.update();
+					collided |= left.getColor() != apart;
+				}
+			return collided;
+		}
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+
+			System.out.println("Two cubes thrown at each other, found to collide");
+			for (final float speed : SPEEDS)
+				{
+					System.out.printf("%3.0f units/step: at poses %-5s continuous %s%n", speed,
+					        collide(applet, speed, false), collide(applet, speed, true));
+				}
+
+			for (final int count : CUBE_COUNTS)
+				{
+					for (int pass = 0; pass < 2; pass++)
+						{
+							applet.randomSeed(42);
+							final World world = new World(applet, count);
+							world.setContinuousCollisionDetection(pass == 1);
+							world.update();
+
+							long tests = 0, swept = 0;
+							final long start = System.nanoTime();
+							for (int i = 0; i < FRAMES; i++)
+								{
+									world.update();
+									tests += world.getNarrowPhaseTestCount();
+									swept += world.getSweptHitCount();
+								}
+							final double time = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+							System.out.printf("%d cubes, %-10s %.3f ms/update, %d tests/update, %d swept hits/update%n",
+							        count, pass == 1 ? "continuous" : "at poses", time, tests / FRAMES, swept / FRAMES);
+						}
+				}
+		}
+
+
+	/**
+	 * Moves a cube onto the x axis and sends it along it without rotating.
+	 *
+	 * @param cube
+	 *            The cube to move
+	 * @param x
+	 *            The x coordinate of the cube
+	 * @param speed
+	 *            The velocity along the x axis, in units per step
+	 */
+	private static void place(Cube cube, float x, float speed)
+		{
+			cube.setTranslationX(x);
+			cube.setTranslationY(0);
+			cube.setTranslationZ(0);
+			cube.setRotationX(0);
+			cube.setRotationY(0);
+			cube.setRotationZ(0);
+			cube.setXTranslationalVelocity(speed);
+			cube.setYTranslationalVelocity(0);
+			cube.setZTranslationalVelocity(0);
+			cube.setXRotationalVelocity(0);
+			cube.setYRotationalVelocity(0);
+			cube.setZRotationalVelocity(0);
+		}
+}
@@ -0,0 +1,109 @@
+package benchmark;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import facemapping.FaceDetector;
+import facemapping.FrameSource;
+import facemapping.ImageDirectorySource;
+
+
+/**
+ * Compares the time taken to search the test images for faces when the
+ * cascades are run at full resolution and over downscaled frames, along with
+ * the number of images and faces found at each scale. Run it from the root of
+ * the project with the OpenCV native library on the library path.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class DetectionBenchmark {
+
+	/**
+	 * The number of timed passes over the images
+	 */
+	private static final int		ITERATIONS	= 5;
+
+	/**
+	 * The detection scales to benchmark
+	 */
+	private static final float[ ]	SCALES		= { 1, 0.75f, 0.5f, 0.25f };
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            The directory of the images, which defaults to Test Images
+	 */
+	public static void main(String _args[])
+		{
+			System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+			final ImageDirectorySource source = new ImageDirectorySource(
+			        new File(_args.length > 0 ? _args[0] : "Test Images"), false);
+			final List <Mat> images = new ArrayList <Mat>();
+			Mat image = new Mat();
+			while (source.read(image))
+				{
+					images.add(image);
+					image = new Mat();
+				}
+			source.release();
+			if (images.isEmpty())
+				{
+					System.err.println("No image could be read");
+					System.exit(1);
+				}
+
+			final Mat work = new Mat();
+			int[ ] expected = null;
+			for (final float scale : SCALES)
+				{
+					final FaceDetector detector = new FaceDetector(FrameSource.NO_FRAMES);
+					detector.setDetectionScale(scale);
+					final int[ ] found = new int[images.size()];
+
+					// The first pass warms up the detector and counts the faces
+					long time = 0;
+					for (int pass = 0; pass <= ITERATIONS; pass++)
+						{
+							for (int i = 0; i < images.size(); i++)
+								{
+									// The detector outlines the faces on the image
+									images.get(i).copyTo(work);
+									final long start = System.nanoTime();
+									found[i] = detector.findFaces(work).size();
+									if (pass > 0)
+										{
+											time += System.nanoTime() - start;
+										}
+								}
+						}
+					detector.releaseCamera();
+
+					if (expected == null)
+						{
+							expected = found;
+						}
+					int hits = 0, faces = 0, agreeing = 0;
+					for (int i = 0; i < found.length; i++)
+						{
+							hits += found[i] > 0 ? 1 : 0;
+							faces += found[i];
+							agreeing += found[i] == expected[i] ? 1 : 0;
+						}
+
+					System.out.printf(
+					        "Scale %.2f: %.2f ms/image, faces found in %d of %d images (%d faces), "
+					                + "%d images agree with full resolution%n",
+					        scale, time / (ITERATIONS * images.size() * 1e6), hits, images.size(), faces, agreeing);
+				}
+		}
+}
@@ -0,0 +1,210 @@
+package benchmark;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PApplet;
+import scene3D.BodyStore;
+import scene3D.Cube;
+import scene3Dabstract.BoundingVolumeHierarchy;
+
+
+/**
+ * Compares searching many cubes for a point, a box or a ray by testing every
+ * one of them with searching them through a bounding volume hierarchy, and
+ * checks that both find the same cubes. The cubes are spread out so that
+ * their density is the same for every count. The largest count needs a heap
+ * of a few gigabytes.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class HierarchyBenchmark {
+
+	/**
+	 * The numbers of cubes to benchmark
+	 */
+	private static final int[ ]	CUBE_COUNTS	= { 1000, 10000, 100000, 1000000 };
+
+	/**
+	 * The size of the box searched by the box queries
+	 */
+	private static final float	QUERY_SIZE	= 100;
+
+	/**
+	 * The number of queries of each kind
+	 */
+	private static final int	QUERIES		= 1000;
+
+	/**
+	 * The size of the space taken by a thousand cubes
+	 */
+	private static final float	SPACING		= 400;
+
+
+	/**
+	 * Counts the cubes whose bounds overlap a box by testing all of them.
+	 *
+	 * @param bounds
+	 *            The bounds of the cubes
+	 * @param count
+	 *            The number of cubes
+	 * @param box
+	 *            The minimum and maximum coordinates of the box
+	 * @return The number of cubes found.
+	 */
+	private static int countOverlaps(float[ ] bounds, int count, float[ ] box)
+		{
+			int found = 0;
+			for (int i = 0, b = 0; i < count; i++, b += 6)
+				{
+					if ((bounds[b] <= box[3]) && (bounds[b + 3] >= box[0]) && (bounds[b + 1] <= box[4])
+					        && (bounds[b + 4] >= box[1]) && (bounds[b + 2] <= box[5]) && (bounds[b + 5] >= box[2]))
+						{
+							found++;
+						}
+				}
+			return found;
+		}
+
+
+	/**
+	 * Counts the cubes whose bounds are crossed by a ray by testing all of
+	 * them.
+	 *
+	 * @param bounds
+	 *            The bounds of the cubes
+	 * @param count
+	 *            The number of cubes
+	 * @param ray
+	 *            The origin and direction of the ray, whose length is 1
+	 * @return The number of cubes found.
+	 */
+	private static int countRayHits(float[ ] bounds, int count, float[ ] ray)
+		{
+			int found = 0;
+			for (int i = 0, b = 0; i < count; i++, b += 6)
+				{
+					float near = 0, far = 1;
+					for (int k = 0; k < 3; k++)
+						{
+							final float t1 = (bounds[b + k] - ray[k]) / ray[k + 3];
+							final float t2 = (bounds[b + k + 3] - ray[k]) / ray[k + 3];
+							near = Math.max(near, Math.min(t1, t2));
+							far = Math.min(far, Math.max(t1, t2));
+						}
+					if (near <= far)
+						{
+							found++;
+						}
+				}
+			return found;
+		}
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			final int[ ] found = new int[1];
+			final BoundingVolumeHierarchy.Visitor <Cube> counter = new BoundingVolumeHierarchy.Visitor <Cube>() {
+
+				@Override
+				public boolean visit(int index, Cube cube)
+					{
+						found[0]++;
+						return true;
+					}
+			};
+
+			System.out.println("cubes\tbuild\trefit\tpoint (linear / tree)\tbox (linear / tree)\tray (linear / tree)");
+			for (final int count : CUBE_COUNTS)
+				{
+					applet.randomSeed(42);
+					final float extent = (SPACING * (float)Math.cbrt(count / 1000.0)) / 2;
+					final BodyStore store = new BodyStore(count);
+					final List <Cube> cubes = new ArrayList <Cube>(count);
+					for (int i = 0; i < count; i++)
+						{
+							cubes.add(new Cube(store, applet.random(-extent, extent), applet.random(-extent, extent),
+							        applet.random(-extent, extent), applet.random(20, 60), applet));
+						}
+
+					final BoundingVolumeHierarchy <Cube> tree = new BoundingVolumeHierarchy <Cube>();
+					long start = System.nanoTime();
+					tree.build(cubes);
+					final double build = (System.nanoTime() - start) / 1e6;
+
+					store.integrate();
+					start = System.nanoTime();
+					tree.refit();
+					final double refit = (System.nanoTime() - start) / 1e6;
+
+					final float[ ] bounds = new float[count * 6];
+					for (int i = 0; i < count; i++)
+						{
+							cubes.get(i).getWorldBounds(bounds, i * 6);
+						}
+
+					final float[ ][ ] points = new float[QUERIES][6];
+					final float[ ][ ] boxes = new float[QUERIES][6];
+					final float[ ][ ] rays = new float[QUERIES][6];
+					for (int q = 0; q < QUERIES; q++)
+						{
+							for (int k = 0; k < 3; k++)
+								{
+									points[q][k] = points[q][k + 3] = applet.random(-extent, extent);
+									boxes[q][k] = applet.random(-extent, extent);
+									boxes[q][k + 3] = boxes[q][k] + QUERY_SIZE;
+									rays[q][k] = applet.random(-extent, extent);
+									rays[q][k + 3] = applet.random(-extent, extent) - rays[q][k];
+								}
+						}
+
+					final float[ ][ ][ ] queries = { points, boxes, rays };
+					final double[ ] linear = new double[3], searched = new double[3];
+					for (int kind = 0; kind < 3; kind++)
+						{
+							int expected = 0;
+							start = System.nanoTime();
+							for (final float[ ] query : queries[kind])
+								{
+									expected += kind == 2 ? countRayHits(bounds, count, query)
+									        : countOverlaps(bounds, count, query);
+								}
+							linear[kind] = (System.nanoTime() - start) / (QUERIES * 1e3);
+
+							found[0] = 0;
+							start = System.nanoTime();
+							for (final float[ ] q : queries[kind])
+								{
+									if (kind == 2)
+										{
+											tree.raycast(q[0], q[1], q[2], q[3], q[4], q[5], 1, counter);
+										}
+									else
+										{
+											tree.queryBox(q[0], q[1], q[2], q[3], q[4], q[5], counter);
+										}
+								}
+							searched[kind] = (System.nanoTime() - start) / (QUERIES * 1e3);
+
+							if (found[0] != expected)
+								{
+									System.err.println("The hierarchy found " + found[0] + " cubes instead of " + expected);
+									System.exit(1);
+								}
+						}
+
+					System.out.printf("%d\t%.1f ms\t%.1f ms\t%.1f / %.2f us\t\t%.1f / %.2f us\t\t%.1f / %.2f us%n", count,
+					        build, refit, linear[0], searched[0], linear[1], searched[1], linear[2], searched[2]);
+				}
+		}
+}
@@ -0,0 +1,223 @@
+package benchmark;
+
+
+import java.util.List;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+import scene3D.Cube;
+
+
+/**
+ * Compares the original separating axis test on lists of PVectors with the
+ * test on the oriented bounding boxes of the cubes, and counts the pairs on
+ * which they disagree, which should only be pairs that are just touching.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class IntersectionBenchmark {
+
+	/**
+	 * The number of cubes, every pair of which is tested
+	 */
+	private static final int	CUBES	= 200;
+
+	/**
+	 * The number of timed passes over all of the pairs
+	 */
+	private static final int	PASSES	= 20;
+
+	/**
+	 * The number of passes run before timing
+	 */
+	private static final int	WARMUP	= 5;
+
+
+	/**
+	 * The original check of whether two cubes are disjoint along an axis.
+	 *
+	 * @param myVertices
+	 *            A list of vertices of the first cube
+	 * @param otherVertices
+	 *            A list of vertices of the second cube
+	 * @param axis
+	 *            The axis to project on
+	 * @return True if the total span is greater than the total length
+	 */
+	private static boolean disjointAlongAxis(List <PVector> myVertices, List <PVector> otherVertices, PVector axis)
+		{
+			if ((axis.x == 0) && (axis.y == 0) && (axis.z == 0)) { return false; }
+
+			float myMax = Float.NEGATIVE_INFINITY, myMin = Float.POSITIVE_INFINITY;
+			float cubeMax = Float.NEGATIVE_INFINITY, cubeMin = Float.POSITIVE_INFINITY;
+
+			for (final PVector corner : myVertices)
+				{
+					final float dist = corner.dot(axis) / axis.mag();
+					myMax = Math.max(myMax, dist);
+					myMin = Math.min(myMin, dist);
+				}
+
+			for (final PVector corner : otherVertices)
+				{
+					final float dist = corner.dot(axis) / axis.mag();
+					cubeMax = Math.max(cubeMax, dist);
+					cubeMin = Math.min(cubeMin, dist);
+				}
+
+			final float totalLength = (myMax - myMin) + (cubeMax - cubeMin);
+			final float totalSpan = Math.max(myMax, cubeMax) - Math.min(myMin, cubeMin);
+			return totalSpan > totalLength;
+		}
+
+
+	/**
+	 * The original intersection test, which builds the vertices and normals of
+	 * both cubes as lists of PVectors.
+	 *
+	 * @param first
+	 *            The first cube
+	 * @param second
+	 *            The second cube
+	 * @return True if the cubes intersect.
+	 */
+	private static boolean intersectsByVertices(Cube first, Cube second)
+		{
+			final List <PVector> myVertices = first.getVertices();
+			final List <PVector> cubeVertices = second.getVertices();
+			final List <PVector> normalVecs = first.getNormalVectors();
+
+			for (final PVector normal : normalVecs)
+				{
+					if (disjointAlongAxis(myVertices, cubeVertices, normal)) { return false; }
+				}
+
+			final List <PVector> cubeNormals = second.getNormalVectors();
+
+			for (final PVector normal : cubeNormals)
+				{
+					if (disjointAlongAxis(myVertices, cubeVertices, normal)) { return false; }
+				}
+
+			for (final PVector myNormal : normalVecs)
+				{
+					for (final PVector normal : cubeNormals)
+						{
+							if (disjointAlongAxis(myVertices, cubeVertices, myNormal.cross(normal))) { return false; }
+						}
+				}
+
+			return true;
+		}
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			applet.randomSeed(42);
+
+			final Cube[ ] cubes = new Cube[CUBES];
+			for (int i = 0; i < CUBES; i++)
+				{
+					cubes[i] = new Cube(applet.random(-150, 150), applet.random(-150, 150), applet.random(-150, 150),
+					        applet.random(20, 60), applet);
+					cubes[i].setRotationX(applet.random(PApplet.TWO_PI));
+					cubes[i].setRotationY(applet.random(PApplet.TWO_PI));
+					cubes[i].setRotationZ(applet.random(PApplet.TWO_PI));
+				}
+
+			for (int p = 0; p < WARMUP; p++)
+				{
+					runVertices(cubes);
+					runOriented(cubes);
+				}
+
+			long start = System.nanoTime();
+			int hits = 0;
+			for (int p = 0; p < PASSES; p++)
+				{
+					hits = runVertices(cubes);
+				}
+			final double vertices = (System.nanoTime() - start) / (double)PASSES;
+
+			start = System.nanoTime();
+			for (int p = 0; p < PASSES; p++)
+				{
+					runOriented(cubes);
+				}
+			final double oriented = (System.nanoTime() - start) / (double)PASSES;
+
+			int disagreements = 0;
+			for (int i = 0; i < CUBES; i++)
+				{
+					for (int j = i + 1; j < CUBES; j++)
+						{
+							if (intersectsByVertices(cubes[i], cubes[j]) != cubes[i].intersects(cubes[j]))
+								{
+									disagreements++;
+								}
+						}
+				}
+
+			final int pairs = (CUBES * (CUBES - 1)) / 2;
+			System.out.printf("PVector lists:           %.1f ns/test%n", vertices / pairs);
+			System.out.printf("Oriented bounding boxes: %.1f ns/test%n", oriented / pairs);
+			System.out.printf("%d of %d pairs intersect, %d disagreements%n", hits, pairs, disagreements);
+		}
+
+
+	/**
+	 * Tests every pair of cubes with the oriented bounding boxes.
+	 *
+	 * @param cubes
+	 *            The cubes to test
+	 * @return The number of intersecting pairs.
+	 */
+	private static int runOriented(Cube[ ] cubes)
+		{
+			int hits = 0;
+			for (int i = 0; i < cubes.length; i++)
+				{
+					for (int j = i + 1; j < cubes.length; j++)
+						{
+							if (cubes[i].intersects(cubes[j]))
+								{
+									hits++;
+								}
+						}
+				}
+			return hits;
+		}
+
+
+	/**
+	 * Tests every pair of cubes with the original test.
+	 *
+	 * @param cubes
+	 *            The cubes to test
+	 * @return The number of intersecting pairs.
+	 */
+	private static int runVertices(Cube[ ] cubes)
+		{
+			int hits = 0;
+			for (int i = 0; i < cubes.length; i++)
+				{
+					for (int j = i + 1; j < cubes.length; j++)
+						{
+							if (intersectsByVertices(cubes[i], cubes[j]))
+								{
+									hits++;
+								}
+						}
+				}
+			return hits;
+		}
+}
@@ -0,0 +1,115 @@
+package benchmark;
+
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import facemapping.MatConverter;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+
+/**
+ * Compares the per-pixel conversion of an OpenCV matrix to a PImage with the
+ * bulk conversion of MatConverter, using a matrix the size of the face
+ * texture. Run it with the OpenCV native library on the library path.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class MatConversionBenchmark {
+
+	/**
+	 * The number of timed conversions
+	 */
+	private static final int	ITERATIONS	= 200;
+
+	/**
+	 * The number of conversions run before timing
+	 */
+	private static final int	WARMUP		= 50;
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+			final Mat m = new Mat(300, 500, CvType.CV_8UC3);
+			final byte[ ] bytes = new byte[300 * 500 * 3];
+			for (int i = 0; i < bytes.length; i++)
+				{
+					bytes[i] = (byte)((i * 31) ^ (i >> 7));
+				}
+			m.put(0, 0, bytes);
+
+			final MatConverter converter = new MatConverter();
+			final PImage target = new PImage(m.width(), m.height(), PConstants.ARGB);
+
+			for (int i = 0; i < WARMUP; i++)
+				{
+					perPixelToPImage(m);
+					converter.toPImage(m, target);
+				}
+
+			long start = System.nanoTime();
+			PImage reference = null;
+			for (int i = 0; i < ITERATIONS; i++)
+				{
+					reference = perPixelToPImage(m);
+				}
+			final double perPixel = (System.nanoTime() - start) / (ITERATIONS * 1e6);
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+				{
+					converter.toPImage(m, target);
+				}
+			final double bulk = (System.nanoTime() - start) / (ITERATIONS * 1e6);
+
+			for (int i = 0; i < target.pixels.length; i++)
+				{
+					if (target.pixels[i] != reference.pixels[i])
+						{
+							System.err.println("The conversions differ at pixel " + i);
+							System.exit(1);
+						}
+				}
+
+			System.out.printf("Per-pixel Mat.get: %.3f ms/conversion%n", perPixel);
+			System.out.printf("Bulk MatConverter: %.3f ms/conversion%n", bulk);
+			System.out.printf("Speedup: %.1fx%n", perPixel / bulk);
+		}
+
+
+	/**
+	 * The original conversion, which reads the matrix one pixel at a time.
+	 *
+	 * @param m
+	 *            A matrix of BGR pixels.
+	 * @return A PImage of ARGB pixels with the same dimensions.
+	 */
+	private static PImage perPixelToPImage(Mat m)
+		{
+			final int width = m.width(), height = m.height();
+			final PImage result = new PImage(width, height, PConstants.ARGB);
+			for (int i = 0; i < height; i++)
+				{
+					for (int j = 0; j < width; j++)
+						{
+							final double[ ] colorValues = m.get(i, j);
+							final int r = (int)(colorValues[2]), g = (int)(colorValues[1]), b = (int)(colorValues[0]);
+							final int color = (0xFF << 24) | (r << 16) | (g << 8) | b;
+							result.set(j, i, color);
+						}
+				}
+			return result;
+		}
+}
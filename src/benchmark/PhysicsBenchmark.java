@@ -0,0 +1,117 @@
+package benchmark;
+
+
+import processing.core.PApplet;
+import scene3D.BodyStore;
+import scene3D.BoundingBox3D;
+import scene3D.Cube;
+
+
+/**
+ * Compares moving many cubes one object at a time, each with its own body
+ * store, with moving them all in a single pass over a shared body store, and
+ * checks that both end up in the same place.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class PhysicsBenchmark {
+
+	/**
+	 * The number of bodies
+	 */
+	private static final int	BODIES	= 100000;
+
+	/**
+	 * The size of the box the bodies are kept in
+	 */
+	private static final float	BOUNDS	= 400;
+
+	/**
+	 * The number of timed frames
+	 */
+	private static final int	FRAMES	= 100;
+
+	/**
+	 * The number of frames run before timing
+	 */
+	private static final int	WARMUP	= 20;
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			final BodyStore store = new BodyStore(BODIES);
+			final Cube[ ] shared = new Cube[BODIES];
+			final Cube[ ] separate = new Cube[BODIES];
+			final BoundingBox3D bounds = new BoundingBox3D(-BOUNDS / 2, -BOUNDS / 2, -BOUNDS / 2, BOUNDS, BOUNDS, BOUNDS);
+
+			applet.randomSeed(42);
+			for (int i = 0; i < BODIES; i++)
+				{
+					shared[i] = new Cube(store, applet.random(-150, 150), applet.random(-150, 150),
+					        applet.random(-150, 150), applet.random(20, 60), applet);
+				}
+			applet.randomSeed(42);
+			for (int i = 0; i < BODIES; i++)
+				{
+					separate[i] = new Cube(applet.random(-150, 150), applet.random(-150, 150), applet.random(-150, 150),
+					        applet.random(20, 60), applet);
+				}
+
+			for (int f = 0; f < WARMUP; f++)
+				{
+					store.integrate();
+					for (final Cube cube : separate)
+						{
+							cube.update();
+						}
+				}
+
+			long start = System.nanoTime();
+			for (int f = 0; f < FRAMES; f++)
+				{
+					for (final Cube cube : separate)
+						{
+							cube.update();
+						}
+				}
+			final double perObject = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+			start = System.nanoTime();
+			for (int f = 0; f < FRAMES; f++)
+				{
+					store.integrate();
+				}
+			final double perStore = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+			for (int i = 0; i < BODIES; i++)
+				{
+					if ((shared[i].getTranslationX() != separate[i].getTranslationX())
+					        || (shared[i].getRotationZ() != separate[i].getRotationZ()))
+						{
+							System.err.println("The cubes differ at " + i);
+							System.exit(1);
+						}
+				}
+
+			start = System.nanoTime();
+			for (int f = 0; f < FRAMES; f++)
+				{
+					store.clampTo(bounds);
+				}
+			final double clamp = (System.nanoTime() - start) / (FRAMES * 1e6);
+
+			System.out.printf("%d bodies%n", BODIES);
+			System.out.printf("One cube at a time:  %.3f ms/frame%n", perObject);
+			System.out.printf("Shared body store:   %.3f ms/frame%n", perStore);
+			System.out.printf("Clamping the store:  %.3f ms/frame%n", clamp);
+		}
+}
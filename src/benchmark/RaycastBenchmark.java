@@ -0,0 +1,98 @@
+package benchmark;
+
+
+import processing.core.PApplet;
+import scene3D.Cube;
+import scene3D.World;
+import scene3Dabstract.RayHit;
+
+
+/**
+ * Measures the time taken to find the nearest cube hit by a ray, by testing
+ * every cube and through the hierarchy of the world, and checks that both
+ * find a cube at the same distance.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class RaycastBenchmark {
+
+	/**
+	 * The numbers of cubes to benchmark
+	 */
+	private static final int[ ]	CUBE_COUNTS	= { 100, 1000, 5000, 20000 };
+
+	/**
+	 * The number of timed rays
+	 */
+	private static final int	RAYS		= 2000;
+
+	/**
+	 * The seed of the random placement of the cubes and rays
+	 */
+	private static final long	SEED		= 42;
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PApplet applet = new PApplet();
+			for (final int count : CUBE_COUNTS)
+				{
+					applet.randomSeed(SEED);
+					final World world = new World(applet, count);
+					world.update();
+
+					// Rays from in front of the bounding cube towards its back
+					final float[ ][ ] rays = new float[RAYS][6];
+					for (final float[ ] ray : rays)
+						{
+							ray[0] = applet.random(-200, 200);
+							ray[1] = applet.random(-200, 200);
+							ray[2] = -400;
+							final float dx = applet.random(-0.3f, 0.3f), dy = applet.random(-0.3f, 0.3f);
+							final float length = (float)Math.sqrt((dx * dx) + (dy * dy) + 1);
+							ray[3] = dx / length;
+							ray[4] = dy / length;
+							ray[5] = 1 / length;
+						}
+
+					final float[ ] expected = new float[RAYS];
+					final double[ ] time = new double[2];
+					for (int pass = 0; pass < 2; pass++)
+						{
+							world.setHierarchyEnabled(pass == 1);
+							world.getHierarchy();
+
+							final long start = System.nanoTime();
+							for (int r = 0; r < RAYS; r++)
+								{
+									final float[ ] ray = rays[r];
+									final RayHit <Cube> hit = world.raycast(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5],
+									        Float.POSITIVE_INFINITY);
+									final float distance = hit == null ? -1 : hit.getDistance();
+									if (pass == 0)
+										{
+											expected[r] = distance;
+										}
+									else
+										if (distance != expected[r])
+											{
+												System.err.println("The hierarchy found a different hit for ray " + r);
+												System.exit(1);
+											}
+								}
+							time[pass] = (System.nanoTime() - start) / (RAYS * 1e3);
+						}
+
+					System.out.printf("%d cubes: every cube %.1f us/ray, hierarchy %.1f us/ray%n", count, time[0],
+					        time[1]);
+				}
+		}
+}
@@ -0,0 +1,139 @@
+package benchmark;
+
+
+import processing.core.PApplet;
+import scene3D.World;
+
+
+/**
+ * Compares the frame time of drawing the cubes of the world one at a time in
+ * immediate mode with drawing them in a batch with retained shapes. It opens
+ * a window, draws both ways for a while, prints the results and exits.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class RenderBenchmark extends PApplet {
+
+	/**
+	 * The number of cubes in the world
+	 */
+	private static final int	CUBES	= 2000;
+
+	/**
+	 * The number of timed frames for each way of drawing
+	 */
+	private static final int	FRAMES	= 300;
+
+	/**
+	 * The number of frames drawn before timing each way of drawing
+	 */
+	private static final int	WARMUP	= 60;
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			PApplet.main(new String[ ] { RenderBenchmark.class.getName() });
+		}
+
+	/**
+	 * Whether the cubes are currently drawn in a batch
+	 */
+	private boolean	batched		= false;
+
+	/**
+	 * The number of frames drawn so far with the current way of drawing
+	 */
+	private int		frame		= 0;
+
+	/**
+	 * The frame time when drawing one cube at a time, in milliseconds
+	 */
+	private double	immediateTime;
+
+	/**
+	 * The scene
+	 */
+	private World	scene;
+
+	/**
+	 * The time at which timing started
+	 */
+	private long	start;
+
+
+	/**
+	 * Draws a frame and switches the way of drawing once enough frames were
+	 * timed.
+	 */
+	@Override
+	public void draw( )
+		{
+			if (frame == WARMUP)
+				{
+					start = System.nanoTime();
+				}
+			else
+				if (frame == (WARMUP + FRAMES))
+					{
+						final double time = (System.nanoTime() - start) / (FRAMES * 1e6);
+						if (!batched)
+							{
+								immediateTime = time;
+								batched = true;
+								scene.setBatchRendering(true);
+								frame = 0;
+								return;
+							}
+
+						System.out.printf("%d cubes%n", CUBES);
+						System.out.printf("One cube at a time: %.3f ms/frame%n", immediateTime);
+						System.out.printf("Batched:            %.3f ms/frame%n", time);
+						exit();
+						return;
+					}
+
+			background(150);
+			scene.advance(1 / 60f);
+
+			pushMatrix();
+			translate(width / 2, height / 2);
+			scale(width / 20f, -width / 20f);
+			camera(0, 0, 600, 0, 0, 0, 0, 1, 0);
+			scene.draw();
+			popMatrix();
+
+			frame++;
+		}
+
+
+	/**
+	 * Sets the size of the window.
+	 */
+	@Override
+	public void settings( )
+		{
+			size(1024, 768, P3D);
+		}
+
+
+	/**
+	 * Creates the world, starting with the cubes drawn one at a time.
+	 */
+	@Override
+	public void setup( )
+		{
+			// Do not cap the frame rate so that the frame time is measured
+			frameRate(1000);
+			randomSeed(42);
+			scene = new World(this, CUBES);
+			scene.setBatchRendering(false);
+		}
+}
@@ -0,0 +1,163 @@
+package benchmark;
+
+
+import facemapping.TextureBlender;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+
+/**
+ * Compares the original column-major PImage.get/set blending of a face into
+ * the texture with the serial and parallel TextureBlender, and checks that
+ * all of them produce the same texture.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class TextureBlendBenchmark {
+
+	/**
+	 * The height of the texture
+	 */
+	private static final int	HEIGHT		= 300;
+
+	/**
+	 * The number of timed blends
+	 */
+	private static final int	ITERATIONS	= 500;
+
+	/**
+	 * The number of blends run before timing
+	 */
+	private static final int	WARMUP		= 200;
+
+	/**
+	 * The width of the texture
+	 */
+	private static final int	WIDTH		= 500;
+
+
+	/**
+	 * Blends the new face into a copy of the texture with the original
+	 * per-pixel loop, the given number of times.
+	 *
+	 * @param texture
+	 *            The texture to start from
+	 * @param newFace
+	 *            The face blended into the texture
+	 * @param iterations
+	 *            The number of blends
+	 * @return The blended texture
+	 */
+	private static PImage blendPerPixel(PImage texture, PImage newFace, int iterations)
+		{
+			final PImage result = copy(texture);
+			for (int n = 1; n <= iterations; n++)
+				{
+					final float weight = (float)Math.sqrt(1.0f / n);
+					for (int i = 0; i < result.width; i++)
+						{
+							for (int j = 0; j < result.height; j++)
+								{
+									result.set(i, j, TextureBlender.blendPixel(result.get(i, j), newFace.get(i, j),
+									        weight));
+								}
+						}
+				}
+			return result;
+		}
+
+
+	/**
+	 * Blends the new face into a copy of the texture with a TextureBlender,
+	 * the given number of times.
+	 *
+	 * @param blender
+	 *            The blender to use
+	 * @param texture
+	 *            The texture to start from
+	 * @param newFace
+	 *            The face blended into the texture
+	 * @param iterations
+	 *            The number of blends
+	 * @return The blended texture
+	 */
+	private static PImage blendWith(TextureBlender blender, PImage texture, PImage newFace, int iterations)
+		{
+			final PImage result = copy(texture);
+			for (int n = 1; n <= iterations; n++)
+				{
+					blender.blend(result, newFace, (float)Math.sqrt(1.0f / n));
+				}
+			return result;
+		}
+
+
+	/**
+	 * Copies the pixels of an image into a new image.
+	 *
+	 * @param image
+	 *            The image to copy
+	 * @return A new image with the same pixels
+	 */
+	private static PImage copy(PImage image)
+		{
+			final PImage result = new PImage(image.width, image.height, PConstants.ARGB);
+			System.arraycopy(image.pixels, 0, result.pixels, 0, image.pixels.length);
+			return result;
+		}
+
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param _args
+	 *            Command line arguments, ignored
+	 */
+	public static void main(String _args[])
+		{
+			final PImage texture = new PImage(WIDTH, HEIGHT, PConstants.ARGB);
+			final PImage newFace = new PImage(WIDTH, HEIGHT, PConstants.ARGB);
+			for (int i = 0; i < (WIDTH * HEIGHT); i++)
+				{
+					// Leave some black pixels in the texture to exercise the
+					// substitution of the new pixel
+					texture.pixels[i] = (i % 7) == 0 ? 0xFF000000 : 0xFF000000 | (i * 37);
+					newFace.pixels[i] = 0xFF000000 | ((i * 91) ^ (i >> 3));
+				}
+
+			final TextureBlender serial = new TextureBlender(false);
+			final TextureBlender parallel = new TextureBlender(true);
+
+			blendPerPixel(texture, newFace, WARMUP);
+			blendWith(serial, texture, newFace, WARMUP);
+			blendWith(parallel, texture, newFace, WARMUP);
+
+			long start = System.nanoTime();
+			final PImage expected = blendPerPixel(texture, newFace, ITERATIONS);
+			final double perPixel = (System.nanoTime() - start) / (ITERATIONS * 1e6);
+
+			start = System.nanoTime();
+			final PImage serialResult = blendWith(serial, texture, newFace, ITERATIONS);
+			final double serialTime = (System.nanoTime() - start) / (ITERATIONS * 1e6);
+
+			start = System.nanoTime();
+			final PImage parallelResult = blendWith(parallel, texture, newFace, ITERATIONS);
+			final double parallelTime = (System.nanoTime() - start) / (ITERATIONS * 1e6);
+
+			for (int i = 0; i < expected.pixels.length; i++)
+				{
+					if ((serialResult.pixels[i] != expected.pixels[i]) || (parallelResult.pixels[i] != expected.pixels[i]))
+						{
+							System.err.println("The blends differ at pixel " + i);
+							System.exit(1);
+						}
+				}
+
+			System.out.printf("Per-pixel get/set:       %.3f ms/blend%n", perPixel);
+			System.out.printf("TextureBlender serial:   %.3f ms/blend%n", serialTime);
+			System.out.printf("TextureBlender parallel: %.3f ms/blend (%d cores)%n", parallelTime,
+			        Runtime.getRuntime().availableProcessors());
+		}
+}
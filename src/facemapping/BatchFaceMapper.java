@@ -0,0 +1,348 @@
+package facemapping;
+
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import processing.core.PImage;
+
+
+/**
+ * Builds a face texture for every face in the images of a directory without
+ * a window or a webcam, and writes them as PNG files named after the whole
+ * file names of the images, numbered when an image shows more than one
+ * usable face. The images
+ * are mapped in parallel by a fixed number of threads, each with its own
+ * FaceDetector and DetectedFace since neither can be shared. The queue of
+ * images waiting for a thread is bounded: once it is full, the thread
+ * submitting the images maps the next one itself, so a large corpus is never
+ * held in memory all at once.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class BatchFaceMapper {
+
+	/**
+	 * The detector and texture used to map one image at a time.
+	 */
+	private static class Worker {
+
+		/**
+		 * Searches the images for a face
+		 */
+		private final FaceDetector	detector	= new FaceDetector(FrameSource.NO_FRAMES);
+
+		/**
+		 * Builds the texture of each face found in an image, serially since
+		 * the workers already keep every processor busy
+		 */
+		private final DetectedFace	face		= new DetectedFace(false);
+	}
+
+
+	/**
+	 * The number of images that can wait for each thread
+	 */
+	private static final int			QUEUE_PER_THREAD	= 2;
+
+
+	/**
+	 * Maps every image of a directory and reports the throughput.
+	 *
+	 * @param _args
+	 *            The directory of the images, the directory the textures are
+	 *            written to and optionally the number of threads, which
+	 *            defaults to the number of processors
+	 */
+	public static void main(String _args[])
+		{
+			int threads = Runtime.getRuntime().availableProcessors();
+			try
+				{
+					if (_args.length == 3)
+						{
+							threads = Integer.parseInt(_args[2]);
+						}
+				}
+			catch (final NumberFormatException e)
+				{
+					threads = 0;
+				}
+			if ((_args.length < 2) || (_args.length > 3) || (threads < 1))
+				{
+					System.err.println("Usage: BatchFaceMapper <image directory> <output directory> [threads]");
+					System.exit(1);
+				}
+
+			// Call system to load the OpenCV library
+			System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+			final File[ ] images = new File(_args[0]).listFiles(ImageDirectorySource.IMAGE_FILTER);
+			if (images == null)
+				{
+					System.err.println(_args[0] + " is not a directory");
+					System.exit(1);
+				}
+			final File output = new File(_args[1]);
+			if (!output.isDirectory() && !output.mkdirs())
+				{
+					System.err.println("The output directory " + output + " could not be created");
+					System.exit(1);
+				}
+			final BatchFaceMapper mapper = new BatchFaceMapper(output, threads);
+			final long start = System.nanoTime();
+			try
+				{
+					mapper.map(images);
+				}
+			catch (final InterruptedException e)
+				{
+					System.err.println("Interrupted before every image was mapped");
+				}
+			finally
+				{
+					mapper.release();
+				}
+			final double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("%d images in %.2f s with %d threads: %.1f images/s%n", images.length, seconds, threads,
+			        images.length / seconds);
+			System.out.printf("%d textures written, %d images without a usable face, %d images failed%n",
+			        mapper.getMappedCount(), mapper.getNoFaceCount(), mapper.getFailedCount());
+		}
+
+
+	/**
+	 * Writes a texture as a PNG file.
+	 *
+	 * @param texture
+	 *            The texture to write
+	 * @param file
+	 *            The file the texture is written to
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	private static void write(PImage texture, File file) throws IOException
+		{
+			final BufferedImage image = new BufferedImage(texture.width, texture.height, BufferedImage.TYPE_INT_ARGB);
+			image.setRGB(0, 0, texture.width, texture.height, texture.pixels, 0, texture.width);
+			if (!ImageIO.write(image, "png", file)) { throw new IOException("No PNG writer is available"); }
+		}
+
+
+	/**
+	 * The number of images that could not be read or written
+	 */
+	private final AtomicInteger				failed		= new AtomicInteger();
+
+	/**
+	 * The number of textures written
+	 */
+	private final AtomicInteger				mapped		= new AtomicInteger();
+
+	/**
+	 * The number of images in which no usable face was found
+	 */
+	private final AtomicInteger				noFace		= new AtomicInteger();
+
+	/**
+	 * The directory the textures are written to
+	 */
+	private final File						outputDirectory;
+
+	/**
+	 * The number of threads mapping the images
+	 */
+	private final int						threads;
+
+	/**
+	 * The workers that are not mapping an image
+	 */
+	private final BlockingQueue <Worker>	workers;
+
+
+	/**
+	 * Instantiates a batch face mapper. The detectors of the workers are
+	 * created right away, so that a missing Haar cascade is reported before
+	 * any image is mapped.
+	 *
+	 * @param outputDirectory
+	 *            The directory the textures are written to, which must exist
+	 * @param threads
+	 *            The number of threads mapping the images
+	 * @throws IllegalArgumentException
+	 *             If the number of threads is not positive.
+	 * @throws IllegalStateException
+	 *             If one of the Haar cascades could not be loaded.
+	 */
+	public BatchFaceMapper(File outputDirectory, int threads)
+		{
+			if (threads < 1) { throw new IllegalArgumentException("At least one thread is needed"); }
+			this.outputDirectory = outputDirectory;
+			this.threads = threads;
+
+			// One more worker for the thread submitting the images, which maps
+			// some of them itself when the queue is full
+			workers = new ArrayBlockingQueue <Worker>(threads + 1);
+			for (int i = 0; i <= threads; i++)
+				{
+					workers.add(new Worker());
+				}
+		}
+
+
+	/**
+	 * Returns the number of images that could not be read or whose texture
+	 * could not be written.
+	 *
+	 * @return The number of failed images.
+	 */
+	public int getFailedCount( )
+		{
+			return failed.get();
+		}
+
+
+	/**
+	 * Returns the number of textures written.
+	 *
+	 * @return The number of textures written, one per usable face.
+	 */
+	public int getMappedCount( )
+		{
+			return mapped.get();
+		}
+
+
+	/**
+	 * Returns the number of images in which no usable face was found, for
+	 * which no texture is written.
+	 *
+	 * @return The number of images without a face.
+	 */
+	public int getNoFaceCount( )
+		{
+			return noFace.get();
+		}
+
+
+	/**
+	 * Maps every image and waits for all of them to be done.
+	 *
+	 * @param images
+	 *            The images to map
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting.
+	 */
+	public void map(File[ ] images) throws InterruptedException
+		{
+			final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			        new ArrayBlockingQueue <Runnable>(threads * QUEUE_PER_THREAD),
+			        new ThreadPoolExecutor.CallerRunsPolicy());
+			try
+				{
+					for (final File image : images)
+						{
+							executor.execute(new Runnable() {
+
+								@Override
+								public void run( )
+									{
+										mapImage(image);
+									}
+							});
+						}
+				}
+			finally
+				{
+					executor.shutdown();
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+				}
+		}
+
+
+	/**
+	 * Searches an image for every face and writes the texture built from
+	 * each one.
+	 *
+	 * @param image
+	 *            The image to map
+	 */
+	private void mapImage(File image)
+		{
+			final Worker worker = workers.poll();
+			final Mat frame = Imgcodecs.imread(image.getPath());
+			List <FaceDetection> detections = Collections.emptyList();
+			try
+				{
+					if (frame.empty())
+						{
+							System.err.println(image + " could not be read");
+							failed.incrementAndGet();
+							return;
+						}
+
+					detections = worker.detector.findFaces(frame);
+					if (detections.isEmpty())
+						{
+							noFace.incrementAndGet();
+							return;
+						}
+
+					// The whole name is kept so that a.jpg and a.png do not
+					// overwrite each other's textures
+					for (int i = 0; i < detections.size(); i++)
+						{
+							worker.face.reset();
+							detections.get(i).applyTo(worker.face);
+							final String suffix = detections.size() == 1 ? "" : "-" + (i + 1);
+							final File texture = new File(outputDirectory, image.getName() + suffix + ".png");
+							write(worker.face.toPImage(), texture);
+							mapped.incrementAndGet();
+						}
+				}
+			catch (final Exception e)
+				{
+					e.printStackTrace();
+					failed.incrementAndGet();
+				}
+			finally
+				{
+					for (final FaceDetection detection : detections)
+						{
+							detection.release();
+						}
+					frame.release();
+					workers.offer(worker);
+				}
+		}
+
+
+	/**
+	 * Releases the buffers of the detectors. The mapper cannot be used
+	 * afterwards.
+	 */
+	public void release( )
+		{
+			for (final Worker worker : workers)
+				{
+					worker.detector.releaseCamera();
+				}
+		}
+}
@@ -0,0 +1,50 @@
+package facemapping;
+
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+
+/**
+ * Reads frames from a webcam.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class CameraFrameSource implements FrameSource {
+
+	/**
+	 * Captures input from the webcam
+	 */
+	private final VideoCapture	camera	= new VideoCapture();
+
+
+	/**
+	 * Opens a webcam.
+	 *
+	 * @param device
+	 *            The index of the webcam, 0 for the first one available
+	 * @throws IllegalStateException
+	 *             If the webcam could not be opened.
+	 */
+	public CameraFrameSource(int device)
+		{
+			camera.open(device);
+			if (!camera.isOpened()) { throw new IllegalStateException("The camera " + device + " could not be opened"); }
+		}
+
+
+	@Override
+	public boolean read(Mat destination)
+		{
+			return camera.read(destination);
+		}
+
+
+	@Override
+	public void release( )
+		{
+			camera.release();
+		}
+}
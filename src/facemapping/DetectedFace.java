@@ -2,9 +2,11 @@
 package facemapping;
 
 
+import java.util.Arrays;
+
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.Point;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
@@ -22,11 +24,63 @@ import processing.core.PImage;
  */
 public class DetectedFace {
 
+	/**
+	 * The column of the texture after which only the profile is used
+	 */
+	private static final int	BLEND_END		= 350;
+
+	/**
+	 * The column of the texture after which the front is blended with the
+	 * profile
+	 */
+	private static final int	BLEND_START		= 300;
+
 	/**
 	 * The height of the texture
 	 */
 	private static final int	TEXTURE_HEIGHT	= 300;
 
+	/**
+	 * The width of the texture
+	 */
+	private static final int	TEXTURE_WIDTH	= (TEXTURE_HEIGHT * 5) / 3;
+
+	/**
+	 * Blends the detected faces into the texture
+	 */
+	private final TextureBlender	blender;
+
+	/**
+	 * The last PImage generated by toPImage()
+	 */
+	private final PImage		composite;
+
+	/**
+	 * The version of the texture the composite was generated from
+	 */
+	private long				compositeVersion	= -1;
+
+	/**
+	 * Converts the detected faces to PImages
+	 */
+	private final MatConverter	converter		= new MatConverter();
+
+	/**
+	 * The first column of the composite that is out of date, or the width of
+	 * the texture if it is up to date
+	 */
+	private int					firstDirtyColumn	= TEXTURE_WIDTH / 2;
+
+	/**
+	 * The mirror image of a newly detected face
+	 */
+	private final Mat			flippedFace		= new Mat();
+
+	/**
+	 * The mirror image of a newly detected face, as a PImage
+	 */
+	private final PImage		flippedImage;
+
 	/**
 	 * The part of the face texture containing the front of the face
 	 */
@@ -41,70 +95,115 @@ public class DetectedFace {
 	 * The part of the face texture containing the sides of the face
 	 */
 	private final PImage		profileTexture;
+
+	/**
+	 * The size of the texture
+	 */
+	private final Size			textureSize		= new Size(TEXTURE_WIDTH, TEXTURE_HEIGHT);
+
+	/**
+	 * The affine transformation which places a newly detected face in the
+	 * texture
+	 */
+	private final Mat			transform		= new Mat(2, 3, CvType.CV_64FC1);
+
+	/**
+	 * The number of times the texture has been updated
+	 */
+	private long				version			= 0;
+
+	/**
+	 * A newly detected face placed in the texture
+	 */
+	private final Mat			warpedFace		= new Mat();
+
+	/**
+	 * A newly detected face placed in the texture, as a PImage
+	 */
+	private final PImage		warpedImage;
 								
 								
 	/**
-	 * Instantiates a detected face object.
+	 * Instantiates a detected face object. The faces are blended in parallel
+	 * if there is more than one processor.
 	 */
 	public DetectedFace( )
 		{
-			this.frontTexture = new PImage((TEXTURE_HEIGHT * 5) / 3, TEXTURE_HEIGHT, PConstants.ARGB);
-			this.profileTexture = new PImage((TEXTURE_HEIGHT * 5) / 3, TEXTURE_HEIGHT, PConstants.ARGB);
+			this(Runtime.getRuntime().availableProcessors() > 1);
 		}
 
 
 	/**
-	 * Blends two ARGB pixels together according to the given weight.
+	 * Instantiates a detected face object.
 	 *
-	 * @param oldPixel
-	 *            The first pixel value
-	 * @param newPixel
-	 *            The second pixel value
-	 * @param weight
-	 *            The weight of the second pixel value, should be in [0, 1]
-	 * @return The blended pixel value
+	 * @param parallelBlending
+	 *            True if the faces should be blended into the texture in
+	 *            parallel, false if the caller already keeps every processor
+	 *            busy
 	 */
-	private int blendPixels(int oldPixel, int newPixel, float weight)
+	public DetectedFace(boolean parallelBlending)
 		{
-			if ((oldPixel == 0) || (oldPixel == 0xFF000000))
-				{
-					oldPixel = newPixel;
-				}
-			final int r = (int)((((oldPixel & 0xFF0000) >> 16) * (1 - weight))
-			        + (((newPixel & 0xFF0000) >> 16) * weight));
-			final int g = (int)((((oldPixel & 0x00FF00) >> 8) * (1 - weight))
-			        + (((newPixel & 0x00FF00) >> 8) * weight));
-			final int b = (int)(((oldPixel & 0x0000FF) * (1 - weight)) + ((newPixel & 0x0000FF) * weight));
-
-			return (0xFF << 24) | (r << 16) | (g << 8) | (b);
+			this.blender = new TextureBlender(parallelBlending);
+			this.frontTexture = new PImage(TEXTURE_WIDTH, TEXTURE_HEIGHT, PConstants.ARGB);
+			this.profileTexture = new PImage(TEXTURE_WIDTH, TEXTURE_HEIGHT, PConstants.ARGB);
+			this.warpedImage = new PImage(TEXTURE_WIDTH, TEXTURE_HEIGHT, PConstants.ARGB);
+			this.flippedImage = new PImage(TEXTURE_WIDTH, TEXTURE_HEIGHT, PConstants.ARGB);
+			this.composite = new PImage(TEXTURE_WIDTH, TEXTURE_HEIGHT, PConstants.ARGB);
 		}
 
 
 	/**
-	 * Converts an OpenCV matrix to a PImage.
+	 * Regenerates the right half of the composite from the given column
+	 * onwards and mirrors it onto the left half. The front of the face is
+	 * used up to BLEND_START, then it fades into the profile until BLEND_END.
+	 * Dark pixels are made black.
 	 *
-	 * @param m
-	 *            A matrix of BGR pixels.
-	 * @return A PImage of ARGB pixels with the same dimensions.
+	 * @param startColumn
+	 *            The first column to regenerate, at least half of the width
 	 */
-	private PImage matToPImage(Mat m)
+	private void composite(int startColumn)
 		{
-			final int width = m.width(), height = m.height();
-			final PImage result = new PImage(width, height, PConstants.ARGB);
-			for (int i = 0; i < height; i++)
+			final int width = composite.width;
+			final int[ ] output = composite.pixels;
+			final int[ ] front = frontTexture.pixels;
+			final int[ ] profile = profileTexture.pixels;
+
+			for (int j = 0; j < composite.height; j++)
 				{
-					for (int j = 0; j < width; j++)
+					final int row = j * width;
+					for (int i = startColumn; i < width; i++)
 						{
-							// i = row = y coordinate, j = column = x coordinate
-							final double[ ] colorValues = m.get(i, j);
+							float weight = i < BLEND_START ? 1f : 0f;
+							if ((BLEND_START < i) && (i < BLEND_END))
+								{
+									weight = (BLEND_END + 0f - i) / (BLEND_END - BLEND_START);
+								}
+							int pixel = TextureBlender.blendPixel(profile[row + i], front[row + i], weight);
+							final int r = (pixel & 0xFF0000) >> 16;
+							final int g = (pixel & 0x00FF00) >> 8;
+							final int b = (pixel & 0x0000FF);
+							if ((r < 30) && (g < 30) && (b < 30))
+								{
+									pixel = 0xFF000000;
+								}
 
-							// apparently the colors are bgr, not rgb
-							final int r = (int)(colorValues[2]), g = (int)(colorValues[1]), b = (int)(colorValues[0]);
-							final int color = (0xFF << 24) | (r << 16) | (g << 8) | b;
-							result.set(j, i, color);
+							output[row + i] = pixel;
+							output[(row + width) - i] = pixel;
 						}
 				}
-			return result;
+			composite.updatePixels();
+		}
+
+
+	/**
+	 * Returns the number of times the texture has been updated. It can be
+	 * compared to an earlier value to know if toPImage() has changed.
+	 *
+	 * @return The version of the texture
+	 */
+	public long getVersion( )
+		{
+			return version;
 		}
 
 
@@ -123,50 +222,55 @@ public class DetectedFace {
 			numberFaces++;
 			final float weight = (float)Math.sqrt(1.0f / numberFaces);
 
-			for (int i = 0; i < oldTexture.width; i++)
-				{
-					for (int j = 0; j < oldTexture.height; j++)
-						{
-							oldTexture.set(i, j, blendPixels(oldTexture.get(i, j), newFace.get(i, j), weight));
-						}
-				}
+			blender.blend(oldTexture, newFace, weight);
+		}
+
+
+	/**
+	 * Releases the OpenCV matrices used to place the faces in the texture.
+	 * No face can be added afterwards, but the texture can still be read.
+	 */
+	public void release( )
+		{
+			flippedFace.release();
+			transform.release();
+			warpedFace.release();
+		}
+
+
+	/**
+	 * Forgets every face added to the texture, so that the same object can
+	 * build the texture of another face without allocating new images. The
+	 * version still increases.
+	 */
+	public void reset( )
+		{
+			Arrays.fill(frontTexture.pixels, 0);
+			Arrays.fill(profileTexture.pixels, 0);
+			numberFaces = 0;
+			firstDirtyColumn = TEXTURE_WIDTH / 2;
+			version++;
 		}
 
 
 	/**
-	 * Returns a PImage of the detected face
+	 * Returns a PImage of the detected face. The image is cached and only
+	 * regenerated when the texture has been updated since the last call, so
+	 * the same PImage is returned every time and its pixels change after an
+	 * update. Copy it if it must not change.
 	 *
 	 * @return A PImage containing the colorized detected face.
 	 */
 	public PImage toPImage( )
 		{
-			final PImage output = new PImage((TEXTURE_HEIGHT * 5) / 3, TEXTURE_HEIGHT, PConstants.ARGB);
-
-			for (int i = 250; i < output.width; i++)
+			if (compositeVersion != version)
 				{
-					for (int j = 0; j < output.width; j++)
-						{
-							float weight = i < 300 ? 1f : 0f;
-							if ((300 < i) && (i < 350))
-								{
-									weight = (350f - i) / 50f;
-								}
-							output.set(i, j, blendPixels(profileTexture.get(i, j), frontTexture.get(i, j), weight));
-							final int r = (output.get(i, j) & 0xFF0000) >> 16;
-							final int g = (output.get(i, j) & 0x00FF00) >> 8;
-							final int b = (output.get(i, j) & 0x0000FF);
-							if ((r < 30) && (g < 30) && (b < 30))
-								{
-									// output.set(i, j, (r + g + b) / 3);
-									output.set(i, j, 0xFF000000);
-									// output.set(i, j, output.get(250, 100));
-								}
-
-							output.set(output.width - i, j, output.get(i, j));
-						}
+					composite(firstDirtyColumn);
+					firstDirtyColumn = TEXTURE_WIDTH;
+					compositeVersion = version;
 				}
 
-			return output;
+			return composite;
 		}
 
 
@@ -184,66 +288,48 @@ public class DetectedFace {
 		{
 			if ((leftEye == null) || (rightEye == null)) { throw new NullPointerException("One of the eyes is null"); }
 
-			// Rotate the face to using the position of the eyes
-			final double dx = rightEye[0] - leftEye[0];
-			final double dy = rightEye[1] - leftEye[1];
-			double angle = (Math.atan2(dy, dx) * 180) / Math.PI;
-			final Point center = new Point(face.width() / 2, face.height() / 2);
-
-			final Mat rotMatrix = Imgproc.getRotationMatrix2D(center, angle, 1);
-			final Mat rotatedFace = new Mat();
-			Imgproc.warpAffine(face, rotatedFace, rotMatrix, face.size());
+			// Rotate the face about its center using the position of the eyes
+			final double angle = Math.atan2(rightEye[1] - leftEye[1], rightEye[0] - leftEye[0]);
+			final double cos = Math.cos(angle), sin = Math.sin(angle);
+			final double centerX = face.width() / 2, centerY = face.height() / 2;
+			final double rotationX = ((1 - cos) * centerX) - (sin * centerY);
+			final double rotationY = (sin * centerX) + ((1 - cos) * centerY);
 
 			// Translate and scale the image using the position of the eyes
-			// convert angle to radians
-			angle *= -Math.PI / 180;
-
-			final double[ ] newLeftEye = new double[ ] {
-			        (((leftEye[0] - center.x) * Math.cos(angle)) - ((leftEye[1] - center.y) * Math.sin(angle)))
-			                + center.x,
-			        ((leftEye[0] - center.x) * Math.sin(angle)) + ((leftEye[1] - center.y) * Math.cos(angle))
-			                + center.y };
-			final double[ ] newRightEye = new double[ ] {
-			        (((rightEye[0] - center.x) * Math.cos(angle)) - ((rightEye[1] - center.y) * Math.sin(angle)))
-			                + center.x,
-			        ((rightEye[0] - center.x) * Math.sin(angle)) + ((rightEye[1] - center.y) * Math.cos(angle))
-			                + center.y };
-			final Point eyeCenter = new Point((newLeftEye[0] + newRightEye[0]) / 2,
-			        (newLeftEye[1] + newRightEye[1]) / 2);
-					
-			final double eyeDistance = newRightEye[0] - newLeftEye[0];
-			final Mat centeredFace = Mat.zeros(new Size(eyeDistance * 5, eyeDistance * 3), rotatedFace.type());
-			final int rowShift = (int)((((centeredFace.height() - rotatedFace.height()) / 2)
-			        + ((rotatedFace.height() * 2.0) / 5.0)) - eyeCenter.y);
-			final int colShift = (int)((centeredFace.width() / 2) - eyeCenter.x);
-			for (int i = 0; i < rotatedFace.rows(); i++)
-				{
-					for (int j = 0; j < rotatedFace.cols(); j++)
-						{
-							if (((i + rowShift) >= 0) && ((i + rowShift) < centeredFace.height())
-							        && ((j + colShift) >= 0) && ((j + colShift) < centeredFace.width()))
-								{
-									centeredFace.put(i + rowShift, j + colShift, rotatedFace.get(i, j));
-								}
-						}
-				}
-
-			new Point(newLeftEye[0] + colShift, newLeftEye[1] + rowShift);
-			new Point(newRightEye[0] + colShift, newRightEye[1] + rowShift);
+			final double leftEyeX = (cos * leftEye[0]) + (sin * leftEye[1]) + rotationX;
+			final double rightEyeX = (cos * rightEye[0]) + (sin * rightEye[1]) + rotationX;
+			final double eyeCenterX = (cos * ((leftEye[0] + rightEye[0]) / 2)) + (sin * ((leftEye[1] + rightEye[1]) / 2))
+			        + rotationX;
+			final double eyeCenterY = (-sin * ((leftEye[0] + rightEye[0]) / 2))
+			        + (cos * ((leftEye[1] + rightEye[1]) / 2)) + rotationY;
+
+			final double eyeDistance = rightEyeX - leftEyeX;
+			final int centeredWidth = (int)(eyeDistance * 5), centeredHeight = (int)(eyeDistance * 3);
+			if (centeredHeight <= 0) { return; }
+
+			final int rowShift = (int)((((centeredHeight - face.height()) / 2) + ((face.height() * 2.0) / 5.0))
+			        - eyeCenterY);
+			final int colShift = (int)((centeredWidth / 2) - eyeCenterX);
+			final double scale = (TEXTURE_HEIGHT + 0.0) / centeredHeight;
+
+			// Rotate, center and scale the face in a single warp
+			transform.put(0, 0, scale * cos, scale * sin, scale * (rotationX + colShift), -scale * sin, scale * cos,
+			        scale * (rotationY + rowShift));
+			Imgproc.warpAffine(face, warpedFace, transform, textureSize);
 
 			// Blend in both the newly detected face and its reflection onto the
 			// texture
-			final Mat flipped = new Mat();
-			Core.flip(centeredFace, flipped, 1);
+			Core.flip(warpedFace, flippedFace, 1);
+			converter.toPImage(warpedFace, warpedImage);
+			converter.toPImage(flippedFace, flippedImage);
 
-			final PImage front = matToPImage(centeredFace);
-			final PImage flip = matToPImage(flipped);
-			final float scale = (TEXTURE_HEIGHT + 0.0f) / centeredFace.height();
-			flip.resize((int)(front.width * scale), (int)(front.height * scale));
-			front.resize((int)(front.width * scale), (int)(front.height * scale));
+			overlayFace(frontTexture, warpedImage);
+			overlayFace(frontTexture, flippedImage);
 
-			overlayFace(frontTexture, front);
-			overlayFace(frontTexture, flip);
+			// Black pixels in the profile are replaced by the front, so the
+			// whole composite depends on it
+			firstDirtyColumn = TEXTURE_WIDTH / 2;
+			version++;
 		}
 
 
@@ -260,40 +346,31 @@ public class DetectedFace {
 	public void updateProfileTexture(Mat profile, float[ ] eyeCoordinates, boolean facingRight)
 		{
 			// as of now, there is now way to check the rotation of the profile
-			final double height = profile.size().height;
-
-			Mat centeredFace = Mat.zeros(new Size((height * 5) / 3, height), profile.type());
-			final int rowShift = (int)(((profile.height() * 2.0) / 5.0) - eyeCoordinates[1]);
+			final int height = profile.height();
+			final int centeredWidth = (height * 5) / 3;
+			final int rowShift = (int)(((height * 2.0) / 5.0) - eyeCoordinates[1]);
 			int colShift = (int)(profile.width() - eyeCoordinates[0]);
+			final double scale = (TEXTURE_HEIGHT + 0.0) / height;
 
-			if (!facingRight)
+			// Center, scale and (if the face is facing left) mirror the profile
+			// in a single warp
+			if (facingRight)
 				{
-					colShift = centeredFace.width() - colShift - profile.width();
+					transform.put(0, 0, scale, 0, scale * colShift, 0, scale, scale * rowShift);
 				}
-
-			for (int i = 0; i < profile.rows(); i++)
-				{
-					for (int j = 0; j < profile.cols(); j++)
-						{
-							if (((i + rowShift) >= 0) && ((i + rowShift) < centeredFace.height())
-							        && ((j + colShift) >= 0) && ((j + colShift) < centeredFace.width()))
-								{
-									centeredFace.put(i + rowShift, j + colShift, profile.get(i, j));
-								}
-						}
-				}
-
-			if (!facingRight)
+			else
 				{
-					final Mat temp = new Mat();
-					Core.flip(centeredFace, temp, 1);
-					centeredFace = temp;
+					colShift = centeredWidth - colShift - profile.width();
+					transform.put(0, 0, -scale, 0, scale * ((centeredWidth - 1) - colShift), 0, scale,
+					        scale * rowShift);
 				}
+			Imgproc.warpAffine(profile, warpedFace, transform, textureSize);
 
-			final PImage front = matToPImage(centeredFace);
-			final float scale = (TEXTURE_HEIGHT + 0.0f) / centeredFace.height();
-			front.resize((int)(front.width * scale), (int)(front.height * scale));
+			converter.toPImage(warpedFace, warpedImage);
+			overlayFace(profileTexture, warpedImage);
 
-			overlayFace(profileTexture, front);
+			// The columns before BLEND_START only use the front
+			firstDirtyColumn = Math.min(firstDirtyColumn, BLEND_START);
+			version++;
 		}
 }
@@ -0,0 +1,158 @@
+package facemapping;
+
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+
+/**
+ * The result of searching a single frame for a usable face. It holds the
+ * region of the color frame that contains the face and the eye coordinates
+ * needed to blend it into a DetectedFace, so that the detection and the
+ * texture update can be performed separately.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class FaceDetection {
+
+	/**
+	 * The bounds of the face in the frame
+	 */
+	private final Rect		bounds;
+
+	/**
+	 * True if the profile is facing right, only used for profiles
+	 */
+	private final boolean	facingRight;
+
+	/**
+	 * True if this is a frontal face, false if it is a side profile
+	 */
+	private final boolean	frontal;
+
+	/**
+	 * The coordinates of the left eye, or of the only eye of a profile
+	 */
+	private final float[ ]	leftEye;
+
+	/**
+	 * The region of the color frame containing the face
+	 */
+	private final Mat		region;
+
+	/**
+	 * The coordinates of the right eye, null for profiles
+	 */
+	private final float[ ]	rightEye;
+
+
+	/**
+	 * Instantiates the detection of a frontal face.
+	 *
+	 * @param face
+	 *            An OpenCV matrix that contains a frontal face
+	 * @param bounds
+	 *            The bounds of the face in the frame
+	 * @param leftEye
+	 *            The coordinates of the left eye, {x, y}
+	 * @param rightEye
+	 *            The coordinates of the right eye, {x, y}
+	 */
+	public FaceDetection(Mat face, Rect bounds, float[ ] leftEye, float[ ] rightEye)
+		{
+			this.region = face;
+			this.bounds = bounds;
+			this.leftEye = leftEye;
+			this.rightEye = rightEye;
+			this.frontal = true;
+			this.facingRight = false;
+		}
+
+
+	/**
+	 * Instantiates the detection of a side profile.
+	 *
+	 * @param profile
+	 *            An OpenCV matrix containing a side face.
+	 * @param bounds
+	 *            The bounds of the profile in the frame
+	 * @param eyeCoordinates
+	 *            The coordinates of the eye in the profile, {x, y}
+	 * @param facingRight
+	 *            True if the face is facing right, false otherwise
+	 */
+	public FaceDetection(Mat profile, Rect bounds, float[ ] eyeCoordinates, boolean facingRight)
+		{
+			this.region = profile;
+			this.bounds = bounds;
+			this.leftEye = eyeCoordinates;
+			this.rightEye = null;
+			this.frontal = false;
+			this.facingRight = facingRight;
+		}
+
+
+	/**
+	 * Blends the detected face into the texture of the given DetectedFace.
+	 *
+	 * @param face
+	 *            The DetectedFace whose texture should be updated
+	 */
+	public void applyTo(DetectedFace face)
+		{
+			if (frontal)
+				{
+					face.updateFrontTexture(region, leftEye, rightEye);
+				}
+			else
+				{
+					face.updateProfileTexture(region, leftEye, facingRight);
+				}
+		}
+
+
+	/**
+	 * Accessor for the bounds of the face in the frame it was detected in.
+	 *
+	 * @return The rectangle of the frame containing the face.
+	 */
+	public Rect getBounds( )
+		{
+			return bounds;
+		}
+
+
+	/**
+	 * Accessor for the region of the frame containing the face.
+	 *
+	 * @return A submatrix of the color frame the face was detected in.
+	 */
+	public Mat getRegion( )
+		{
+			return region;
+		}
+
+
+	/**
+	 * Determines whether a frontal face or a profile was detected.
+	 *
+	 * @return True if this is a frontal face, false if it is a side profile.
+	 */
+	public boolean isFrontal( )
+		{
+			return frontal;
+		}
+
+
+	/**
+	 * Releases the header of the region of the frame containing the face. The
+	 * frame itself is not released, and the detection cannot be applied
+	 * afterwards.
+	 */
+	public void release( )
+		{
+			region.release();
+		}
+}
@@ -5,6 +5,9 @@ package facemapping;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
@@ -15,7 +18,6 @@ import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.objdetect.CascadeClassifier;
 import org.opencv.objdetect.Objdetect;
-import org.opencv.videoio.VideoCapture;
 
 import processing.core.PImage;
 
@@ -30,20 +32,127 @@ import processing.core.PImage;
 public class FaceDetector {
 
 	/**
-	 * The maximum face size to be detected (in pixels).
+	 * The number of frames between two searches of the whole frame when
+	 * tracking, unless it is changed
 	 */
-	private int						absoluteFaceSize;
+	private static final int	DEFAULT_FULL_SCAN_INTERVAL	= 10;
 
 	/**
-	 * Captures input from the webcam
+	 * How far the region searched around a tracked face extends past it on
+	 * each side, in multiples of its size
 	 */
-	private final VideoCapture		camera;
+	private static final float	REGION_MARGIN				= 0.5f;
+
+
+	/**
+	 * Converts the rectangles found in a region of the frame to frame
+	 * coordinates and adds those that do not overlap a rectangle already
+	 * found.
+	 *
+	 * @param found
+	 *            The rectangles found so far, in frame coordinates
+	 * @param rects
+	 *            The rectangles found in the region
+	 * @param region
+	 *            The region of the frame that was searched
+	 * @param mirrored
+	 *            True if the region was mirrored horizontally before being
+	 *            searched
+	 */
+	private static void addRegionRects(List <Rect> found, Rect[ ] rects, Rect region, boolean mirrored)
+		{
+			for (final Rect rect : rects)
+				{
+					rect.x = mirrored ? (region.x + region.width) - rect.x - rect.width : region.x + rect.x;
+					rect.y += region.y;
+
+					boolean duplicate = false;
+					for (final Rect other : found)
+						{
+							duplicate |= overlaps(rect, other);
+						}
+					if (!duplicate)
+						{
+							found.add(rect);
+						}
+				}
+		}
+
+
+	/**
+	 * Loads a trained Haar cascade into a classifier.
+	 *
+	 * @param classifier
+	 *            The classifier to load the cascade into
+	 * @param fileName
+	 *            The path of the cascade
+	 * @throws IllegalStateException
+	 *             If the cascade could not be loaded.
+	 */
+	private static void load(CascadeClassifier classifier, String fileName)
+		{
+			if (!classifier.load(fileName))
+				{
+					throw new IllegalStateException("The cascade " + fileName + " could not be loaded");
+				}
+		}
+
+
+	/**
+	 * Checks if two rectangles overlap.
+	 *
+	 * @param a
+	 *            The first rectangle
+	 * @param b
+	 *            The second rectangle
+	 * @return True if the rectangles share some area, false otherwise.
+	 */
+	private static boolean overlaps(Rect a, Rect b)
+		{
+			return (a.x < (b.x + b.width)) && (b.x < (a.x + a.width)) && (a.y < (b.y + b.height))
+			        && (b.y < (a.y + a.height));
+		}
+
+
+	/**
+	 * Converts rectangles found in a downscaled frame to the coordinates of
+	 * the full resolution frame, keeping them inside of it.
+	 *
+	 * @param rects
+	 *            The rectangles to convert, which are modified
+	 * @param scale
+	 *            The factor the frame was scaled by
+	 * @param frame
+	 *            The full resolution frame
+	 */
+	private static void upscale(Rect[ ] rects, float scale, Mat frame)
+		{
+			for (final Rect rect : rects)
+				{
+					rect.x = Math.min(Math.round(rect.x / scale), frame.width() - 1);
+					rect.y = Math.min(Math.round(rect.y / scale), frame.height() - 1);
+					rect.width = Math.min(Math.round(rect.width / scale), frame.width() - rect.x);
+					rect.height = Math.min(Math.round(rect.height / scale), frame.height() - rect.y);
+				}
+		}
+
+
+	/**
+	 * The buffers reused from one frame to the next
+	 */
+	private final FrameBufferPool	buffers				= new FrameBufferPool();
 
 	/**
 	 * Maintains a PImage of the overall face that has been detected so far.
 	 */
 	private final DetectedFace		detectedFace		= new DetectedFace();
 
+	/**
+	 * The factor the frames are scaled by before the face and profile
+	 * cascades are run, 1 to run them at full resolution
+	 */
+	private float					detectionScale		= 1;
+
 	/**
 	 * An OpenCV Cascade Classifier object for detecting the eyes.
 	 */
@@ -52,7 +161,8 @@ public class FaceDetector {
 	/**
 	 * The trained Haar cascade for eye detection
 	 */
-	private final String			eyesCascadeName		= "CascadeClassifiers\\haarcascade_eye_tree_eyeglasses.xml";
+	private final String			eyesCascadeName		= new File("CascadeClassifiers",
+	        "haarcascade_eye_tree_eyeglasses.xml").getPath();
 
 	/**
 	 * An OpenCV Cascade Classifier object for detecting the face.
@@ -62,13 +172,31 @@ public class FaceDetector {
 	/**
 	 * The trained Haar cascade for face detection
 	 */
-	private final String			faceCascadeName		= "CascadeClassifiers\\haarcascade_frontalface_alt.xml";
+	private final String			faceCascadeName		= new File("CascadeClassifiers",
+	        "haarcascade_frontalface_alt.xml").getPath();
 
 	/**
-	 * The current frame obtained from the webcam
+	 * The current frame obtained from the frame source
 	 */
 	private final Mat				frame;
 
+	/**
+	 * The number of frames searched around the tracked faces since the whole
+	 * frame was last searched
+	 */
+	private int						framesSinceFullScan	= 0;
+
+	/**
+	 * The number of frames between two searches of the whole frame when
+	 * tracking
+	 */
+	private int						fullScanInterval	= DEFAULT_FULL_SCAN_INTERVAL;
+
+	/**
+	 * The number of times the whole frame was searched
+	 */
+	private long					fullScans			= 0;
+
 	/**
 	 * An OpenCV Cascade Classifier object for detecting the mouth.
 	 */
@@ -77,7 +205,8 @@ public class FaceDetector {
 	/**
 	 * The trained Haar cascade for mouth detection
 	 */
-	private final String			mouthCascadeName	= "CascadeClassifiers\\haarcascade_smile.xml";
+	private final String			mouthCascadeName	= new File("CascadeClassifiers",
+	        "haarcascade_smile.xml").getPath();
 
 	/**
 	 * An OpenCV Cascade Classifier object for detecting the profile of a face.
@@ -87,34 +216,103 @@ public class FaceDetector {
 	/**
 	 * The trained Haar cascade for profile detection
 	 */
-	private final String			profileCascadeName	= "CascadeClassifiers\\haarcascade_profileface.xml";
+	private final String			profileCascadeName	= new File("CascadeClassifiers",
+	        "haarcascade_profileface.xml").getPath();
+
+	/**
+	 * Whether the profiles found by the last scan are facing right
+	 */
+	private boolean					profilesFacingRight;
+
+	/**
+	 * The number of times only the regions around the tracked faces were
+	 * searched
+	 */
+	private long					regionScans			= 0;
+
+	/**
+	 * The frontal faces found by the last scan
+	 */
+	private Rect[ ]					scannedFaces;
+
+	/**
+	 * The profiles found by the last scan
+	 */
+	private Rect[ ]					scannedProfiles;
+
+	/**
+	 * Supplies the frames searched for faces
+	 */
+	private final FrameSource		source;
+
+	/**
+	 * The faces and profiles found in the last frame, which are the regions
+	 * searched in the next frame when tracking
+	 */
+	private Rect[ ]					trackedRegions		= new Rect[0];
+
+	/**
+	 * How far each tracked region moved between the last two frames, as x
+	 * and y pairs in pixels
+	 */
+	private float[ ]				trackedVelocities	= new float[0];
+
+	/**
+	 * Gives every face found by detectFaces() its own DetectedFace
+	 */
+	private final FaceTracker		tracker				= new FaceTracker();
+
+	/**
+	 * Whether only the regions around the faces found in the last frame are
+	 * searched
+	 */
+	private boolean					tracking			= false;
 
 
 	/**
 	 * Instantiates the face detector object. It will perform several IO
-	 * operations and get input from your webcam.
+	 * operations and get input from the first webcam available.
+	 *
+	 * @throws IllegalStateException
+	 *             If no webcam could be opened.
 	 */
 	public FaceDetector( )
 		{
-			this.camera = new VideoCapture();
-			this.frame = new Mat();
-			faceCascade.load(faceCascadeName);
-			eyesCascade.load(eyesCascadeName);
-			mouthCascade.load(mouthCascadeName);
-			profileCascade.load(profileCascadeName);
+			this(new CameraFrameSource(0));
+		}
+
 
-			initialize();
+	/**
+	 * Instantiates a face detector that gets its input from the given source,
+	 * such as a directory of images or a recorded video, so that it can run
+	 * without a webcam.
+	 *
+	 * @param source
+	 *            Supplies the frames searched for faces
+	 * @throws IllegalStateException
+	 *             If one of the Haar cascades could not be loaded.
+	 */
+	public FaceDetector(FrameSource source)
+		{
+			if (source == null) { throw new NullPointerException("The frame source cannot be null"); }
+			this.source = source;
+			this.frame = new Mat();
+			load(faceCascade, faceCascadeName);
+			load(eyesCascade, eyesCascadeName);
+			load(mouthCascade, mouthCascadeName);
+			load(profileCascade, profileCascadeName);
 		}
 
 
 	/**
-	 * Detects a face in the current webcam input.
+	 * Detects a face in the next frame of the source. Nothing is detected if
+	 * no frame could be read.
 	 *
 	 * @return A reference to the internal DetectedFace object.
 	 */
 	public DetectedFace detectFace( )
 		{
-			camera.read(frame);
+			if (!source.read(frame)) { return detectedFace; }
 			return detectFace(frame);
 		}
 
@@ -128,71 +326,149 @@ public class FaceDetector {
 	 */
 	private DetectedFace detectFace(Mat frame)
 		{
-			// Initialize
-			final MatOfRect faces = new MatOfRect();
-			final MatOfRect profiles = new MatOfRect();
-			boolean facingRight = true;
-			final Mat grayFrame = new Mat();
+			final FaceDetection detection = findFace(frame);
+			if (detection != null)
+				{
+					detection.applyTo(detectedFace);
+				}
 
-			// convert the frame in gray scale
-			Imgproc.cvtColor(frame, grayFrame, Imgproc.COLOR_BGR2GRAY);
-			// equalize the frame histogram to improve the result
-			Imgproc.equalizeHist(grayFrame, grayFrame);
+			return detectedFace;
+		}
 
-			final Mat profileFrame = new Mat();
-			grayFrame.copyTo(profileFrame);
 
-			// compute minimum face size (20% of the frame height)
-			if (this.absoluteFaceSize == 0)
+	/**
+	 * Detects every face in the next frame of the source and blends each one
+	 * into the texture of the face it was tracked to. Nothing is detected if
+	 * no frame could be read.
+	 *
+	 * @return The tracker holding the DetectedFace of each face.
+	 */
+	public FaceTracker detectFaces( )
+		{
+			if (source.read(frame))
 				{
-					final int height = grayFrame.rows();
-					if (Math.round(height * 0.2f) > 0)
+					final List <FaceDetection> detections = findFaces(frame);
+					tracker.update(detections);
+					for (final FaceDetection detection : detections)
 						{
-							this.absoluteFaceSize = Math.round(height * 0.2f);
+							detection.release();
 						}
 				}
+			return tracker;
+		}
 
-			// detect faces
-			this.faceCascade.detectMultiScale(grayFrame, faces, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE,
-			        new Size(this.absoluteFaceSize, this.absoluteFaceSize), new Size());
-			this.profileCascade.detectMultiScale(profileFrame, profiles, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE,
-			        new Size(this.absoluteFaceSize, this.absoluteFaceSize), new Size());
 
-			Rect[ ] profileArray = profiles.toArray();
-			if (profileArray.length == 0)
+	/**
+	 * Searches the given frame for a face that can be blended into the
+	 * texture. The detected faces and eyes are outlined on the frame. No
+	 * texture is modified, so this may be called on a different thread than
+	 * the one updating the DetectedFace.
+	 *
+	 * @param frame
+	 *            An OpenCV matrix to be checked.
+	 * @return The detected face, or null if no usable face was found.
+	 */
+	public FaceDetection findFace(Mat frame)
+		{
+			scan(frame);
+			final Mat grayFrame = buffers.getGrayFrame();
+			try
 				{
-					Core.flip(grayFrame, profileFrame, 1);
-					this.profileCascade.detectMultiScale(profileFrame, profiles, 1.1, 2,
-					        0 | Objdetect.CASCADE_SCALE_IMAGE, new Size(this.absoluteFaceSize, this.absoluteFaceSize),
-					        new Size());
-					facingRight = false;
-					profileArray = profiles.toArray();
-
-					for (final Rect profile : profileArray)
+					if ((scannedProfiles.length == 0) && (scannedFaces.length == 1))
 						{
-							profile.x = grayFrame.width() - profile.x - profile.width;
+							return processFrontalFaces(grayFrame, frame, scannedFaces);
 						}
+					else
+						if ((scannedProfiles.length == 1) && (scannedFaces.length == 0))
+							{
+								return processProfiles(grayFrame, frame, scannedProfiles, profilesFacingRight);
+							}
+
+					return null;
 				}
+			finally
+				{
+					buffers.endFrame();
+				}
+		}
 
-			// each rectangle in faces is a face
-			final Rect[ ] facesArray = faces.toArray();
 
-			if ((profileArray.length == 0) && (facesArray.length == 1))
+	/**
+	 * Searches the given frame for every face that can be blended into a
+	 * texture, rather than only for frames showing a single face. A profile
+	 * that overlaps a frontal face is the same face seen by the other cascade,
+	 * so it is ignored. The detected faces and eyes are outlined on the
+	 * frame, and no texture is modified.
+	 *
+	 * @param frame
+	 *            An OpenCV matrix to be checked.
+	 * @return The usable faces, which may be empty.
+	 */
+	public List <FaceDetection> findFaces(Mat frame)
+		{
+			scan(frame);
+			final Mat grayFrame = buffers.getGrayFrame();
+			final List <FaceDetection> found = new ArrayList <FaceDetection>();
+			try
 				{
-					processFrontalFaces(grayFrame, frame, facesArray);
+					for (final Rect profile : scannedProfiles)
+						{
+							boolean frontal = false;
+							for (final Rect face : scannedFaces)
+								{
+									frontal |= overlaps(profile, face);
+								}
+							if (!frontal)
+								{
+									final FaceDetection detection = processProfiles(grayFrame, frame,
+									        new Rect[ ] { profile }, profilesFacingRight);
+									if (detection != null)
+										{
+											found.add(detection);
+										}
+								}
+						}
+					for (final Rect face : scannedFaces)
+						{
+							final FaceDetection detection = processFrontalFaces(grayFrame, frame, new Rect[ ] { face });
+							if (detection != null)
+								{
+									found.add(detection);
+								}
+						}
+					return found;
+				}
+			finally
+				{
+					buffers.endFrame();
 				}
-			else
-				if ((profileArray.length == 1) && (facesArray.length == 0))
-					{
-						processProfiles(grayFrame, frame, profileArray, facingRight);
-					}
+		}
+
 
+	/**
+	 * Accessor for the DetectedFace that is updated by detectFace().
+	 *
+	 * @return A reference to the internal DetectedFace object.
+	 */
+	public DetectedFace getDetectedFace( )
+		{
 			return detectedFace;
 		}
 
 
 	/**
-	 * Returns the current camera frame as a PImage
+	 * Returns the number of times the whole frame was searched for faces.
+	 *
+	 * @return The number of full scans so far.
+	 */
+	public long getFullScanCount( )
+		{
+			return fullScans;
+		}
+
+
+	/**
+	 * Returns the current frame as a PImage
 	 *
 	 * @return A PImage of the current frame
 	 */
@@ -203,23 +479,59 @@ public class FaceDetector {
 
 
 	/**
-	 * Initializes the camera and other internal variables.
+	 * Returns the number of native buffers that were allocated while
+	 * searching the last frame, including the buffers that OpenCV reallocated.
+	 * Since the frame sized buffers are reused, once the first frame has been
+	 * processed this mostly counts the headers of the submatrices of the
+	 * faces found, so it should stay small and not grow with the size of the
+	 * frame.
+	 *
+	 * @return The number of allocations during the last frame.
 	 */
-	private void initialize( )
+	public int getLastFrameAllocationCount( )
 		{
-			// Open the first available camera
-			camera.open(0);
+			return buffers.getLastFrameAllocationCount();
+		}
 
-			if (!camera.isOpened())
-				{
-					System.err.println("Exiting application: video stream is closed.");
-					System.exit(1);
-				}
+
+	/**
+	 * Returns the number of native buffers that have been allocated for the
+	 * detection, including the headers of the submatrices.
+	 *
+	 * @return The number of allocations so far.
+	 */
+	public long getNativeAllocationCount( )
+		{
+			return buffers.getAllocationCount();
+		}
+
+
+	/**
+	 * Returns the number of times only the regions around the tracked faces
+	 * were searched. A region scan that loses every face is followed by a
+	 * full scan of the same frame, so it is counted as both.
+	 *
+	 * @return The number of region scans so far.
+	 */
+	public long getRegionScanCount( )
+		{
+			return regionScans;
+		}
+
+
+	/**
+	 * Accessor for the FaceTracker that is updated by detectFaces().
+	 *
+	 * @return A reference to the internal FaceTracker object.
+	 */
+	public FaceTracker getTracker( )
+		{
+			return tracker;
 		}
 
 
 	/**
-	 * Updates the DetectedFace's texture with a frontal face if possible.
+	 * Finds a frontal face whose eyes were properly detected.
 	 *
 	 * @param grayFrame
 	 *            The frame in grayscale
@@ -227,15 +539,15 @@ public class FaceDetector {
 	 *            The frame in color
 	 * @param faces
 	 *            An array of the bounds of all faces that have been detected
-	 * @return True if the texture has been updated, false otherwise.
+	 * @return The usable frontal face, or null if there is none.
 	 */
-	private boolean processFrontalFaces(Mat grayFrame, Mat originalFrame, Rect[ ] faces)
+	private FaceDetection processFrontalFaces(Mat grayFrame, Mat originalFrame, Rect[ ] faces)
 		{
 			float[ ] leftEye = null, rightEye = null;
 			for (final Rect face : faces)
 				{
 					int shift = Math.min(30, face.y);
-					shift = Math.min(shift, frame.height() - ((face.y + face.height + shift) - 10));
+					shift = Math.min(shift, originalFrame.height() - ((face.y + face.height + shift) - 10));
 					face.y -= shift;
 					face.height += (shift * 2) - 10;
 
@@ -246,9 +558,9 @@ public class FaceDetector {
 					Imgproc.rectangle(originalFrame, face.tl(), face.br(), new Scalar(0, 255, 0, 255), 1);
 
 					// The face area that was detected in greyscale
-					final Mat greyROI = grayFrame.submat(face);
+					final Mat greyROI = buffers.view(grayFrame, face);
 
-					final float[ ][ ] eyeCoordinates = searchForEyes(greyROI, face);
+					final float[ ][ ] eyeCoordinates = searchForEyes(greyROI, originalFrame, face);
 
 					if (eyeCoordinates.length == 2)
 						{
@@ -272,16 +584,15 @@ public class FaceDetector {
 									continue;
 								}
 
-							detectedFace.updateFrontTexture(originalFrame.submat(face), leftEye, rightEye);
-							return true;
+							return new FaceDetection(buffers.crop(originalFrame, face), face, leftEye, rightEye);
 						}
 				}
-			return false;
+			return null;
 		}
 
 
 	/**
-	 * Updates the DetectedFace's texture with side profiles if possible.
+	 * Finds a side profile whose eye was properly detected.
 	 *
 	 * @param grayFrame
 	 *            The frame in grayscale
@@ -292,35 +603,49 @@ public class FaceDetector {
 	 *            detected.
 	 * @param facingRight
 	 *            True if the profiles are facing right, false otherwise
-	 * @return True if the texture has been updated, false otherwise.
+	 * @return The usable profile, or null if there is none.
 	 */
-	private boolean processProfiles(Mat grayFrame, Mat originalFrame, Rect[ ] profiles, boolean facingRight)
+	private FaceDetection processProfiles(Mat grayFrame, Mat originalFrame, Rect[ ] profiles, boolean facingRight)
 		{
 			for (final Rect profile : profiles)
 				{
 					Imgproc.rectangle(originalFrame, profile.tl(), profile.br(), new Scalar(0, 0, 255, 255), 1);
-					final Mat greyROI = grayFrame.submat(profile);
-					final float[ ][ ] eyeCoordinates = searchForEyes(greyROI, profile);
+					final Mat greyROI = buffers.view(grayFrame, profile);
+					final float[ ][ ] eyeCoordinates = searchForEyes(greyROI, originalFrame, profile);
 					if ((eyeCoordinates.length == 1) && (eyeCoordinates[0][0] < (profile.width / 2)))
 						{
-							detectedFace.updateProfileTexture(originalFrame.submat(profile), eyeCoordinates[0],
+							return new FaceDetection(buffers.crop(originalFrame, profile), profile, eyeCoordinates[0],
 							        facingRight);
-							return true;
 						}
 
 				}
-			return false;
+			return null;
 		}
 
 
 	/**
-	 * Releases the webcam which was being used to detect faces.
+	 * Reads the next frame from the frame source.
+	 *
+	 * @param destination
+	 *            The matrix the frame is read into
+	 * @return True if a frame was read, false otherwise.
+	 */
+	public boolean readFrame(Mat destination)
+		{
+			return source.read(destination);
+		}
+
+
+	/**
+	 * Releases the frame source which was being used to detect faces, such as
+	 * the webcam, along with the buffers used for the detection.
 	 */
 	public void releaseCamera( )
 		{
 			try
 				{
-					camera.release();
+					source.release();
+					buffers.release();
 				}
 			catch (final Exception e)
 				{
@@ -329,20 +654,208 @@ public class FaceDetector {
 		}
 
 
+	/**
+	 * Runs the face and profile cascades over the given frame and keeps the
+	 * rectangles they found. With tracking, only the regions around the faces
+	 * found in the last frame are searched, and the whole frame is searched
+	 * every few frames or when no face is found in those regions. If a
+	 * detection scale is set, the cascades are run over a downscaled copy of
+	 * the frame and the rectangles are scaled back up, so that the eyes are
+	 * still searched for at full resolution.
+	 *
+	 * @param frame
+	 *            An OpenCV matrix to be checked.
+	 */
+	private void scan(Mat frame)
+		{
+			final Mat grayFrame = buffers.getGrayFrame();
+
+			// convert the frame in gray scale
+			Imgproc.cvtColor(frame, grayFrame, Imgproc.COLOR_BGR2GRAY);
+			// equalize the frame histogram to improve the result
+			Imgproc.equalizeHist(grayFrame, grayFrame);
+
+			// compute minimum face size (20% of the frame height), for every
+			// frame since the frames may not all have the same size
+			int faceSize = Math.round(grayFrame.rows() * 0.2f);
+
+			// The tracked regions are kept in the coordinates of the frame the
+			// cascades are run over
+			Mat detectionFrame = grayFrame;
+			if (detectionScale < 1)
+				{
+					detectionFrame = buffers.getScaledFrame();
+					Imgproc.resize(grayFrame, detectionFrame, new Size(), detectionScale, detectionScale,
+					        Imgproc.INTER_AREA);
+					faceSize = Math.round(faceSize * detectionScale);
+				}
+			final Size minSize = buffers.getMinFaceSize(faceSize);
+			final Size maxSize = buffers.getMaxFaceSize();
+
+			boolean whole = !tracking || (trackedRegions.length == 0) || (framesSinceFullScan >= fullScanInterval);
+			if (!whole)
+				{
+					scanRegions(detectionFrame, minSize, maxSize);
+					regionScans++;
+					framesSinceFullScan++;
+
+					// The faces were lost, so they are searched everywhere
+					whole = (scannedFaces.length == 0) && (scannedProfiles.length == 0);
+				}
+			if (whole)
+				{
+					scanWholeFrame(detectionFrame, minSize, maxSize);
+					fullScans++;
+					framesSinceFullScan = 0;
+				}
+
+			if (tracking)
+				{
+					track();
+				}
+			if (detectionScale < 1)
+				{
+					upscale(scannedFaces, detectionScale, grayFrame);
+					upscale(scannedProfiles, detectionScale, grayFrame);
+				}
+		}
+
+
+	/**
+	 * Runs the face and profile cascades over the regions around the faces
+	 * found in the last frame, moved by the motion of each face since the
+	 * frame before. The rectangles are converted back to frame coordinates,
+	 * and a face found in two overlapping regions is only kept once.
+	 *
+	 * @param grayFrame
+	 *            The equalized frame in grayscale
+	 * @param minSize
+	 *            The minimum size of a face
+	 * @param maxSize
+	 *            The maximum size of a face
+	 */
+	private void scanRegions(Mat grayFrame, Size minSize, Size maxSize)
+		{
+			final MatOfRect found = buffers.getFaces();
+			final Mat profileFrame = buffers.getProfileFrame();
+			final List <Rect> faces = new ArrayList <Rect>(), profiles = new ArrayList <Rect>();
+
+			final Rect[ ] regions = new Rect[trackedRegions.length];
+			for (int i = 0; i < regions.length; i++)
+				{
+					final Rect last = trackedRegions[i];
+					final int size = Math.round(Math.max(last.width, last.height) * (1 + (2 * REGION_MARGIN)));
+					final int x = Math.round((last.x + (last.width / 2f) + trackedVelocities[2 * i]) - (size / 2f));
+					final int y = Math.round((last.y + (last.height / 2f) + trackedVelocities[(2 * i) + 1]) - (size / 2f));
+					final int left = Math.max(0, x), top = Math.max(0, y);
+					final int right = Math.min(grayFrame.width(), x + size);
+					final int bottom = Math.min(grayFrame.height(), y + size);
+					regions[i] = ((right - left) >= minSize.width) && ((bottom - top) >= minSize.height)
+					        ? new Rect(left, top, right - left, bottom - top) : null;
+				}
+
+			for (final Rect region : regions)
+				{
+					if (region == null)
+						{
+							continue;
+						}
+					final Mat view = buffers.view(grayFrame, region);
+					faceCascade.detectMultiScale(view, found, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE, minSize,
+					        maxSize);
+					addRegionRects(faces, found.toArray(), region, false);
+					profileCascade.detectMultiScale(view, found, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE, minSize,
+					        maxSize);
+					addRegionRects(profiles, found.toArray(), region, false);
+				}
+
+			profilesFacingRight = true;
+			if (profiles.isEmpty())
+				{
+					// The regions are flipped into views of the full frame buffer,
+					// which is then never reallocated to the size of a region
+					profilesFacingRight = false;
+					profileFrame.create(grayFrame.rows(), grayFrame.cols(), grayFrame.type());
+					for (final Rect region : regions)
+						{
+							if (region == null)
+								{
+									continue;
+								}
+							final Mat flipped = buffers.view(profileFrame, new Rect(0, 0, region.width, region.height));
+							Core.flip(buffers.view(grayFrame, region), flipped, 1);
+							profileCascade.detectMultiScale(flipped, found, 1.1, 2,
+							        0 | Objdetect.CASCADE_SCALE_IMAGE, minSize, maxSize);
+							addRegionRects(profiles, found.toArray(), region, true);
+						}
+				}
+
+			scannedFaces = faces.toArray(new Rect[faces.size()]);
+			scannedProfiles = profiles.toArray(new Rect[profiles.size()]);
+		}
+
+
+	/**
+	 * Runs the face and profile cascades over the whole frame. If no profile
+	 * facing right is found, the cascade is run again over the mirrored frame
+	 * to find profiles facing left.
+	 *
+	 * @param grayFrame
+	 *            The equalized frame in grayscale
+	 * @param minSize
+	 *            The minimum size of a face
+	 * @param maxSize
+	 *            The maximum size of a face
+	 */
+	private void scanWholeFrame(Mat grayFrame, Size minSize, Size maxSize)
+		{
+			final MatOfRect faces = buffers.getFaces();
+			final MatOfRect profiles = buffers.getProfiles();
+			final Mat profileFrame = buffers.getProfileFrame();
+
+			// detect faces
+			this.faceCascade.detectMultiScale(grayFrame, faces, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE, minSize,
+			        maxSize);
+			this.profileCascade.detectMultiScale(grayFrame, profiles, 1.1, 2, 0 | Objdetect.CASCADE_SCALE_IMAGE,
+			        minSize, maxSize);
+
+			profilesFacingRight = true;
+			scannedProfiles = profiles.toArray();
+			if (scannedProfiles.length == 0)
+				{
+					Core.flip(grayFrame, profileFrame, 1);
+					this.profileCascade.detectMultiScale(profileFrame, profiles, 1.1, 2,
+					        0 | Objdetect.CASCADE_SCALE_IMAGE, minSize, maxSize);
+					profilesFacingRight = false;
+					scannedProfiles = profiles.toArray();
+
+					for (final Rect profile : scannedProfiles)
+						{
+							profile.x = grayFrame.width() - profile.x - profile.width;
+						}
+				}
+
+			// each rectangle in faces is a face
+			scannedFaces = faces.toArray();
+		}
+
+
 	/**
 	 * Searches for the eyes in a detected face.
 	 *
 	 * @param greyFaceSubMat
 	 *            The OpenCV matrix containing the grayscale submatrix
+	 * @param originalFrame
+	 *            The frame in color, on which the eyes are outlined
 	 * @param detectedFace
 	 *            The OpenCV matrix containing the detected face
 	 * @return An array of the coordinates of all eyes in the detected face
 	 *         (relative the the detected face) in the format of {x, y, width,
 	 *         height}
 	 */
-	private float[ ][ ] searchForEyes(Mat greyFaceSubMat, Rect detectedFace)
+	private float[ ][ ] searchForEyes(Mat greyFaceSubMat, Mat originalFrame, Rect detectedFace)
 		{
-			final MatOfRect eyes = new MatOfRect();
+			final MatOfRect eyes = buffers.getEyes();
 			eyesCascade.detectMultiScale(greyFaceSubMat, eyes);
 			final Rect[ ] eyesArray = eyes.toArray();
 
@@ -359,12 +872,110 @@ public class FaceDetector {
 					        (float)((e.y - detectedFace.y) + (eyeSize.height / 2)), (float)eyeSize.width,
 					        (float)eyeSize.height };
 
-					Imgproc.rectangle(frame, e.tl(), e.br(), new Scalar(255, 0, 0, 255), 1);
+					Imgproc.rectangle(originalFrame, e.tl(), e.br(), new Scalar(255, 0, 0, 255), 1);
 				}
 			return eyeCoordinates;
 		}
 
 
+	/**
+	 * Sets the factor the frames are scaled by before the face and profile
+	 * cascades are run. The smallest faces are at least a fifth of the height
+	 * of the frame, so the cascades can search a smaller frame for the same
+	 * faces much faster. The eyes are still searched for at full resolution.
+	 *
+	 * @param detectionScale
+	 *            The factor, in (0, 1], with 1 to run the cascades at full
+	 *            resolution
+	 */
+	public void setDetectionScale(float detectionScale)
+		{
+			if (!((detectionScale > 0) && (detectionScale <= 1)))
+				{
+					throw new IllegalArgumentException("The detection scale must be in (0, 1]");
+				}
+			this.detectionScale = detectionScale;
+
+			// The tracked regions are in the coordinates of the scaled frame
+			trackedRegions = new Rect[0];
+			trackedVelocities = new float[0];
+			framesSinceFullScan = 0;
+		}
+
+
+	/**
+	 * Sets the number of frames between two searches of the whole frame when
+	 * tracking, which is how long it can take to find a face entering the
+	 * frame.
+	 *
+	 * @param fullScanInterval
+	 *            The number of frames, 1 to search the whole frame every
+	 *            frame
+	 */
+	public void setFullScanInterval(int fullScanInterval)
+		{
+			if (fullScanInterval < 1) { throw new IllegalArgumentException("The full scan interval must be positive"); }
+			this.fullScanInterval = fullScanInterval;
+		}
+
+
+	/**
+	 * Sets whether only the regions around the faces found in the last frame
+	 * are searched, rather than the whole frame, which is much faster when
+	 * the faces are small. The whole frame is still searched every few
+	 * frames and whenever the faces are lost.
+	 *
+	 * @param tracking
+	 *            True to search around the tracked faces
+	 */
+	public void setTracking(boolean tracking)
+		{
+			this.tracking = tracking;
+			trackedRegions = new Rect[0];
+			trackedVelocities = new float[0];
+			framesSinceFullScan = 0;
+		}
+
+
+	/**
+	 * Remembers the faces and profiles found by the last scan as the regions
+	 * to search in the next frame. The motion of each one is estimated from
+	 * the nearest region of the last frame, if it is closer than its width.
+	 */
+	private void track( )
+		{
+			final Rect[ ] regions = new Rect[scannedFaces.length + scannedProfiles.length];
+			System.arraycopy(scannedFaces, 0, regions, 0, scannedFaces.length);
+			System.arraycopy(scannedProfiles, 0, regions, scannedFaces.length, scannedProfiles.length);
+
+			final float[ ] velocities = new float[regions.length * 2];
+			for (int i = 0; i < regions.length; i++)
+				{
+					final float x = regions[i].x + (regions[i].width / 2f), y = regions[i].y + (regions[i].height / 2f);
+					float nearest = regions[i].width;
+					for (final Rect last : trackedRegions)
+						{
+							final float dx = x - (last.x + (last.width / 2f)), dy = y - (last.y + (last.height / 2f));
+							final float distance = (float)Math.sqrt((dx * dx) + (dy * dy));
+							if (distance < nearest)
+								{
+									nearest = distance;
+									velocities[2 * i] = dx;
+									velocities[(2 * i) + 1] = dy;
+								}
+						}
+				}
+
+			// The rectangles are changed by the processing of the faces
+			for (int i = 0; i < regions.length; i++)
+				{
+					regions[i] = new Rect(regions[i].x, regions[i].y, regions[i].width, regions[i].height);
+				}
+			trackedRegions = regions;
+			trackedVelocities = velocities;
+		}
+
+
 	/**
 	 * Converts the Mat object to an Image object so that it can be encapsulated
 	 * by a PImage to work with processing. Found at:
@@ -0,0 +1,657 @@
+package facemapping;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.opencv.core.Mat;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+
+/**
+ * Runs the capture, detection and texture update of a FaceDetector on their
+ * own threads so that the Processing draw loop never waits on the webcam or
+ * the Haar cascades. Every face found in a frame is followed by the
+ * FaceTracker of the detector, so each person gets their own texture. The
+ * stages are connected by small bounded queues which drop the oldest item
+ * when a later stage falls behind, and the results are published as an
+ * immutable Snapshot that can be read without blocking.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class FacePipeline {
+
+	/**
+	 * The faces detected in a frame along with the frame buffer they were
+	 * found in.
+	 */
+	private static class PendingDetection {
+
+		/**
+		 * The usable faces detected in the frame
+		 */
+		private final List <FaceDetection>	detections;
+
+		/**
+		 * The frame buffer the faces were detected in, or null if no face was
+		 * found
+		 */
+		private final Mat					frame;
+
+
+		/**
+		 * Instantiates a pending detection.
+		 *
+		 * @param detections
+		 *            The usable faces detected in the frame
+		 * @param frame
+		 *            The frame buffer the faces were detected in, or null if
+		 *            no face was found
+		 */
+		private PendingDetection(List <FaceDetection> detections, Mat frame)
+			{
+				this.detections = detections;
+				this.frame = frame;
+			}
+
+
+		/**
+		 * Releases the regions of the faces and returns the frame buffer to
+		 * the pool of the given pipeline.
+		 *
+		 * @param pipeline
+		 *            The pipeline the frame buffer belongs to
+		 */
+		private void release(FacePipeline pipeline)
+			{
+				for (final FaceDetection detection : detections)
+					{
+						detection.release();
+					}
+				pipeline.recycle(frame);
+			}
+	}
+
+
+	/**
+	 * An immutable view of the most recent output of the pipeline.
+	 */
+	public static class Snapshot {
+
+		/**
+		 * The most recent frame, with the detected faces outlined
+		 */
+		private final PImage		frame;
+
+		/**
+		 * The number of texture updates published before this snapshot
+		 */
+		private final long			generation;
+
+		/**
+		 * The texture of the face followed the longest, or a blank texture if
+		 * no face is followed
+		 */
+		private final PImage		texture;
+
+		/**
+		 * The texture of every face followed, oldest first
+		 */
+		private final List <PImage>	textures;
+
+
+		/**
+		 * Instantiates a snapshot.
+		 *
+		 * @param frame
+		 *            The most recent frame
+		 * @param texture
+		 *            The texture of the face followed the longest
+		 * @param textures
+		 *            The texture of every face followed, oldest first
+		 * @param generation
+		 *            The number of texture updates so far
+		 */
+		private Snapshot(PImage frame, PImage texture, List <PImage> textures, long generation)
+			{
+				this.frame = frame;
+				this.texture = texture;
+				this.textures = textures;
+				this.generation = generation;
+			}
+
+
+		/**
+		 * Accessor for the most recent frame. The images of the frames are
+		 * reused every other frame, so they keep their GPU textures.
+		 *
+		 * @return A PImage of the last frame that went through detection.
+		 */
+		public PImage getFrame( )
+			{
+				return frame;
+			}
+
+
+		/**
+		 * Accessor for the generation of the textures. It only increases when
+		 * the version of the texture of a face changes or a face is no longer
+		 * followed, so a new generation always has something to upload.
+		 *
+		 * @return The number of texture updates so far.
+		 */
+		public long getGeneration( )
+			{
+				return generation;
+			}
+
+
+		/**
+		 * Accessor for the texture of the face that has been followed the
+		 * longest.
+		 *
+		 * @return A PImage of the face texture, blank if no face is followed.
+		 */
+		public PImage getTexture( )
+			{
+				return texture;
+			}
+
+
+		/**
+		 * Accessor for the texture of every face currently followed. The
+		 * images of a face are reused every other time its texture changes,
+		 * so they keep their GPU textures.
+		 *
+		 * @return An unmodifiable list of the face textures, oldest face
+		 *         first.
+		 */
+		public List <PImage> getTextures( )
+			{
+				return textures;
+			}
+	}
+
+
+	/**
+	 * The work done by a single stage of the pipeline.
+	 */
+	private interface Stage {
+
+		/**
+		 * Runs the stage until the pipeline is stopped.
+		 *
+		 * @throws InterruptedException
+		 *             If the pipeline is stopped while the stage is waiting.
+		 */
+		void run( ) throws InterruptedException;
+	}
+
+
+	/**
+	 * The published copy of the texture of a tracked face. The texture is
+	 * copied into two images in turn, so that the image drawn from the last
+	 * snapshot is not overwritten by the next update, and each image keeps
+	 * its GPU texture from one update to the next.
+	 */
+	private static class TrackTexture {
+
+		/**
+		 * The index of the image holding the latest copy, or -1 if there is
+		 * none yet
+		 */
+		private int				current	= -1;
+
+		/**
+		 * The two images the texture is copied into
+		 */
+		private final PImage[ ]	images	= new PImage[2];
+
+		/**
+		 * The version of the DetectedFace that was last copied
+		 */
+		private long			version	= -1;
+
+
+		/**
+		 * Accessor for the latest copy of the texture.
+		 *
+		 * @return The image holding the latest copy.
+		 */
+		private PImage getImage( )
+			{
+				return images[current];
+			}
+
+
+		/**
+		 * Copies the texture of the face if it changed since the last copy.
+		 *
+		 * @param face
+		 *            The DetectedFace of the track
+		 * @return True if the texture was copied, false if it did not change.
+		 */
+		private boolean refresh(DetectedFace face)
+			{
+				if (face.getVersion() == version) { return false; }
+
+				final PImage composite = face.toPImage();
+				final int next = (current + 1) % images.length;
+				if (images[next] == null)
+					{
+						images[next] = new PImage(composite.width, composite.height, PConstants.ARGB);
+					}
+				System.arraycopy(composite.pixels, 0, images[next].pixels, 0, composite.pixels.length);
+				images[next].updatePixels();
+
+				current = next;
+				version = face.getVersion();
+				return true;
+			}
+	}
+
+
+	/**
+	 * The number of frame buffers shared by the stages
+	 */
+	private static final int						FRAME_BUFFERS	= 6;
+
+	/**
+	 * The number of consecutive frames that cannot be read before the frame
+	 * source is considered to have ended
+	 */
+	private static final int						MAX_FAILED_READS	= 10;
+
+	/**
+	 * The maximum number of items waiting between two stages
+	 */
+	private static final int						QUEUE_CAPACITY	= 2;
+
+	/**
+	 * How long the capture stage waits after a frame could not be read, in
+	 * milliseconds
+	 */
+	private static final long						READ_RETRY_MILLIS	= 100;
+
+	/**
+	 * Frames read from the webcam waiting for detection
+	 */
+	private final BlockingQueue <Mat>				capturedFrames	= new ArrayBlockingQueue <Mat>(QUEUE_CAPACITY);
+
+	/**
+	 * Detected faces waiting to be blended into the textures
+	 */
+	private final BlockingQueue <PendingDetection>	detections		= new ArrayBlockingQueue <PendingDetection>(
+	        QUEUE_CAPACITY);
+
+	/**
+	 * Whether the capture stage stopped because no more frames could be read
+	 */
+	private volatile boolean						endOfStream		= false;
+
+	/**
+	 * The FaceDetector used to read frames and detect faces
+	 */
+	private final FaceDetector						faceDetector;
+
+	/**
+	 * Frames that are not in use by any stage
+	 */
+	private final BlockingQueue <Mat>				freeFrames		= new ArrayBlockingQueue <Mat>(FRAME_BUFFERS);
+
+	/**
+	 * The most recent output of the pipeline
+	 */
+	private final AtomicReference <Snapshot>		latest;
+
+	/**
+	 * Whether the pipeline threads should keep running
+	 */
+	private volatile boolean						running			= false;
+
+	/**
+	 * The threads running each stage
+	 */
+	private Thread									captureThread, detectionThread, textureThread;
+
+
+	/**
+	 * Instantiates a pipeline around the given FaceDetector. The detector
+	 * should not be used by any other thread once the pipeline is started.
+	 *
+	 * @param faceDetector
+	 *            The FaceDetector used to read frames and detect faces
+	 */
+	public FacePipeline(FaceDetector faceDetector)
+		{
+			this.faceDetector = faceDetector;
+			for (int i = 0; i < FRAME_BUFFERS; i++)
+				{
+					freeFrames.add(new Mat());
+				}
+			latest = new AtomicReference <Snapshot>(new Snapshot(new PImage(1, 1),
+			        faceDetector.getDetectedFace().toPImage().copy(), Collections.<PImage> emptyList(), 0));
+		}
+
+
+	/**
+	 * Reads frames from the frame source of the detector and hands them off
+	 * to the detection stage.
+	 * If detection is behind, the oldest waiting frame is dropped so that the
+	 * detection always works on a recent frame. A frame that cannot be read
+	 * is retried after a short wait, and the stage stops once too many reads
+	 * in a row have failed, which is the end of a video or of a directory of
+	 * images.
+	 *
+	 * @throws InterruptedException
+	 *             If the pipeline is stopped while waiting for a frame buffer.
+	 */
+	private void capture( ) throws InterruptedException
+		{
+			int failedReads = 0;
+			while (running)
+				{
+					final Mat frame = freeFrames.take();
+					if (!faceDetector.readFrame(frame))
+						{
+							freeFrames.put(frame);
+
+							// A webcam can also fail to deliver its first frames
+							if (++failedReads >= MAX_FAILED_READS)
+								{
+									endOfStream = true;
+									return;
+								}
+							Thread.sleep(READ_RETRY_MILLIS);
+							continue;
+						}
+					failedReads = 0;
+
+					while (!capturedFrames.offer(frame))
+						{
+							recycle(capturedFrames.poll());
+						}
+				}
+		}
+
+
+	/**
+	 * Creates a thread running one stage of the pipeline until it is stopped.
+	 *
+	 * @param stage
+	 *            The work done by the stage
+	 * @param name
+	 *            The name of the thread
+	 * @return A daemon thread that has not been started yet.
+	 */
+	private Thread createStageThread(final Stage stage, String name)
+		{
+			final Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run( )
+					{
+						try
+							{
+								stage.run();
+							}
+						catch (final InterruptedException e)
+							{
+								// The pipeline was stopped
+							}
+					}
+			}, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+
+	/**
+	 * Searches each captured frame for every face, publishes the frame and
+	 * hands off the usable faces to the texture stage, even if there is none.
+	 *
+	 * @throws InterruptedException
+	 *             If the pipeline is stopped while waiting for a frame.
+	 */
+	private void detect( ) throws InterruptedException
+		{
+			// The frames are converted into two images in turn, so that the
+			// image drawn from the last snapshot is not overwritten and both
+			// keep their GPU textures
+			final MatConverter converter = new MatConverter();
+			final PImage[ ] images = new PImage[2];
+			int nextImage = 0;
+			while (running)
+				{
+					final Mat frame = capturedFrames.take();
+					List <FaceDetection> found = Collections.emptyList();
+					try
+						{
+							found = faceDetector.findFaces(frame);
+
+							PImage image = images[nextImage];
+							if ((image == null) || (image.width != frame.width()) || (image.height != frame.height()))
+								{
+									image = new PImage(frame.width(), frame.height(), PConstants.ARGB);
+									images[nextImage] = image;
+								}
+							converter.toPImage(frame, image);
+							nextImage = (nextImage + 1) % images.length;
+
+							Snapshot current, next;
+							do
+								{
+									current = latest.get();
+									next = new Snapshot(image, current.texture, current.textures, current.generation);
+								}
+							while (!latest.compareAndSet(current, next));
+						}
+					catch (final Exception e)
+						{
+							e.printStackTrace();
+						}
+
+					// A frame without a face still reaches the tracker so that the
+					// faces that left age out, but its buffer is not needed
+					Mat kept = frame;
+					if (found.isEmpty())
+						{
+							recycle(frame);
+							kept = null;
+						}
+
+					final PendingDetection pending = new PendingDetection(found, kept);
+					while (!detections.offer(pending))
+						{
+							final PendingDetection stale = detections.poll();
+							if (stale != null)
+								{
+									stale.release(this);
+								}
+						}
+				}
+		}
+
+
+	/**
+	 * Accessor for the most recent output of the pipeline. This never blocks.
+	 *
+	 * @return The latest snapshot of the frame and the face texture.
+	 */
+	public Snapshot getSnapshot( )
+		{
+			return latest.get();
+		}
+
+
+	/**
+	 * Returns whether the frame source has ended, in which case no new frame
+	 * is captured and the snapshot will no longer change.
+	 *
+	 * @return True if the capture stage stopped because no frame could be
+	 *         read.
+	 */
+	public boolean isEndOfStream( )
+		{
+			return endOfStream;
+		}
+
+
+	/**
+	 * Returns a frame buffer to the pool once every stage is done with it.
+	 *
+	 * @param frame
+	 *            The frame buffer. Ignored if null.
+	 */
+	private void recycle(Mat frame)
+		{
+			if (frame != null)
+				{
+					freeFrames.offer(frame);
+				}
+		}
+
+
+	/**
+	 * Starts the capture, detection and texture threads.
+	 */
+	public void start( )
+		{
+			if (running) { return; }
+			running = true;
+			endOfStream = false;
+
+			captureThread = createStageThread(new Stage() {
+
+				@Override
+				public void run( ) throws InterruptedException
+					{
+						capture();
+					}
+			}, "FacePipeline-capture");
+			detectionThread = createStageThread(new Stage() {
+
+				@Override
+				public void run( ) throws InterruptedException
+					{
+						detect();
+					}
+			}, "FacePipeline-detection");
+			textureThread = createStageThread(new Stage() {
+
+				@Override
+				public void run( ) throws InterruptedException
+					{
+						updateTexture();
+					}
+			}, "FacePipeline-texture");
+
+			captureThread.start();
+			detectionThread.start();
+			textureThread.start();
+		}
+
+
+	/**
+	 * Stops the pipeline threads and waits for them to finish. The webcam is
+	 * not released.
+	 */
+	public void stop( )
+		{
+			if (!running) { return; }
+			running = false;
+
+			for (final Thread thread : new Thread[ ] { captureThread, detectionThread, textureThread })
+				{
+					thread.interrupt();
+					try
+						{
+							thread.join();
+						}
+					catch (final InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							return;
+						}
+				}
+		}
+
+
+	/**
+	 * Matches the detected faces to the faces followed by the tracker, blends
+	 * each one into the texture of its track and publishes the textures.
+	 *
+	 * @throws InterruptedException
+	 *             If the pipeline is stopped while waiting for a face.
+	 */
+	private void updateTexture( ) throws InterruptedException
+		{
+			final FaceTracker tracker = faceDetector.getTracker();
+			final PImage blank = latest.get().texture;
+
+			// The composites are updated in place, so each track publishes a
+			// copy, which is only refreshed when its version changes
+			Map <Integer, TrackTexture> published = new HashMap <Integer, TrackTexture>();
+			long generation = latest.get().generation;
+			while (running)
+				{
+					final PendingDetection pending = detections.take();
+					try
+						{
+							tracker.update(pending.detections);
+
+							final Map <Integer, TrackTexture> copies = new HashMap <Integer, TrackTexture>();
+							final List <PImage> textures = new ArrayList <PImage>();
+							boolean changed = false;
+							for (final FaceTracker.Track track : tracker.getTracks())
+								{
+									TrackTexture copy = published.get(track.getId());
+									if (copy == null)
+										{
+											copy = new TrackTexture();
+										}
+									changed |= copy.refresh(track.getFace());
+									copies.put(track.getId(), copy);
+									textures.add(copy.getImage());
+								}
+
+							// A new track was refreshed, so only a removed one is left
+							changed |= copies.size() != published.size();
+							published = copies;
+							if (!changed)
+								{
+									continue;
+								}
+							generation++;
+
+							final PImage texture = textures.isEmpty() ? blank : textures.get(0);
+							Snapshot current, next;
+							do
+								{
+									current = latest.get();
+									next = new Snapshot(current.frame, texture, Collections.unmodifiableList(textures),
+									        generation);
+								}
+							while (!latest.compareAndSet(current, next));
+						}
+					catch (final Exception e)
+						{
+							e.printStackTrace();
+						}
+					finally
+						{
+							pending.release(this);
+						}
+				}
+		}
+}
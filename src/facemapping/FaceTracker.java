@@ -0,0 +1,305 @@
+package facemapping;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import org.opencv.core.Rect;
+
+
+/**
+ * Follows the faces found in consecutive frames so that each person keeps
+ * their own DetectedFace. A face is matched to the nearest track whose last
+ * bounds are close enough to its own, and starts a new track otherwise. A
+ * track that is not matched for too many frames is dropped and its
+ * DetectedFace is released, so update() should also be called for the frames
+ * in which no face was found. The faces matched during a frame are blended
+ * into their textures in parallel, since every track has its own
+ * DetectedFace.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class FaceTracker {
+
+	/**
+	 * A face followed from one frame to the next.
+	 */
+	public static class Track {
+
+		/**
+		 * The center of the face in the last frame it was found in
+		 */
+		private float				centerX, centerY;
+
+		/**
+		 * The texture built from the face
+		 */
+		private final DetectedFace	face	= new DetectedFace();
+
+		/**
+		 * The identifier of the track, unique for a tracker
+		 */
+		private final int			id;
+
+		/**
+		 * The number of frames since the face was last found
+		 */
+		private int					misses	= 0;
+
+		/**
+		 * The size of the face in the last frame it was found in
+		 */
+		private float				width, height;
+
+
+		/**
+		 * Instantiates a track for a newly found face.
+		 *
+		 * @param id
+		 *            The identifier of the track
+		 * @param bounds
+		 *            The bounds of the face
+		 */
+		private Track(int id, Rect bounds)
+			{
+				this.id = id;
+				moveTo(bounds);
+			}
+
+
+		/**
+		 * Measures how far some bounds are from the face, relative to its
+		 * size.
+		 *
+		 * @param bounds
+		 *            The bounds of a face found in a frame
+		 * @return The distance between the centers in multiples of the width
+		 *         of the face.
+		 */
+		private float distanceTo(Rect bounds)
+			{
+				final float dx = (bounds.x + (bounds.width / 2f)) - centerX;
+				final float dy = (bounds.y + (bounds.height / 2f)) - centerY;
+				return (float)Math.sqrt((dx * dx) + (dy * dy)) / width;
+			}
+
+
+		/**
+		 * Accessor for the x coordinate of the center of the face, in the
+		 * last frame it was found in.
+		 *
+		 * @return The x coordinate of the center, in pixels.
+		 */
+		public float getCenterX( )
+			{
+				return centerX;
+			}
+
+
+		/**
+		 * Accessor for the y coordinate of the center of the face, in the
+		 * last frame it was found in.
+		 *
+		 * @return The y coordinate of the center, in pixels.
+		 */
+		public float getCenterY( )
+			{
+				return centerY;
+			}
+
+
+		/**
+		 * Accessor for the texture built from the face.
+		 *
+		 * @return The DetectedFace of the track.
+		 */
+		public DetectedFace getFace( )
+			{
+				return face;
+			}
+
+
+		/**
+		 * Accessor for the height of the face, in the last frame it was found
+		 * in.
+		 *
+		 * @return The height of the face, in pixels.
+		 */
+		public float getHeight( )
+			{
+				return height;
+			}
+
+
+		/**
+		 * Accessor for the identifier of the track, which stays the same for
+		 * as long as the face is followed.
+		 *
+		 * @return The identifier of the track.
+		 */
+		public int getId( )
+			{
+				return id;
+			}
+
+
+		/**
+		 * Accessor for the number of frames since the face was last found.
+		 *
+		 * @return 0 if the face was found in the last frame.
+		 */
+		public int getMisses( )
+			{
+				return misses;
+			}
+
+
+		/**
+		 * Accessor for the width of the face, in the last frame it was found
+		 * in.
+		 *
+		 * @return The width of the face, in pixels.
+		 */
+		public float getWidth( )
+			{
+				return width;
+			}
+
+
+		/**
+		 * Moves the track to where the face was found.
+		 *
+		 * @param bounds
+		 *            The bounds of the face
+		 */
+		private void moveTo(Rect bounds)
+			{
+				width = bounds.width;
+				height = bounds.height;
+				centerX = bounds.x + (width / 2);
+				centerY = bounds.y + (height / 2);
+				misses = 0;
+			}
+	}
+
+
+	/**
+	 * The largest distance between a face and a track it is matched to, in
+	 * multiples of the width of the face of the track
+	 */
+	private static final float	MATCH_DISTANCE	= 0.5f;
+
+	/**
+	 * The number of frames a face can go unfound before its track is dropped
+	 */
+	private static final int	MAX_MISSES		= 15;
+
+
+	/**
+	 * The faces matched to a track during the current update, in the same
+	 * order as the matched tracks
+	 */
+	private final List <FaceDetection>		matchedDetections	= new ArrayList <FaceDetection>();
+
+	/**
+	 * The tracks matched to a face during the current update
+	 */
+	private final List <Track>				matchedTracks		= new ArrayList <Track>();
+
+	/**
+	 * The identifier given to the next track
+	 */
+	private int								nextId				= 0;
+
+	/**
+	 * The faces currently followed, oldest first
+	 */
+	private final List <Track>				tracks				= new ArrayList <Track>();
+
+
+	/**
+	 * Accessor for the faces currently followed.
+	 *
+	 * @return An unmodifiable list of the tracks, oldest first.
+	 */
+	public List <Track> getTracks( )
+		{
+			return Collections.unmodifiableList(tracks);
+		}
+
+
+	/**
+	 * Matches the faces found in a frame to the tracks, starting a track for
+	 * every face that matches none, and blends each face into the texture of
+	 * its track. The faces are matched in order, each to the nearest track
+	 * that was not matched yet.
+	 *
+	 * @param detections
+	 *            The usable faces found in the frame
+	 * @return The number of textures updated, which is the number of faces.
+	 */
+	public int update(List <FaceDetection> detections)
+		{
+			matchedTracks.clear();
+			matchedDetections.clear();
+			for (final Track track : tracks)
+				{
+					track.misses++;
+				}
+
+			for (final FaceDetection detection : detections)
+				{
+					final Rect bounds = detection.getBounds();
+					Track nearest = null;
+					float nearestDistance = MATCH_DISTANCE;
+					for (final Track track : tracks)
+						{
+							final float distance = track.distanceTo(bounds);
+							if ((track.misses > 0) && (distance <= nearestDistance))
+								{
+									nearest = track;
+									nearestDistance = distance;
+								}
+						}
+
+					if (nearest == null)
+						{
+							nearest = new Track(nextId++, bounds);
+							tracks.add(nearest);
+						}
+					nearest.moveTo(bounds);
+					matchedTracks.add(nearest);
+					matchedDetections.add(detection);
+				}
+
+			for (int i = tracks.size() - 1; i >= 0; i--)
+				{
+					if (tracks.get(i).misses > MAX_MISSES)
+						{
+							tracks.remove(i).face.release();
+						}
+				}
+
+			// Every track has its own texture, so one face per task
+			final List <ForkJoinTask <?>> textureUpdates = new ArrayList <ForkJoinTask <?>>();
+			for (int i = 0; i < matchedTracks.size(); i++)
+				{
+					final FaceDetection detection = matchedDetections.get(i);
+					final DetectedFace face = matchedTracks.get(i).face;
+					textureUpdates.add(ForkJoinTask.adapt(new Runnable() {
+
+						@Override
+						public void run( )
+							{
+								detection.applyTo(face);
+							}
+					}));
+				}
+			ForkJoinTask.invokeAll(textureUpdates);
+			return matchedTracks.size();
+		}
+}
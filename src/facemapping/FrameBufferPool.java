@@ -0,0 +1,333 @@
+package facemapping;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+
+/**
+ * Holds the OpenCV buffers used while searching a frame for faces so that
+ * they are reused from one frame to the next instead of being allocated on
+ * every call and left for the garbage collector to finalize. The buffers are
+ * owned by a single FaceDetector and must only be used by one thread. Every
+ * native allocation made through the pool is counted, including the small
+ * headers of the submatrices, which cannot be reused, and the data of a
+ * buffer that OpenCV reallocated because it was written with another size.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class FrameBufferPool {
+
+	/**
+	 * The number of native buffers allocated by this pool so far
+	 */
+	private long				allocations	= 0;
+
+	/**
+	 * The address of the data of each pooled buffer at the end of the last
+	 * frame, in the same order as the buffers
+	 */
+	private final long[ ]		dataAddresses;
+
+	/**
+	 * The rectangles of the eyes detected in a face
+	 */
+	private final MatOfRect		eyes;
+
+	/**
+	 * The rectangles of the frontal faces detected in a frame
+	 */
+	private final MatOfRect		faces;
+
+	/**
+	 * The number of native buffers allocated by this pool during the current
+	 * frame
+	 */
+	private int					frameAllocations	= 0;
+
+	/**
+	 * The frame in grayscale
+	 */
+	private final Mat			grayFrame;
+
+	/**
+	 * The number of native buffers allocated by this pool during the last
+	 * frame that ended
+	 */
+	private int					lastFrameAllocations	= 0;
+
+	/**
+	 * An empty size, meaning that there is no maximum face size
+	 */
+	private final Size			maxFaceSize	= new Size();
+
+	/**
+	 * The minimum size of a face
+	 */
+	private final Size			minFaceSize	= new Size();
+
+	/**
+	 * The buffers reused from one frame to the next, whose data OpenCV
+	 * reallocates when they are written with another size
+	 */
+	private final Mat[ ]		pooled;
+
+	/**
+	 * The grayscale frame flipped horizontally
+	 */
+	private final Mat			profileFrame;
+
+	/**
+	 * The rectangles of the profiles detected in a frame
+	 */
+	private final MatOfRect		profiles;
+
+	/**
+	 * The grayscale frame downscaled for the cascades
+	 */
+	private final Mat			scaledFrame;
+
+	/**
+	 * The submatrices handed out during the current frame
+	 */
+	private final List <Mat>	views		= new ArrayList <Mat>();
+
+
+	/**
+	 * Instantiates the pool and allocates its buffers.
+	 */
+	public FrameBufferPool( )
+		{
+			grayFrame = allocate(new Mat());
+			profileFrame = allocate(new Mat());
+			scaledFrame = allocate(new Mat());
+			faces = allocate(new MatOfRect());
+			profiles = allocate(new MatOfRect());
+			eyes = allocate(new MatOfRect());
+			pooled = new Mat[ ] { grayFrame, profileFrame, scaledFrame, faces, profiles, eyes };
+			dataAddresses = new long[pooled.length];
+		}
+
+
+	/**
+	 * Counts a newly allocated native buffer.
+	 *
+	 * @param buffer
+	 *            The buffer that was allocated
+	 * @return The same buffer
+	 */
+	private <M extends Mat> M allocate(M buffer)
+		{
+			allocations++;
+			frameAllocations++;
+			return buffer;
+		}
+
+
+	/**
+	 * Returns a submatrix that shares its data with the given matrix and
+	 * outlives the current frame, such as the region of a detected face
+	 * handed to another thread. It is counted as an allocation but must be
+	 * released by whoever holds it.
+	 *
+	 * @param parent
+	 *            The matrix to take the region from
+	 * @param region
+	 *            The region of the matrix
+	 * @return A submatrix which is valid until it is released.
+	 */
+	public Mat crop(Mat parent, Rect region)
+		{
+			return allocate(parent.submat(region));
+		}
+
+
+	/**
+	 * Releases the submatrices handed out during the current frame and counts
+	 * the pooled buffers whose data was reallocated during it. This should be
+	 * called once the frame has been processed.
+	 */
+	public void endFrame( )
+		{
+			for (final Mat view : views)
+				{
+					view.release();
+				}
+			views.clear();
+
+			// A buffer whose data moved was reallocated by OpenCV
+			for (int i = 0; i < pooled.length; i++)
+				{
+					final long address = pooled[i].dataAddr();
+					if (address != dataAddresses[i])
+						{
+							dataAddresses[i] = address;
+							if (address != 0)
+								{
+									allocate(pooled[i]);
+								}
+						}
+				}
+			lastFrameAllocations = frameAllocations;
+			frameAllocations = 0;
+		}
+
+
+	/**
+	 * Returns the number of native buffers allocated by this pool, including
+	 * the headers of the submatrices.
+	 *
+	 * @return The number of allocations so far.
+	 */
+	public long getAllocationCount( )
+		{
+			return allocations;
+		}
+
+
+	/**
+	 * Accessor for the buffer holding the rectangles of detected eyes.
+	 *
+	 * @return A reusable MatOfRect.
+	 */
+	public MatOfRect getEyes( )
+		{
+			return eyes;
+		}
+
+
+	/**
+	 * Accessor for the buffer holding the rectangles of detected faces.
+	 *
+	 * @return A reusable MatOfRect.
+	 */
+	public MatOfRect getFaces( )
+		{
+			return faces;
+		}
+
+
+	/**
+	 * Accessor for the grayscale frame buffer.
+	 *
+	 * @return A reusable matrix.
+	 */
+	public Mat getGrayFrame( )
+		{
+			return grayFrame;
+		}
+
+
+	/**
+	 * Returns the number of native buffers allocated during the last frame,
+	 * including the pooled buffers that OpenCV reallocated. Once the first
+	 * frame has been processed, this should mostly be a few submatrix headers
+	 * per face found and only include a frame sized buffer when the size of
+	 * the frames changes.
+	 *
+	 * @return The number of allocations during the last frame.
+	 */
+	public int getLastFrameAllocationCount( )
+		{
+			return lastFrameAllocations;
+		}
+
+
+	/**
+	 * Returns the maximum face size to pass to the cascades.
+	 *
+	 * @return An empty size, which means that there is no maximum.
+	 */
+	public Size getMaxFaceSize( )
+		{
+			return maxFaceSize;
+		}
+
+
+	/**
+	 * Returns the minimum face size to pass to the cascades.
+	 *
+	 * @param size
+	 *            The minimum width and height of a face (in pixels)
+	 * @return A reusable size set to the given dimensions.
+	 */
+	public Size getMinFaceSize(int size)
+		{
+			minFaceSize.width = size;
+			minFaceSize.height = size;
+			return minFaceSize;
+		}
+
+
+	/**
+	 * Accessor for the flipped grayscale frame buffer.
+	 *
+	 * @return A reusable matrix.
+	 */
+	public Mat getProfileFrame( )
+		{
+			return profileFrame;
+		}
+
+
+	/**
+	 * Accessor for the buffer holding the rectangles of detected profiles.
+	 *
+	 * @return A reusable MatOfRect.
+	 */
+	public MatOfRect getProfiles( )
+		{
+			return profiles;
+		}
+
+
+	/**
+	 * Accessor for the downscaled grayscale frame buffer.
+	 *
+	 * @return A reusable matrix.
+	 */
+	public Mat getScaledFrame( )
+		{
+			return scaledFrame;
+		}
+
+
+	/**
+	 * Releases all of the buffers. The pool should not be used afterwards.
+	 */
+	public void release( )
+		{
+			endFrame();
+			grayFrame.release();
+			profileFrame.release();
+			scaledFrame.release();
+			faces.release();
+			profiles.release();
+			eyes.release();
+		}
+
+
+	/**
+	 * Returns a submatrix that shares its data with the given matrix. Only
+	 * the small header is allocated, and it is released by endFrame().
+	 *
+	 * @param parent
+	 *            The matrix to take the region from
+	 * @param region
+	 *            The region of the matrix
+	 * @return A submatrix which is valid until the end of the frame.
+	 */
+	public Mat view(Mat parent, Rect region)
+		{
+			final Mat view = allocate(parent.submat(region));
+			views.add(view);
+			return view;
+		}
+}
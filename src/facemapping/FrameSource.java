@@ -0,0 +1,54 @@
+package facemapping;
+
+
+import org.opencv.core.Mat;
+
+
+/**
+ * Supplies the frames searched for faces, so that the detection does not
+ * depend on where they come from: a webcam, a directory of still images or a
+ * recorded video.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public interface FrameSource {
+
+	/**
+	 * A source without any frame, for a detector that is handed its frames
+	 * directly through findFace() or findFaces()
+	 */
+	FrameSource	NO_FRAMES	= new FrameSource() {
+
+								@Override
+								public boolean read(Mat destination)
+									{
+										return false;
+									}
+
+
+								@Override
+								public void release( )
+									{
+									}
+							};
+
+
+	/**
+	 * Reads the next frame.
+	 *
+	 * @param destination
+	 *            The matrix the frame is read into
+	 * @return True if a frame was read, false if there is none left or it
+	 *         could not be read.
+	 */
+	boolean read(Mat destination);
+
+
+	/**
+	 * Releases the resources held by the source. No frame can be read
+	 * afterwards.
+	 */
+	void release( );
+}
@@ -0,0 +1,119 @@
+package facemapping;
+
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+
+/**
+ * Reads the still images of a directory as frames, in the order of their
+ * names, such as the bundled Test Images. The images are decoded as they are
+ * read and files that cannot be decoded are skipped.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class ImageDirectorySource implements FrameSource {
+
+	/**
+	 * Accepts the files whose extension is one of an image OpenCV can decode
+	 */
+	static final FileFilter			IMAGE_FILTER	= new FileFilter() {
+
+														@Override
+														public boolean accept(File file)
+															{
+																final String name = file.getName().toLowerCase();
+																return file.isFile() && (name.endsWith(".jpg")
+																        || name.endsWith(".jpeg") || name.endsWith(".png")
+																        || name.endsWith(".bmp"));
+															}
+													};
+
+
+	/**
+	 * The images of the directory, sorted by name
+	 */
+	private final File[ ]			images;
+
+	/**
+	 * Whether the images start over once the last one was read
+	 */
+	private final boolean			loop;
+
+	/**
+	 * The index of the next image to read
+	 */
+	private int						next			= 0;
+
+
+	/**
+	 * Lists the images of a directory.
+	 *
+	 * @param directory
+	 *            The directory of the images
+	 * @param loop
+	 *            True to start over once the last image was read, false to
+	 *            stop reading frames
+	 * @throws IllegalArgumentException
+	 *             If the directory does not exist or contains no image.
+	 */
+	public ImageDirectorySource(File directory, boolean loop)
+		{
+			final File[ ] files = directory.listFiles(IMAGE_FILTER);
+			if (files == null) { throw new IllegalArgumentException(directory + " is not a directory"); }
+			if (files.length == 0) { throw new IllegalArgumentException(directory + " contains no image"); }
+
+			Arrays.sort(files);
+			this.images = files;
+			this.loop = loop;
+		}
+
+
+	/**
+	 * Returns the number of images in the directory.
+	 *
+	 * @return The number of frames read before starting over.
+	 */
+	public int getImageCount( )
+		{
+			return images.length;
+		}
+
+
+	@Override
+	public boolean read(Mat destination)
+		{
+			for (int attempts = 0; attempts < images.length; attempts++)
+				{
+					if (next == images.length)
+						{
+							if (!loop) { return false; }
+							next = 0;
+						}
+
+					final Mat image = Imgcodecs.imread(images[next++].getPath());
+					if (!image.empty())
+						{
+							image.copyTo(destination);
+							image.release();
+							return true;
+						}
+				}
+			return false;
+		}
+
+
+	/**
+	 * Does nothing since no image is kept between reads.
+	 */
+	@Override
+	public void release( )
+		{
+		}
+}
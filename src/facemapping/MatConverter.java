@@ -0,0 +1,133 @@
+package facemapping;
+
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+
+/**
+ * Converts between OpenCV matrices and PImages by copying the whole matrix
+ * in a single call instead of reading it one pixel at a time. The byte buffer
+ * used for the copy is kept between conversions of matrices of the same size,
+ * so a converter should only be used by one thread at a time.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class MatConverter {
+
+	/**
+	 * The bytes of the last converted matrix
+	 */
+	private byte[ ]	buffer	= new byte[0];
+
+
+	/**
+	 * Returns the byte buffer, reallocating it if it does not have the given
+	 * size. OpenCV rejects a buffer whose length is not a multiple of the
+	 * number of channels of the matrix, so a larger buffer cannot be used.
+	 *
+	 * @param size
+	 *            The number of bytes needed
+	 * @return A buffer of exactly the given size.
+	 */
+	private byte[ ] getBuffer(int size)
+		{
+			if (buffer.length != size)
+				{
+					buffer = new byte[size];
+				}
+			return buffer;
+		}
+
+
+	/**
+	 * Converts a PImage to an OpenCV matrix of BGR pixels. The alpha channel
+	 * is dropped.
+	 *
+	 * @param image
+	 *            A PImage of ARGB pixels.
+	 * @param m
+	 *            The matrix to write to, it is (re)allocated if it does not
+	 *            have the size and type of the image.
+	 */
+	public void toMat(PImage image, Mat m)
+		{
+			final int width = image.width, height = image.height;
+			m.create(height, width, CvType.CV_8UC3);
+
+			final byte[ ] bytes = getBuffer(width * height * 3);
+			final int[ ] pixels = image.pixels;
+			for (int i = 0, b = 0; i < (width * height); i++, b += 3)
+				{
+					final int color = pixels[i];
+					bytes[b] = (byte)color;
+					bytes[b + 1] = (byte)(color >> 8);
+					bytes[b + 2] = (byte)(color >> 16);
+				}
+			m.put(0, 0, bytes);
+		}
+
+
+	/**
+	 * Converts an OpenCV matrix to a new PImage.
+	 *
+	 * @param m
+	 *            A matrix of BGR or grayscale pixels.
+	 * @return A PImage of ARGB pixels with the same dimensions.
+	 */
+	public PImage toPImage(Mat m)
+		{
+			final PImage result = new PImage(m.width(), m.height(), PConstants.ARGB);
+			toPImage(m, result);
+			return result;
+		}
+
+
+	/**
+	 * Converts an OpenCV matrix into an existing PImage.
+	 *
+	 * @param m
+	 *            A matrix of BGR or grayscale pixels.
+	 * @param image
+	 *            A PImage with the same dimensions as the matrix, its pixels
+	 *            are overwritten with opaque ARGB pixels.
+	 */
+	public void toPImage(Mat m, PImage image)
+		{
+			final int width = m.width(), height = m.height();
+			if ((image.width != width) || (image.height != height))
+				{
+					throw new IllegalArgumentException("The image is " + image.width + "x" + image.height
+					        + " but the matrix is " + width + "x" + height);
+				}
+
+			final int channels = m.channels();
+			final byte[ ] bytes = getBuffer(width * height * channels);
+			m.get(0, 0, bytes); // get all the pixels
+
+			final int[ ] pixels = image.pixels;
+			if (channels == 1)
+				{
+					for (int i = 0; i < (width * height); i++)
+						{
+							final int gray = bytes[i] & 0xFF;
+							pixels[i] = (0xFF << 24) | (gray << 16) | (gray << 8) | gray;
+						}
+				}
+			else
+				{
+					// apparently the colors are bgr, not rgb
+					for (int i = 0, b = 0; i < (width * height); i++, b += channels)
+						{
+							final int r = bytes[b + 2] & 0xFF, g = bytes[b + 1] & 0xFF, bl = bytes[b] & 0xFF;
+							pixels[i] = (0xFF << 24) | (r << 16) | (g << 8) | bl;
+						}
+				}
+			image.updatePixels();
+		}
+}
@@ -0,0 +1,146 @@
+package facemapping;
+
+
+import org.opencv.core.Mat;
+
+
+/**
+ * Hands out the frames of another source at a fixed rate, so that recorded
+ * footage is replayed at the same pace on every run whatever the speed of the
+ * source. A frame is never handed out early, and a reader that falls behind
+ * is not given a burst of frames to catch up, so the rate is an upper bound
+ * that is only reached if the reader keeps up. The frames that were asked
+ * for after their time are counted as late.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class RateLimitedFrameSource implements FrameSource {
+
+	/**
+	 * The number of frames read so far
+	 */
+	private long				frameCount		= 0;
+
+	/**
+	 * The number of frames that were asked for after their time
+	 */
+	private long				lateFrames		= 0;
+
+	/**
+	 * The time at which the next frame is due, in nanoseconds
+	 */
+	private long				nextFrameTime;
+
+	/**
+	 * The time between two frames, in nanoseconds
+	 */
+	private final long			period;
+
+	/**
+	 * The source the frames are read from
+	 */
+	private final FrameSource	source;
+
+
+	/**
+	 * Limits the rate of a source.
+	 *
+	 * @param source
+	 *            The source the frames are read from
+	 * @param framesPerSecond
+	 *            The number of frames handed out per second
+	 * @throws IllegalArgumentException
+	 *             If the rate is not positive.
+	 */
+	public RateLimitedFrameSource(FrameSource source, double framesPerSecond)
+		{
+			if (!(framesPerSecond > 0)) { throw new IllegalArgumentException("The frame rate must be positive"); }
+			this.source = source;
+			this.period = Math.round(1e9 / framesPerSecond);
+		}
+
+
+	/**
+	 * Returns the number of frames read so far.
+	 *
+	 * @return The number of frames handed out.
+	 */
+	public long getFrameCount( )
+		{
+			return frameCount;
+		}
+
+
+	/**
+	 * Returns the number of frames that were asked for after their time, that
+	 * is how often the reader could not keep up with the rate.
+	 *
+	 * @return The number of late frames.
+	 */
+	public long getLateFrameCount( )
+		{
+			return lateFrames;
+		}
+
+
+	/**
+	 * Waits until the next frame is due and reads it. The first frame is
+	 * read right away.
+	 *
+	 * @param destination
+	 *            The matrix the frame is read into
+	 * @return True if a frame was read, false if there is none left, it
+	 *         could not be read or the thread was interrupted while waiting.
+	 */
+	@Override
+	public boolean read(Mat destination)
+		{
+			long now = System.nanoTime();
+			if (frameCount == 0)
+				{
+					nextFrameTime = now;
+				}
+
+			if (now < nextFrameTime)
+				{
+					try
+						{
+							// Sleep can wake up early, so it is checked again
+							do
+								{
+									final long wait = nextFrameTime - now;
+									Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+									now = System.nanoTime();
+								}
+							while (now < nextFrameTime);
+						}
+					catch (final InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							return false;
+						}
+				}
+			else
+				if (now > nextFrameTime)
+					{
+						// A late reader does not shorten the time to the next
+						// frame
+						lateFrames++;
+						nextFrameTime = now;
+					}
+
+			nextFrameTime += period;
+			if (!source.read(destination)) { return false; }
+			frameCount++;
+			return true;
+		}
+
+
+	@Override
+	public void release( )
+		{
+			source.release();
+		}
+}
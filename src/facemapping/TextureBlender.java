@@ -0,0 +1,201 @@
+package facemapping;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import processing.core.PImage;
+
+
+/**
+ * Blends a newly detected face into a texture by working directly on the
+ * pixel arrays of the PImages, one row after another. Large textures can be
+ * split into bands of rows which are blended in parallel. The result is the
+ * same as blending the pixels one at a time, whether or not it is parallel.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class TextureBlender {
+
+	/**
+	 * Blends a band of rows, splitting it in half until it is small enough.
+	 */
+	private static class BlendTask extends RecursiveAction {
+
+		/**
+		 * The pixels of the newly detected face
+		 */
+		private final int[ ]	newPixels;
+
+		/**
+		 * The pixels of the preexisting texture
+		 */
+		private final int[ ]	oldPixels;
+
+		/**
+		 * The first row (inclusive) and the last row (exclusive) of the band
+		 */
+		private final int		startRow, endRow;
+
+		/**
+		 * The weight of the newly detected face
+		 */
+		private final float		weight;
+
+		/**
+		 * The width of the texture
+		 */
+		private final int		width;
+
+
+		/**
+		 * Instantiates the task for a band of rows.
+		 *
+		 * @param oldPixels
+		 *            The pixels of the preexisting texture
+		 * @param newPixels
+		 *            The pixels of the newly detected face
+		 * @param width
+		 *            The width of the texture
+		 * @param startRow
+		 *            The first row of the band
+		 * @param endRow
+		 *            The row after the last row of the band
+		 * @param weight
+		 *            The weight of the newly detected face
+		 */
+		private BlendTask(int[ ] oldPixels, int[ ] newPixels, int width, int startRow, int endRow, float weight)
+			{
+				this.oldPixels = oldPixels;
+				this.newPixels = newPixels;
+				this.width = width;
+				this.startRow = startRow;
+				this.endRow = endRow;
+				this.weight = weight;
+			}
+
+
+		@Override
+		protected void compute( )
+			{
+				if ((endRow - startRow) <= ROWS_PER_BAND)
+					{
+						blendRange(oldPixels, newPixels, startRow * width, endRow * width, weight);
+					}
+				else
+					{
+						final int middle = (startRow + endRow) >>> 1;
+						invokeAll(new BlendTask(oldPixels, newPixels, width, startRow, middle, weight),
+						        new BlendTask(oldPixels, newPixels, width, middle, endRow, weight));
+					}
+			}
+	}
+
+
+	/**
+	 * The number of rows blended by a single task when blending in parallel
+	 */
+	private static final int	ROWS_PER_BAND	= 32;
+
+
+	/**
+	 * Blends two ARGB pixels together according to the given weight. A
+	 * transparent or black old pixel is replaced by the new pixel.
+	 *
+	 * @param oldPixel
+	 *            The first pixel value
+	 * @param newPixel
+	 *            The second pixel value
+	 * @param weight
+	 *            The weight of the second pixel value, should be in [0, 1]
+	 * @return The blended pixel value
+	 */
+	public static int blendPixel(int oldPixel, int newPixel, float weight)
+		{
+			if ((oldPixel == 0) || (oldPixel == 0xFF000000))
+				{
+					oldPixel = newPixel;
+				}
+			final float oldWeight = 1 - weight;
+			final int r = (int)((((oldPixel & 0xFF0000) >> 16) * oldWeight) + (((newPixel & 0xFF0000) >> 16) * weight));
+			final int g = (int)((((oldPixel & 0x00FF00) >> 8) * oldWeight) + (((newPixel & 0x00FF00) >> 8) * weight));
+			final int b = (int)(((oldPixel & 0x0000FF) * oldWeight) + ((newPixel & 0x0000FF) * weight));
+
+			return (0xFF << 24) | (r << 16) | (g << 8) | (b);
+		}
+
+
+	/**
+	 * Blends a contiguous range of pixels.
+	 *
+	 * @param oldPixels
+	 *            The pixels of the preexisting texture, which are overwritten
+	 * @param newPixels
+	 *            The pixels of the newly detected face
+	 * @param start
+	 *            The index of the first pixel
+	 * @param end
+	 *            The index after the last pixel
+	 * @param weight
+	 *            The weight of the newly detected face
+	 */
+	private static void blendRange(int[ ] oldPixels, int[ ] newPixels, int start, int end, float weight)
+		{
+			for (int i = start; i < end; i++)
+				{
+					oldPixels[i] = blendPixel(oldPixels[i], newPixels[i], weight);
+				}
+		}
+
+
+	/**
+	 * Whether large textures are blended in parallel
+	 */
+	private final boolean	parallel;
+
+
+	/**
+	 * Instantiates a blender.
+	 *
+	 * @param parallel
+	 *            True if bands of rows should be blended in parallel
+	 */
+	public TextureBlender(boolean parallel)
+		{
+			this.parallel = parallel;
+		}
+
+
+	/**
+	 * Blends a newly detected face into a texture. The two images should have
+	 * the same dimensions.
+	 *
+	 * @param oldTexture
+	 *            The preexisting texture, which is overwritten
+	 * @param newFace
+	 *            A texture to be blended into the old texture
+	 * @param weight
+	 *            The weight of the new face, should be in [0, 1]
+	 */
+	public void blend(PImage oldTexture, PImage newFace, float weight)
+		{
+			if ((oldTexture.width != newFace.width) || (oldTexture.height != newFace.height))
+				{
+					throw new IllegalArgumentException("The textures have different dimensions");
+				}
+
+			if (parallel && (oldTexture.height > ROWS_PER_BAND))
+				{
+					ForkJoinPool.commonPool().invoke(
+					        new BlendTask(oldTexture.pixels, newFace.pixels, oldTexture.width, 0, oldTexture.height,
+					                weight));
+				}
+			else
+				{
+					blendRange(oldTexture.pixels, newFace.pixels, 0, oldTexture.pixels.length, weight);
+				}
+			oldTexture.updatePixels();
+		}
+}
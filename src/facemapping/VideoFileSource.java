@@ -0,0 +1,77 @@
+package facemapping;
+
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+
+/**
+ * Reads the frames of a recorded video, so that the same footage can be
+ * replayed through the detection.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class VideoFileSource implements FrameSource {
+
+	/**
+	 * Decodes the video
+	 */
+	private final VideoCapture	capture;
+
+	/**
+	 * Whether the video starts over once its last frame was read
+	 */
+	private final boolean		loop;
+
+
+	/**
+	 * Opens a video file.
+	 *
+	 * @param path
+	 *            The path of the video
+	 * @param loop
+	 *            True to start over once the last frame was read, false to
+	 *            stop reading frames
+	 * @throws IllegalArgumentException
+	 *             If the video could not be opened.
+	 */
+	public VideoFileSource(String path, boolean loop)
+		{
+			capture = new VideoCapture(path);
+			this.loop = loop;
+			if (!capture.isOpened()) { throw new IllegalArgumentException("The video " + path + " could not be opened"); }
+		}
+
+
+	/**
+	 * Returns the frame rate the video was recorded at, which can be given to
+	 * a RateLimitedFrameSource to replay it in real time.
+	 *
+	 * @return The number of frames per second, or 0 if it is unknown.
+	 */
+	public double getFramesPerSecond( )
+		{
+			return capture.get(Videoio.CAP_PROP_FPS);
+		}
+
+
+	@Override
+	public boolean read(Mat destination)
+		{
+			if (capture.read(destination)) { return true; }
+			if (!loop) { return false; }
+
+			capture.set(Videoio.CAP_PROP_POS_FRAMES, 0);
+			return capture.read(destination);
+		}
+
+
+	@Override
+	public void release( )
+		{
+			capture.release();
+		}
+}
@@ -0,0 +1,429 @@
+package scene3D;
+
+
+/**
+ * Stores the position, rotation, velocities and bounding boxes of many bodies
+ * in parallel arrays indexed by slot, so that they can all be moved and kept
+ * inside the world in tight loops instead of one object at a time. A Cube is a
+ * view over one slot of a store. The arrays are package-private so that Cube
+ * and World can read them directly.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class BodyStore {
+
+	/**
+	 * The rotational velocity of each body about each axis
+	 */
+	final float[ ]					angularVelocityX, angularVelocityY, angularVelocityZ;
+
+	/**
+	 * The absolute bounding box of each body, in the same order as the slots
+	 */
+	private final BoundingBoxes		boundingBoxes;
+
+	/**
+	 * Whether each body moves when it is integrated
+	 */
+	final boolean[ ]				dynamic;
+
+	/**
+	 * Half of the size of each body along each of its axes
+	 */
+	final float[ ]					halfExtent;
+
+	/**
+	 * How far the drawn poses are between the previous poses and the current
+	 * ones, from 0 to 1
+	 */
+	private float					interpolation	= 1;
+
+	/**
+	 * The position of the center of each body
+	 */
+	final float[ ]					positionX, positionY, positionZ;
+
+	/**
+	 * The position and rotation of each body before the last simulation step
+	 */
+	final float[ ]					previousPositionX, previousPositionY, previousPositionZ, previousRotationX,
+	        previousRotationY, previousRotationZ;
+
+	/**
+	 * The rotation of each body about each axis, in radians
+	 */
+	final float[ ]					rotationX, rotationY, rotationZ;
+
+	/**
+	 * The number of bodies in the store
+	 */
+	private int						size	= 0;
+
+	/**
+	 * The translational velocity of each body along each axis
+	 */
+	final float[ ]					velocityX, velocityY, velocityZ;
+
+	/**
+	 * Incremented every time the store moves a body
+	 */
+	private final long[ ]			versions;
+
+
+	/**
+	 * Instantiates an empty store.
+	 *
+	 * @param capacity
+	 *            The maximum number of bodies
+	 */
+	public BodyStore(int capacity)
+		{
+			positionX = new float[capacity];
+			positionY = new float[capacity];
+			positionZ = new float[capacity];
+			rotationX = new float[capacity];
+			rotationY = new float[capacity];
+			rotationZ = new float[capacity];
+			velocityX = new float[capacity];
+			velocityY = new float[capacity];
+			velocityZ = new float[capacity];
+			angularVelocityX = new float[capacity];
+			angularVelocityY = new float[capacity];
+			angularVelocityZ = new float[capacity];
+			previousPositionX = new float[capacity];
+			previousPositionY = new float[capacity];
+			previousPositionZ = new float[capacity];
+			previousRotationX = new float[capacity];
+			previousRotationY = new float[capacity];
+			previousRotationZ = new float[capacity];
+			halfExtent = new float[capacity];
+			dynamic = new boolean[capacity];
+			versions = new long[capacity];
+			boundingBoxes = new BoundingBoxes(capacity);
+		}
+
+
+	/**
+	 * Adds a body at rest with no rotation.
+	 *
+	 * @param x
+	 *            The x coordinate of the center of the body
+	 * @param y
+	 *            The y coordinate of the center of the body
+	 * @param z
+	 *            The z coordinate of the center of the body
+	 * @param halfExtent
+	 *            Half of the size of the body
+	 * @return The slot of the body.
+	 */
+	public int add(float x, float y, float z, float halfExtent)
+		{
+			if (size == positionX.length) { throw new IllegalStateException("The body store is full"); }
+
+			final int slot = size++;
+			positionX[slot] = x;
+			positionY[slot] = y;
+			positionZ[slot] = z;
+			this.halfExtent[slot] = halfExtent;
+			dynamic[slot] = true;
+			savePreviousPose(slot);
+			boundingBoxes.add(0, 0, 0, 0, 0, 0);
+			updateBoundingBox(slot);
+			return slot;
+		}
+
+
+	/**
+	 * Keeps every body inside some bounds, using the bounding boxes computed
+	 * by the last integration. A body that sticks out of the bounds is moved
+	 * back inside by the distance between its center and the side of its box
+	 * and its velocity along that axis is reversed.
+	 *
+	 * @param bounds
+	 *            The box the bodies must stay in
+	 */
+	public void clampTo(BoundingBox3D bounds)
+		{
+			clampTo(bounds, 0, size);
+		}
+
+
+	/**
+	 * Keeps a range of bodies inside some bounds. Bodies are clamped
+	 * independently of each other, so separate ranges can be clamped in
+	 * parallel.
+	 *
+	 * @param bounds
+	 *            The box the bodies must stay in
+	 * @param start
+	 *            The first slot (inclusive)
+	 * @param end
+	 *            The last slot (exclusive)
+	 */
+	public void clampTo(BoundingBox3D bounds, int start, int end)
+		{
+			final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+			final float maxX = bounds.getMaxX(), maxY = bounds.getMaxY(), maxZ = bounds.getMaxZ();
+			final BoundingBoxes boxes = boundingBoxes;
+
+			for (int i = start; i < end; i++)
+				{
+					boolean moved = false;
+
+					if (boxes.getMinX(i) < minX)
+						{
+							positionX[i] = minX + Math.abs(positionX[i] - boxes.getMinX(i));
+							velocityX[i] = -velocityX[i];
+							moved = true;
+						}
+					else
+						if (boxes.getMaxX(i) > maxX)
+							{
+								positionX[i] = maxX - Math.abs(positionX[i] - boxes.getMaxX(i));
+								velocityX[i] = -velocityX[i];
+								moved = true;
+							}
+
+					if (boxes.getMinY(i) < minY)
+						{
+							positionY[i] = minY + Math.abs(positionY[i] - boxes.getMinY(i));
+							velocityY[i] = -velocityY[i];
+							moved = true;
+						}
+					else
+						if (boxes.getMaxY(i) > maxY)
+							{
+								positionY[i] = maxY - Math.abs(positionY[i] - boxes.getMaxY(i));
+								velocityY[i] = -velocityY[i];
+								moved = true;
+							}
+
+					if (boxes.getMinZ(i) < minZ)
+						{
+							positionZ[i] = minZ + Math.abs(positionZ[i] - boxes.getMinZ(i));
+							velocityZ[i] = -velocityZ[i];
+							moved = true;
+						}
+					else
+						if (boxes.getMaxZ(i) > maxZ)
+							{
+								positionZ[i] = maxZ - Math.abs(positionZ[i] - boxes.getMaxZ(i));
+								velocityZ[i] = -velocityZ[i];
+								moved = true;
+							}
+
+					if (moved)
+						{
+							versions[i]++;
+						}
+				}
+		}
+
+
+	/**
+	 * Returns the absolute bounding boxes of the bodies, as of the last time
+	 * they were integrated. The box of a body is at the index of its slot.
+	 *
+	 * @return The bounding boxes of the bodies.
+	 */
+	public BoundingBoxes getBoundingBoxes( )
+		{
+			return boundingBoxes;
+		}
+
+
+	/**
+	 * Returns how far the drawn poses are between the previous poses and the
+	 * current ones.
+	 *
+	 * @return The interpolation factor, from 0 to 1
+	 */
+	public float getInterpolation( )
+		{
+			return interpolation;
+		}
+
+
+	/**
+	 * Returns the version of a body, which changes every time the store moves
+	 * it.
+	 *
+	 * @param slot
+	 *            The slot of the body
+	 * @return The number of times the store moved the body.
+	 */
+	public long getVersion(int slot)
+		{
+			return versions[slot];
+		}
+
+
+	/**
+	 * Moves every dynamic body by its velocities and recomputes the bounding
+	 * boxes of all of the bodies.
+	 */
+	public void integrate( )
+		{
+			integrate(0, size);
+		}
+
+
+	/**
+	 * Moves a range of dynamic bodies by their velocities and recomputes their
+	 * bounding boxes. Bodies are moved independently of each other, so
+	 * separate ranges can be integrated in parallel.
+	 *
+	 * @param start
+	 *            The first slot (inclusive)
+	 * @param end
+	 *            The last slot (exclusive)
+	 */
+	public void integrate(int start, int end)
+		{
+			for (int i = start; i < end; i++)
+				{
+					if (dynamic[i])
+						{
+							positionX[i] += velocityX[i];
+							positionY[i] += velocityY[i];
+							positionZ[i] += velocityZ[i];
+							rotationX[i] += angularVelocityX[i];
+							rotationY[i] += angularVelocityY[i];
+							rotationZ[i] += angularVelocityZ[i];
+							versions[i]++;
+						}
+				}
+
+			for (int i = start; i < end; i++)
+				{
+					updateBoundingBox(i);
+				}
+		}
+
+
+	/**
+	 * Moves a single body by its velocities if it is dynamic and recomputes
+	 * its bounding box.
+	 *
+	 * @param slot
+	 *            The slot of the body
+	 */
+	public void integrate(int slot)
+		{
+			if (dynamic[slot])
+				{
+					positionX[slot] += velocityX[slot];
+					positionY[slot] += velocityY[slot];
+					positionZ[slot] += velocityZ[slot];
+					rotationX[slot] += angularVelocityX[slot];
+					rotationY[slot] += angularVelocityY[slot];
+					rotationZ[slot] += angularVelocityZ[slot];
+					versions[slot]++;
+				}
+			updateBoundingBox(slot);
+		}
+
+
+	/**
+	 * Interpolates a coordinate of a body between its previous and current
+	 * values for drawing.
+	 *
+	 * @param previous
+	 *            The previous values of the coordinate
+	 * @param current
+	 *            The current values of the coordinate
+	 * @param slot
+	 *            The slot of the body
+	 * @return The value of the coordinate to draw.
+	 */
+	float interpolate(float[ ] previous, float[ ] current, int slot)
+		{
+			return previous[slot] + ((current[slot] - previous[slot]) * interpolation);
+		}
+
+
+	/**
+	 * Copies the current pose of a body to its previous pose.
+	 *
+	 * @param slot
+	 *            The slot of the body
+	 */
+	public void savePreviousPose(int slot)
+		{
+			previousPositionX[slot] = positionX[slot];
+			previousPositionY[slot] = positionY[slot];
+			previousPositionZ[slot] = positionZ[slot];
+			previousRotationX[slot] = rotationX[slot];
+			previousRotationY[slot] = rotationY[slot];
+			previousRotationZ[slot] = rotationZ[slot];
+		}
+
+
+	/**
+	 * Copies the current pose of every body to its previous pose, before a
+	 * simulation step.
+	 */
+	public void savePreviousPoses( )
+		{
+			System.arraycopy(positionX, 0, previousPositionX, 0, size);
+			System.arraycopy(positionY, 0, previousPositionY, 0, size);
+			System.arraycopy(positionZ, 0, previousPositionZ, 0, size);
+			System.arraycopy(rotationX, 0, previousRotationX, 0, size);
+			System.arraycopy(rotationY, 0, previousRotationY, 0, size);
+			System.arraycopy(rotationZ, 0, previousRotationZ, 0, size);
+		}
+
+
+	/**
+	 * Sets how far the drawn poses are between the previous poses and the
+	 * current ones.
+	 *
+	 * @param interpolation
+	 *            The interpolation factor, from 0 (previous poses) to 1
+	 *            (current poses)
+	 */
+	public void setInterpolation(float interpolation)
+		{
+			this.interpolation = interpolation;
+		}
+
+
+	/**
+	 * Returns the number of bodies.
+	 *
+	 * @return The number of bodies in the store.
+	 */
+	public int size( )
+		{
+			return size;
+		}
+
+
+	/**
+	 * Recomputes the absolute bounding box of a body from its position and
+	 * rotation. The extent of the box along a world axis is the sum of the
+	 * absolute values of the corresponding row of the rotation matrix times
+	 * the half extent of the body.
+	 *
+	 * @param slot
+	 *            The slot of the body
+	 */
+	public void updateBoundingBox(int slot)
+		{
+			final float cx = (float)Math.cos(rotationX[slot]), sx = (float)Math.sin(rotationX[slot]);
+			final float cy = (float)Math.cos(rotationY[slot]), sy = (float)Math.sin(rotationY[slot]);
+			final float cz = (float)Math.cos(rotationZ[slot]), sz = (float)Math.sin(rotationZ[slot]);
+			final float half = halfExtent[slot];
+
+			final float xExtent = half * (Math.abs(cy * cz) + Math.abs(cy * sz) + Math.abs(sy));
+			final float yExtent = half
+			        * (Math.abs((cx * sz) + (sx * sy * cz)) + Math.abs((cx * cz) - (sx * sy * sz)) + Math.abs(sx * cy));
+			final float zExtent = half
+			        * (Math.abs((sx * sz) - (cx * sy * cz)) + Math.abs((sx * cz) + (cx * sy * sz)) + Math.abs(cx * cy));
+
+			final float x = positionX[slot], y = positionY[slot], z = positionZ[slot];
+			boundingBoxes.set(slot, x - xExtent, y - yExtent, z - zExtent, x + xExtent, y + yExtent, z + zExtent);
+		}
+}
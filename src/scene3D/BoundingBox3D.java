@@ -11,6 +11,78 @@ package scene3D;
  */
 public class BoundingBox3D {
 	
+	/**
+	 * Finds where a ray enters an axis-aligned box with the slab test, which
+	 * intersects the intervals of the ray between the two planes of each
+	 * axis.
+	 *
+	 * @param minX
+	 *            The minimum x coordinate of the box
+	 * @param minY
+	 *            The minimum y coordinate of the box
+	 * @param minZ
+	 *            The minimum z coordinate of the box
+	 * @param maxX
+	 *            The maximum x coordinate of the box
+	 * @param maxY
+	 *            The maximum y coordinate of the box
+	 * @param maxZ
+	 *            The maximum z coordinate of the box
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it enters the box, 0 if it starts inside, or infinity if
+	 *         it misses the box.
+	 */
+	static float intersectRay(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float originX,
+	        float originY, float originZ, float directionX, float directionY, float directionZ)
+		{
+			float near = 0, far = Float.POSITIVE_INFINITY;
+
+			// A ray parallel to a slab is either always or never between its
+			// planes
+			if (directionX != 0)
+				{
+					final float t1 = (minX - originX) / directionX, t2 = (maxX - originX) / directionX;
+					near = Math.max(near, Math.min(t1, t2));
+					far = Math.min(far, Math.max(t1, t2));
+				}
+			else
+				if ((originX < minX) || (originX > maxX)) { return Float.POSITIVE_INFINITY; }
+
+			if (directionY != 0)
+				{
+					final float t1 = (minY - originY) / directionY, t2 = (maxY - originY) / directionY;
+					near = Math.max(near, Math.min(t1, t2));
+					far = Math.min(far, Math.max(t1, t2));
+				}
+			else
+				if ((originY < minY) || (originY > maxY)) { return Float.POSITIVE_INFINITY; }
+
+			if (directionZ != 0)
+				{
+					final float t1 = (minZ - originZ) / directionZ, t2 = (maxZ - originZ) / directionZ;
+					near = Math.max(near, Math.min(t1, t2));
+					far = Math.min(far, Math.max(t1, t2));
+				}
+			else
+				if ((originZ < minZ) || (originZ > maxZ)) { return Float.POSITIVE_INFINITY; }
+
+			if (near > far) { return Float.POSITIVE_INFINITY; }
+			return near;
+		}
+		
+		
 	/**
 	 * Size of the bounding box
 	 */
@@ -154,6 +226,33 @@ public class BoundingBox3D {
 		}
 		
 		
+	/**
+	 * Finds where a ray enters the bounding box.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it enters the box, 0 if it starts inside, or infinity if
+	 *         it misses the box.
+	 */
+	public float intersectRay(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ)
+		{
+			return intersectRay(getMinX(), getMinY(), getMinZ(), getMaxX(), getMaxY(), getMaxZ(), originX, originY,
+			        originZ, directionX, directionY, directionZ);
+		}
+		
+		
 	/**
 	 * Checks if a point contained inside the bounding box.
 	 *
@@ -0,0 +1,300 @@
+package scene3D;
+
+
+import java.util.Arrays;
+
+
+/**
+ * A growable list of axis-aligned bounding boxes stored as parallel arrays of
+ * their minimum and maximum coordinates, so that they can be scanned without
+ * following a reference per box.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class BoundingBoxes {
+
+	/**
+	 * The maximum coordinates of each box
+	 */
+	private float[ ]	maxX, maxY, maxZ;
+
+	/**
+	 * The minimum coordinates of each box
+	 */
+	private float[ ]	minX, minY, minZ;
+
+	/**
+	 * The number of boxes
+	 */
+	private int			size	= 0;
+
+
+	/**
+	 * Instantiates an empty list of boxes.
+	 *
+	 * @param capacity
+	 *            The number of boxes that can be added before growing
+	 */
+	public BoundingBoxes(int capacity)
+		{
+			capacity = Math.max(capacity, 1);
+			minX = new float[capacity];
+			minY = new float[capacity];
+			minZ = new float[capacity];
+			maxX = new float[capacity];
+			maxY = new float[capacity];
+			maxZ = new float[capacity];
+		}
+
+
+	/**
+	 * Adds a box to the end of the list.
+	 *
+	 * @param box
+	 *            The box to add
+	 * @return The index of the box
+	 */
+	public int add(BoundingBox3D box)
+		{
+			return add(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+		}
+
+
+	/**
+	 * Adds a box to the end of the list.
+	 *
+	 * @param minX
+	 *            The minimum x coordinate of the box
+	 * @param minY
+	 *            The minimum y coordinate of the box
+	 * @param minZ
+	 *            The minimum z coordinate of the box
+	 * @param maxX
+	 *            The maximum x coordinate of the box
+	 * @param maxY
+	 *            The maximum y coordinate of the box
+	 * @param maxZ
+	 *            The maximum z coordinate of the box
+	 * @return The index of the box
+	 */
+	public int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+		{
+			if (size == this.minX.length)
+				{
+					final int capacity = size * 2;
+					this.minX = Arrays.copyOf(this.minX, capacity);
+					this.minY = Arrays.copyOf(this.minY, capacity);
+					this.minZ = Arrays.copyOf(this.minZ, capacity);
+					this.maxX = Arrays.copyOf(this.maxX, capacity);
+					this.maxY = Arrays.copyOf(this.maxY, capacity);
+					this.maxZ = Arrays.copyOf(this.maxZ, capacity);
+				}
+			set(size, minX, minY, minZ, maxX, maxY, maxZ);
+			return size++;
+		}
+
+
+	/**
+	 * Removes all of the boxes, keeping the arrays for reuse.
+	 */
+	public void clear( )
+		{
+			size = 0;
+		}
+
+
+	/**
+	 * Returns the maximum x coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The maximum x coordinate.
+	 */
+	public float getMaxX(int i)
+		{
+			return maxX[i];
+		}
+
+
+	/**
+	 * Returns the maximum y coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The maximum y coordinate.
+	 */
+	public float getMaxY(int i)
+		{
+			return maxY[i];
+		}
+
+
+	/**
+	 * Returns the maximum z coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The maximum z coordinate.
+	 */
+	public float getMaxZ(int i)
+		{
+			return maxZ[i];
+		}
+
+
+	/**
+	 * Returns the minimum x coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The minimum x coordinate.
+	 */
+	public float getMinX(int i)
+		{
+			return minX[i];
+		}
+
+
+	/**
+	 * Returns the minimum y coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The minimum y coordinate.
+	 */
+	public float getMinY(int i)
+		{
+			return minY[i];
+		}
+
+
+	/**
+	 * Returns the minimum z coordinate of a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @return The minimum z coordinate.
+	 */
+	public float getMinZ(int i)
+		{
+			return minZ[i];
+		}
+
+
+	/**
+	 * Checks if two boxes overlap. Boxes that only touch are considered to
+	 * overlap.
+	 *
+	 * @param i
+	 *            The index of the first box
+	 * @param j
+	 *            The index of the second box
+	 * @return True if the boxes overlap along all three axes.
+	 */
+	public boolean overlaps(int i, int j)
+		{
+			return (minX[i] <= maxX[j]) && (minX[j] <= maxX[i]) && (minY[i] <= maxY[j]) && (minY[j] <= maxY[i])
+			        && (minZ[i] <= maxZ[j]) && (minZ[j] <= maxZ[i]);
+		}
+
+
+	/**
+	 * Replaces a box.
+	 *
+	 * @param i
+	 *            The index of the box
+	 * @param minX
+	 *            The minimum x coordinate of the box
+	 * @param minY
+	 *            The minimum y coordinate of the box
+	 * @param minZ
+	 *            The minimum z coordinate of the box
+	 * @param maxX
+	 *            The maximum x coordinate of the box
+	 * @param maxY
+	 *            The maximum y coordinate of the box
+	 * @param maxZ
+	 *            The maximum z coordinate of the box
+	 */
+	public void set(int i, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+		{
+			this.minX[i] = minX;
+			this.minY[i] = minY;
+			this.minZ[i] = minZ;
+			this.maxX[i] = maxX;
+			this.maxY[i] = maxY;
+			this.maxZ[i] = maxZ;
+		}
+
+
+	/**
+	 * Finds the earliest time at which a box moving at a constant velocity
+	 * relative to another box touches it, by intersecting the intervals of
+	 * time during which the boxes overlap along each axis.
+	 *
+	 * @param i
+	 *            The index of the moving box
+	 * @param j
+	 *            The index of the other box
+	 * @param velocityX
+	 *            The velocity of the first box relative to the other along the
+	 *            x axis, in units per step
+	 * @param velocityY
+	 *            The velocity of the first box relative to the other along the
+	 *            y axis, in units per step
+	 * @param velocityZ
+	 *            The velocity of the first box relative to the other along the
+	 *            z axis, in units per step
+	 * @return The fraction of a step after which the boxes first touch, 0 if
+	 *         they already overlap, or infinity if they do not touch during
+	 *         the step.
+	 */
+	public float timeOfImpact(int i, int j, float velocityX, float velocityY, float velocityZ)
+		{
+			float enter = 0, exit = 1;
+
+			// Along an axis on which the boxes do not move relative to each
+			// other, they either always or never overlap
+			if (velocityX != 0)
+				{
+					final float t1 = (minX[j] - maxX[i]) / velocityX, t2 = (maxX[j] - minX[i]) / velocityX;
+					enter = Math.max(enter, Math.min(t1, t2));
+					exit = Math.min(exit, Math.max(t1, t2));
+				}
+			else
+				if ((maxX[i] < minX[j]) || (minX[i] > maxX[j])) { return Float.POSITIVE_INFINITY; }
+
+			if (velocityY != 0)
+				{
+					final float t1 = (minY[j] - maxY[i]) / velocityY, t2 = (maxY[j] - minY[i]) / velocityY;
+					enter = Math.max(enter, Math.min(t1, t2));
+					exit = Math.min(exit, Math.max(t1, t2));
+				}
+			else
+				if ((maxY[i] < minY[j]) || (minY[i] > maxY[j])) { return Float.POSITIVE_INFINITY; }
+
+			if (velocityZ != 0)
+				{
+					final float t1 = (minZ[j] - maxZ[i]) / velocityZ, t2 = (maxZ[j] - minZ[i]) / velocityZ;
+					enter = Math.max(enter, Math.min(t1, t2));
+					exit = Math.min(exit, Math.max(t1, t2));
+				}
+			else
+				if ((maxZ[i] < minZ[j]) || (minZ[i] > maxZ[j])) { return Float.POSITIVE_INFINITY; }
+
+			return enter <= exit ? enter : Float.POSITIVE_INFINITY;
+		}
+
+
+	/**
+	 * Returns the number of boxes.
+	 *
+	 * @return The number of boxes in the list.
+	 */
+	public int size( )
+		{
+			return size;
+		}
+}
@@ -0,0 +1,43 @@
+package scene3D;
+
+
+/**
+ * Finds the pairs of boxes whose axis-aligned bounding boxes overlap, so that
+ * only those pairs have to go through the exact (and much more expensive)
+ * intersection test.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public interface BroadPhase {
+
+	/**
+	 * Receives the pairs of overlapping boxes found by a broad phase.
+	 */
+	interface PairHandler {
+
+		/**
+		 * Called once for each pair of overlapping boxes.
+		 *
+		 * @param first
+		 *            The index of the first box, less than the second
+		 * @param second
+		 *            The index of the second box
+		 */
+		void handlePair(int first, int second);
+	}
+
+
+	/**
+	 * Reports every pair of overlapping boxes exactly once. Implementations
+	 * may keep state between calls to take advantage of the boxes moving
+	 * little from one frame to the next.
+	 *
+	 * @param boxes
+	 *            The boxes to test
+	 * @param handler
+	 *            The handler that is given each overlapping pair
+	 */
+	void findPairs(BoundingBoxes boxes, PairHandler handler);
+}
@@ -0,0 +1,29 @@
+package scene3D;
+
+
+/**
+ * Tests every pair of boxes against each other. It is the fastest broad phase
+ * for a handful of boxes and serves as a reference for the others.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class BruteForceBroadPhase implements BroadPhase {
+
+	@Override
+	public void findPairs(BoundingBoxes boxes, PairHandler handler)
+		{
+			final int size = boxes.size();
+			for (int i = 0; i < size; i++)
+				{
+					for (int j = i + 1; j < size; j++)
+						{
+							if (boxes.overlaps(i, j))
+								{
+									handler.handlePair(i, j);
+								}
+						}
+				}
+		}
+}
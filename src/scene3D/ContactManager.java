@@ -0,0 +1,627 @@
+package scene3D;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Keeps track of the pairs of cubes found by the broad phase from one update
+ * to the next. The axis that separated a pair during the last update is
+ * cached and tested first during the next, which settles most separated
+ * pairs with one axis instead of the full separating axis test. The pairs
+ * that start, keep or stop touching are reported to a listener, and touching
+ * cubes are pushed apart with impulses.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class ContactManager {
+
+	/**
+	 * Receives the changes in the contacts between cubes. The cubes of a pair
+	 * are always given in the order of the world.
+	 */
+	public interface ContactListener {
+
+		/**
+		 * Called when two cubes that were not touching start touching.
+		 *
+		 * @param first
+		 *            The first cube
+		 * @param second
+		 *            The second cube
+		 */
+		void contactBegan(Cube first, Cube second);
+
+
+		/**
+		 * Called when two cubes that were touching stop touching.
+		 *
+		 * @param first
+		 *            The first cube
+		 * @param second
+		 *            The second cube
+		 */
+		void contactEnded(Cube first, Cube second);
+
+
+		/**
+		 * Called on every update for which two cubes that were touching are
+		 * still touching.
+		 *
+		 * @param first
+		 *            The first cube
+		 * @param second
+		 *            The second cube
+		 */
+		void contactPersisted(Cube first, Cube second);
+	}
+
+
+	/**
+	 * An open addressing hash table from pairs of cube indices to the axis
+	 * that separated them and whether they were touching. Nothing is
+	 * allocated unless it grows.
+	 */
+	private static final class ContactTable {
+
+		/**
+		 * The key of an empty slot
+		 */
+		private static final long	EMPTY	= -1;
+
+
+		/**
+		 * Returns the key of a pair of cubes.
+		 *
+		 * @param first
+		 *            The index of the first cube
+		 * @param second
+		 *            The index of the second cube
+		 * @return The key of the pair, which is never negative.
+		 */
+		static long key(int first, int second)
+			{
+				return ((long)first << 32) | second;
+			}
+
+
+		/**
+		 * The separating axis of the pair in each slot, or -1 if it was
+		 * touching
+		 */
+		private int[ ]		axes;
+
+		/**
+		 * The number of pairs in the table
+		 */
+		private int			count	= 0;
+
+		/**
+		 * The pair in each slot, or EMPTY
+		 */
+		private long[ ]		keys;
+
+		/**
+		 * Whether the pair in each slot was touching
+		 */
+		private boolean[ ]	touching;
+
+
+		/**
+		 * Instantiates an empty table.
+		 *
+		 * @param capacity
+		 *            The number of slots, which must be a power of two
+		 */
+		ContactTable(int capacity)
+			{
+				axes = new int[capacity];
+				keys = new long[capacity];
+				touching = new boolean[capacity];
+				Arrays.fill(keys, EMPTY);
+			}
+
+
+		/**
+		 * Removes every pair.
+		 */
+		void clear( )
+			{
+				if (count > 0)
+					{
+						Arrays.fill(keys, EMPTY);
+						count = 0;
+					}
+			}
+
+
+		/**
+		 * Finds the slot of a pair.
+		 *
+		 * @param key
+		 *            The key of the pair
+		 * @return The slot of the pair, or -1 if it is not in the table.
+		 */
+		int find(long key)
+			{
+				final int mask = keys.length - 1;
+				for (int slot = hash(key) & mask;; slot = (slot + 1) & mask)
+					{
+						if (keys[slot] == key) { return slot; }
+						if (keys[slot] == EMPTY) { return -1; }
+					}
+			}
+
+
+		/**
+		 * Doubles the number of slots and adds the pairs back.
+		 */
+		private void grow( )
+			{
+				final int[ ] oldAxes = axes;
+				final long[ ] oldKeys = keys;
+				final boolean[ ] oldTouching = touching;
+				axes = new int[oldKeys.length * 2];
+				keys = new long[oldKeys.length * 2];
+				touching = new boolean[oldKeys.length * 2];
+				Arrays.fill(keys, EMPTY);
+				count = 0;
+
+				for (int slot = 0; slot < oldKeys.length; slot++)
+					{
+						if (oldKeys[slot] != EMPTY)
+							{
+								put(oldKeys[slot], oldAxes[slot], oldTouching[slot]);
+							}
+					}
+			}
+
+
+		/**
+		 * Spreads the bits of a key over the slots.
+		 *
+		 * @param key
+		 *            The key of a pair
+		 * @return The hash of the key.
+		 */
+		private int hash(long key)
+			{
+				final long h = key * 0x9E3779B97F4A7C15L;
+				return (int)(h ^ (h >>> 32));
+			}
+
+
+		/**
+		 * Adds a pair, which must not already be in the table.
+		 *
+		 * @param key
+		 *            The key of the pair
+		 * @param axis
+		 *            The axis that separated the pair, or -1
+		 * @param touched
+		 *            Whether the pair was touching
+		 */
+		void put(long key, int axis, boolean touched)
+			{
+				// Kept at most half full so that probes stay short
+				if ((count + 1) * 2 > keys.length)
+					{
+						grow();
+					}
+
+				final int mask = keys.length - 1;
+				int slot = hash(key) & mask;
+				while (keys[slot] != EMPTY)
+					{
+						slot = (slot + 1) & mask;
+					}
+				keys[slot] = key;
+				axes[slot] = axis;
+				touching[slot] = touched;
+				count++;
+			}
+	}
+
+
+	/**
+	 * The fraction of the overlap of two cubes that is removed on each update
+	 */
+	private static final float	CORRECTION	= 0.5f;
+
+	/**
+	 * The fraction of the speed at which two cubes approach each other that
+	 * they separate with. The cubes bounce off each other without losing
+	 * energy, as they do off the bounding cube.
+	 */
+	private static final float	RESTITUTION	= 1;
+
+	/**
+	 * The overlap left between two cubes, which keeps resting contacts from
+	 * starting and ending on every other update
+	 */
+	private static final float	SLOP		= 0.01f;
+
+
+	/**
+	 * The number of pairs that started touching during the last update
+	 */
+	private int					beganContacts		= 0;
+
+	/**
+	 * The number of pairs touching during the last update
+	 */
+	private int					contactCount		= 0;
+
+	/**
+	 * The pairs found during the current update
+	 */
+	private ContactTable		current				= new ContactTable(64);
+
+	/**
+	 * The cubes of the world, in the same order as the indices of the pairs
+	 */
+	private final List <Cube>	cubes;
+
+	/**
+	 * The number of pairs that stopped touching during the last update
+	 */
+	private int					endedContacts		= 0;
+
+	/**
+	 * The number of pairs that went through the full separating axis test
+	 * during the last update
+	 */
+	private int					fullTests			= 0;
+
+	/**
+	 * Receives the changes in the contacts, or null
+	 */
+	private ContactListener		listener;
+
+	/**
+	 * The pairs found during the last update
+	 */
+	private ContactTable		previous			= new ContactTable(64);
+
+	/**
+	 * Whether touching cubes are pushed apart
+	 */
+	private boolean				response			= true;
+
+	/**
+	 * The number of pairs separated by their cached axis during the last
+	 * update
+	 */
+	private int					warmStartedTests	= 0;
+
+	/**
+	 * Whether the cached separating axes are tested first
+	 */
+	private boolean				warmStarting		= true;
+
+
+	/**
+	 * Instantiates a manager with no contacts.
+	 *
+	 * @param cubes
+	 *            The cubes of the world, in the same order as the indices of
+	 *            the pairs it is given
+	 */
+	public ContactManager(List <Cube> cubes)
+		{
+			this.cubes = cubes;
+		}
+
+
+	/**
+	 * Finds an axis separating two cubes, testing the axis that separated
+	 * them during the last update first. It only reads the contacts, so it
+	 * can be called from several threads at once.
+	 *
+	 * @param first
+	 *            The index of the first cube, less than the second
+	 * @param second
+	 *            The index of the second cube
+	 * @return The separating axis found, or -1 if the cubes intersect.
+	 */
+	public int findSeparatingAxis(int first, int second)
+		{
+			int hint = -1;
+			if (warmStarting)
+				{
+					final int slot = previous.find(ContactTable.key(first, second));
+					if (slot >= 0)
+						{
+							hint = previous.axes[slot];
+						}
+				}
+			return cubes.get(first).findSeparatingAxis(cubes.get(second), hint);
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes that started touching during the
+	 * last update.
+	 *
+	 * @return The number of new contacts.
+	 */
+	public int getBeganCount( )
+		{
+			return beganContacts;
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes touching during the last update.
+	 *
+	 * @return The number of contacts.
+	 */
+	public int getContactCount( )
+		{
+			return contactCount;
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes that stopped touching during the
+	 * last update.
+	 *
+	 * @return The number of contacts that ended.
+	 */
+	public int getEndedCount( )
+		{
+			return endedContacts;
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes that went through the full
+	 * separating axis test during the last update, because they had no
+	 * cached axis, their cached axis no longer separated them, or they
+	 * intersect.
+	 *
+	 * @return The number of full separating axis tests.
+	 */
+	public int getFullTestCount( )
+		{
+			return fullTests;
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes that were found to be separated
+	 * by testing the axis cached during the previous update alone.
+	 *
+	 * @return The number of pairs settled by a single axis.
+	 */
+	public int getWarmStartedCount( )
+		{
+			return warmStartedTests;
+		}
+
+
+	/**
+	 * Pushes two touching cubes apart along the world axis on which their
+	 * bounding boxes overlap the least. The cubes do not exchange spin, so
+	 * this approximates the contact normal well enough for them. Heavier
+	 * cubes, whose mass grows with their volume, are moved less.
+	 *
+	 * @param i
+	 *            The index of the first cube
+	 * @param j
+	 *            The index of the second cube
+	 * @param boxes
+	 *            The bounding boxes of the cubes
+	 */
+	private void resolve(int i, int j, BoundingBoxes boxes)
+		{
+			final float overlapX = Math.min(boxes.getMaxX(i), boxes.getMaxX(j))
+			        - Math.max(boxes.getMinX(i), boxes.getMinX(j));
+			final float overlapY = Math.min(boxes.getMaxY(i), boxes.getMaxY(j))
+			        - Math.max(boxes.getMinY(i), boxes.getMinY(j));
+			final float overlapZ = Math.min(boxes.getMaxZ(i), boxes.getMaxZ(j))
+			        - Math.max(boxes.getMinZ(i), boxes.getMinZ(j));
+
+			final Cube a = cubes.get(i), b = cubes.get(j);
+			final float sizeA = a.getSize(), sizeB = b.getSize();
+			final float inverseMassA = 1 / (sizeA * sizeA * sizeA), inverseMassB = 1 / (sizeB * sizeB * sizeB);
+			final float inverseMass = inverseMassA + inverseMassB;
+
+			if ((overlapX <= overlapY) && (overlapX <= overlapZ))
+				{
+					final float normal = b.getTranslationX() >= a.getTranslationX() ? 1 : -1;
+					final float approach = (b.getXTranslationalVelocity() - a.getXTranslationalVelocity()) * normal;
+					if (approach < 0)
+						{
+							final float impulse = (-(1 + RESTITUTION) * approach) / inverseMass;
+							a.setXTranslationalVelocity(a.getXTranslationalVelocity() - (impulse * inverseMassA * normal));
+							b.setXTranslationalVelocity(b.getXTranslationalVelocity() + (impulse * inverseMassB * normal));
+						}
+					if (overlapX > SLOP)
+						{
+							final float push = ((overlapX - SLOP) * CORRECTION * normal) / inverseMass;
+							a.setTranslationX(a.getTranslationX() - (push * inverseMassA));
+							b.setTranslationX(b.getTranslationX() + (push * inverseMassB));
+						}
+				}
+			else
+				if (overlapY <= overlapZ)
+					{
+						final float normal = b.getTranslationY() >= a.getTranslationY() ? 1 : -1;
+						final float approach = (b.getYTranslationalVelocity() - a.getYTranslationalVelocity()) * normal;
+						if (approach < 0)
+							{
+								final float impulse = (-(1 + RESTITUTION) * approach) / inverseMass;
+								a.setYTranslationalVelocity(a.getYTranslationalVelocity() - (impulse * inverseMassA * normal));
+								b.setYTranslationalVelocity(b.getYTranslationalVelocity() + (impulse * inverseMassB * normal));
+							}
+						if (overlapY > SLOP)
+							{
+								final float push = ((overlapY - SLOP) * CORRECTION * normal) / inverseMass;
+								a.setTranslationY(a.getTranslationY() - (push * inverseMassA));
+								b.setTranslationY(b.getTranslationY() + (push * inverseMassB));
+							}
+					}
+				else
+					{
+						final float normal = b.getTranslationZ() >= a.getTranslationZ() ? 1 : -1;
+						final float approach = (b.getZTranslationalVelocity() - a.getZTranslationalVelocity()) * normal;
+						if (approach < 0)
+							{
+								final float impulse = (-(1 + RESTITUTION) * approach) / inverseMass;
+								a.setZTranslationalVelocity(a.getZTranslationalVelocity() - (impulse * inverseMassA * normal));
+								b.setZTranslationalVelocity(b.getZTranslationalVelocity() + (impulse * inverseMassB * normal));
+							}
+						if (overlapZ > SLOP)
+							{
+								final float push = ((overlapZ - SLOP) * CORRECTION * normal) / inverseMass;
+								a.setTranslationZ(a.getTranslationZ() - (push * inverseMassA));
+								b.setTranslationZ(b.getTranslationZ() + (push * inverseMassB));
+							}
+					}
+		}
+
+
+	/**
+	 * Sets the listener that receives the changes in the contacts.
+	 *
+	 * @param listener
+	 *            The new listener, or null for none
+	 */
+	public void setContactListener(ContactListener listener)
+		{
+			this.listener = listener;
+		}
+
+
+	/**
+	 * Sets whether touching cubes are pushed apart or only reported.
+	 *
+	 * @param response
+	 *            True to resolve the contacts with impulses
+	 */
+	public void setResponse(boolean response)
+		{
+			this.response = response;
+		}
+
+
+	/**
+	 * Sets whether the axis that separated a pair during the last update is
+	 * tested first. Without it, every pair goes through the full separating
+	 * axis test, which finds the same contacts.
+	 *
+	 * @param warmStarting
+	 *            True to test the cached separating axes first
+	 */
+	public void setWarmStarting(boolean warmStarting)
+		{
+			this.warmStarting = warmStarting;
+		}
+
+
+	/**
+	 * Records the pairs tested during an update, reports the changes in the
+	 * contacts and pushes the touching cubes apart. The pairs of the last
+	 * update that were not found again are reported as ended. It must be
+	 * called once per update, after the pairs were tested and from a single
+	 * thread.
+	 *
+	 * @param first
+	 *            The index of the first cube of each pair, less than the
+	 *            second
+	 * @param second
+	 *            The index of the second cube of each pair
+	 * @param axes
+	 *            The axis found to separate each pair, or -1 if it
+	 *            intersects
+	 * @param touching
+	 *            Whether the cubes of each pair are touching, which they may
+	 *            be with a separating axis if they collide later during the
+	 *            step
+	 * @param count
+	 *            The number of pairs
+	 * @param boxes
+	 *            The bounding boxes of the cubes, in the same order as the
+	 *            cubes
+	 */
+	public void update(int[ ] first, int[ ] second, int[ ] axes, boolean[ ] touching, int count, BoundingBoxes boxes)
+		{
+			beganContacts = 0;
+			contactCount = 0;
+			endedContacts = 0;
+			fullTests = 0;
+			warmStartedTests = 0;
+
+			for (int k = 0; k < count; k++)
+				{
+					final long key = ContactTable.key(first[k], second[k]);
+					final int slot = previous.find(key);
+					final boolean wasTouching = (slot >= 0) && previous.touching[slot];
+					if (warmStarting && (slot >= 0) && (axes[k] >= 0) && (axes[k] == previous.axes[slot]))
+						{
+							warmStartedTests++;
+						}
+					else
+						{
+							fullTests++;
+						}
+					current.put(key, axes[k], touching[k]);
+
+					if (touching[k])
+						{
+							contactCount++;
+							if (wasTouching)
+								{
+									if (listener != null)
+										{
+											listener.contactPersisted(cubes.get(first[k]), cubes.get(second[k]));
+										}
+								}
+							else
+								{
+									beganContacts++;
+									if (listener != null)
+										{
+											listener.contactBegan(cubes.get(first[k]), cubes.get(second[k]));
+										}
+								}
+							if (response)
+								{
+									resolve(first[k], second[k], boxes);
+								}
+						}
+					else
+						if (wasTouching)
+							{
+								endedContacts++;
+								if (listener != null)
+									{
+										listener.contactEnded(cubes.get(first[k]), cubes.get(second[k]));
+									}
+							}
+				}
+
+			// The touching pairs whose bounding boxes no longer overlap
+			for (int slot = 0; slot < previous.keys.length; slot++)
+				{
+					final long key = previous.keys[slot];
+					if ((key != ContactTable.EMPTY) && previous.touching[slot] && (current.find(key) < 0))
+						{
+							endedContacts++;
+							if (listener != null)
+								{
+									listener.contactEnded(cubes.get((int)(key >>> 32)), cubes.get((int)key));
+								}
+						}
+				}
+
+			final ContactTable swap = previous;
+			previous = current;
+			current = swap;
+			current.clear();
+		}
+}
@@ -10,6 +10,7 @@ import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PImage;
 import processing.core.PMatrix;
+import processing.core.PMatrix3D;
 import processing.core.PVector;
 import scene3Dabstract.GraphicObject3D;
 import scene3Dabstract.SimpleGraphicObject3D;
@@ -24,10 +25,72 @@ import scene3Dabstract.SimpleGraphicObject3D;
  */
 public class Cube extends SimpleGraphicObject3D {
 
+	/**
+	 * The horizontal texture coordinate at which the front of the face ends
+	 * in the face texture. The sides of the face are to the right of it.
+	 */
+	private static final float	FRONT_END_U		= 0.8f;
+
+	/**
+	 * The horizontal texture coordinate at which the front of the face starts
+	 * in the face texture
+	 */
+	private static final float	FRONT_START_U	= 0.2f;
+
+	/**
+	 * The fraction of the left and right sides of the cube, starting from the
+	 * front, which is covered by the sides of the face
+	 */
+	private static final float	SIDE_FRACTION	= 1 / 3f;
+
+	/**
+	 * The z coordinate, on a cube of size 1, at which the face texture ends on
+	 * the left and right sides
+	 */
+	private static final float	SIDE_TEXTURE_END	= 0.5f - SIDE_FRACTION;
+
+	/**
+	 * The corners of the quads that are not covered by the face texture, on a
+	 * cube of size 1, as x, y and z
+	 */
+	static final float[ ]		SOLID_QUADS			= {
+	        // Top side
+	        0.5f, 0.5f, -0.5f, -0.5f, 0.5f, -0.5f, -0.5f, 0.5f, 0.5f, 0.5f, 0.5f, 0.5f,
+	        // Bottom side
+	        0.5f, -0.5f, 0.5f, -0.5f, -0.5f, 0.5f, -0.5f, -0.5f, -0.5f, 0.5f, -0.5f, -0.5f,
+	        // Back side
+	        0.5f, -0.5f, -0.5f, -0.5f, -0.5f, -0.5f, -0.5f, 0.5f, -0.5f, 0.5f, 0.5f, -0.5f,
+	        // Back of the left side
+	        -0.5f, 0.5f, SIDE_TEXTURE_END, -0.5f, 0.5f, -0.5f, -0.5f, -0.5f, -0.5f, -0.5f, -0.5f, SIDE_TEXTURE_END,
+	        // Back of the right side
+	        0.5f, 0.5f, -0.5f, 0.5f, 0.5f, SIDE_TEXTURE_END, 0.5f, -0.5f, SIDE_TEXTURE_END, 0.5f, -0.5f, -0.5f };
+
+	/**
+	 * The corners of the quads that are covered by the face texture, on a cube
+	 * of size 1, as x, y, z and the u and v texture coordinates
+	 */
+	static final float[ ]		TEXTURED_QUADS		= {
+	        // Front side
+	        0.5f, 0.5f, 0.5f, FRONT_END_U, 0, -0.5f, 0.5f, 0.5f, FRONT_START_U, 0,
+	        -0.5f, -0.5f, 0.5f, FRONT_START_U, 1, 0.5f, -0.5f, 0.5f, FRONT_END_U, 1,
+	        // Front of the left side
+	        -0.5f, 0.5f, 0.5f, FRONT_END_U, 1, -0.5f, 0.5f, SIDE_TEXTURE_END, 1, 1,
+	        -0.5f, -0.5f, SIDE_TEXTURE_END, 1, 0, -0.5f, -0.5f, 0.5f, FRONT_END_U, 0,
+	        // Front of the right side
+	        0.5f, 0.5f, SIDE_TEXTURE_END, 1, 0, 0.5f, 0.5f, 0.5f, FRONT_END_U, 0,
+	        0.5f, -0.5f, 0.5f, FRONT_END_U, 1, 0.5f, -0.5f, SIDE_TEXTURE_END, 1, 1 };
+
 	/**
 	 * The absolute bounding box for a cube object
 	 */
 	private BoundingBox3D		absoluteBoundingBox;
+
+	/**
+	 * The pose version the absolute bounding box was built for, or -1 if it
+	 * never was
+	 */
+	private long				absoluteBoundingBoxVersion	= -1;
+
 	/**
 	 * The reference to the main application
 	 */
@@ -39,9 +102,10 @@ public class Cube extends SimpleGraphicObject3D {
 	private int					color		= 0xFF00A0A0;
 
 	/**
-	 * The image object for each side of the cube
+	 * The face texture, which covers the front of the cube and wraps around
+	 * onto its left and right sides
 	 */
-	private PImage				frontTexture, leftTexture, rightTexture;
+	private PImage				faceTexture;
 
 	/**
 	 * Determines if this cube object is the bounding cube for all the other
@@ -50,54 +114,80 @@ public class Cube extends SimpleGraphicObject3D {
 	private boolean				isBounding	= true;
 
 	/**
-	 * The relative bounding box for each cube
+	 * The box occupied by the cube in world coordinates, used for exact
+	 * intersection tests
 	 */
-	private final BoundingBox3D	relativeBoundingBox;
+	private final OrientedBoundingBox	orientedBoundingBox	= new OrientedBoundingBox();
 
 	/**
-	 * The rotation of each axis for the cube object
+	 * The pose version the oriented bounding box was computed for, or -1 if it
+	 * never was
 	 */
-	private float				rotationX, rotationY, rotationZ;
+	private long				orientedBoundingBoxVersion	= -1;
 
 	/**
-	 * The size of the cube
+	 * The relative bounding box for each cube
 	 */
-	private final float			size;
+	private final BoundingBox3D	relativeBoundingBox;
 
 	/**
-	 * The translation of each axis for the cube object
+	 * The size of the cube
 	 */
-	private float				translateX, translateY, translateZ;
+	private final float			size;
 
 	/**
-	 * How fast the cube rotates in the X direction
+	 * The slot of the cube in the body store
 	 */
-	private float				xRotationalVelocity;
+	private final int			slot;
 
 	/**
-	 * How fast the cube translates in the X direction
+	 * The store holding the position, rotation and velocities of the cube
 	 */
-	private float				xTranslationalVelocity;
+	private final BodyStore		store;
 
 	/**
-	 * How fast the cube rotates in the Y direction
+	 * The version of the face texture, or -1 if there is none
 	 */
-	private float				yRotationalVelocity;
+	private long				textureVersion	= -1;
 
 	/**
-	 * How fast the cube translates in the Y direction
+	 * Creates a cube as a view over a new slot of a body store, so that it can
+	 * be moved along with the other bodies of the store.
+	 *
+	 * @param store
+	 *            The store holding the position, rotation and velocities of
+	 *            the cube
+	 * @param x
+	 *            The X coordinate of the cube
+	 * @param y
+	 *            The Y coordinate of the cube
+	 * @param z
+	 *            The Z coordinate of the cube
+	 * @param size
+	 *            The size of the cube
+	 * @param applet
+	 *            The reference to the processing applet
 	 */
-	private float				yTranslationalVelocity;
+	public Cube(BodyStore store, float x, float y, float z, float size, PApplet applet)
+		{
+			this.applet = applet;
+			this.store = store;
+			this.size = size;
 
-	/**
-	 * How fast the cube rotates in the Z direction
-	 */
-	private float				zRotationalVelocity;
+			slot = store.add(x, y, z, size / 2);
 
-	/**
-	 * How fast the cube translates in the Z direction
-	 */
-	private float				zTranslationalVelocity;
+			relativeBoundingBox = new BoundingBox3D(x, y, z, size, size, size);
+
+			final float translationalLimit = 5f;
+			store.velocityX[slot] = this.applet.random(-translationalLimit, translationalLimit);
+			store.velocityY[slot] = this.applet.random(-translationalLimit, translationalLimit);
+			store.velocityZ[slot] = this.applet.random(-translationalLimit, translationalLimit);
+
+			final float rotationalLimit = 0.1f;
+			store.angularVelocityX[slot] = this.applet.random(-rotationalLimit, rotationalLimit);
+			store.angularVelocityY[slot] = this.applet.random(-rotationalLimit, rotationalLimit);
+			store.angularVelocityZ[slot] = this.applet.random(-rotationalLimit, rotationalLimit);
+		}
 
 
 	/**
@@ -123,30 +213,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public Cube(float x, float y, float z, float size, float rotX, float rotY, float rotZ, PApplet applet)
 		{
-			this.applet = applet;
-
-			translateX = x;
-			translateY = y;
-			translateZ = z;
-
-			rotationX = 0;// rotX;
-			rotationY = 0;// rotY;
-			rotationZ = 0;// rotZ;
-
-			this.size = size;
-
-			relativeBoundingBox = new BoundingBox3D(x, y, z, size, size, size);
-			computeAbsoluteBoundingBox();
-
-			final float translationalLimit = 5f;
-			xTranslationalVelocity = this.applet.random(-translationalLimit, translationalLimit);
-			yTranslationalVelocity = this.applet.random(-translationalLimit, translationalLimit);
-			zTranslationalVelocity = this.applet.random(-translationalLimit, translationalLimit);
-
-			final float rotationalLimit = 0.1f;
-			xRotationalVelocity = this.applet.random(-rotationalLimit, rotationalLimit);
-			yRotationalVelocity = this.applet.random(-rotationalLimit, rotationalLimit);
-			zRotationalVelocity = this.applet.random(-rotationalLimit, rotationalLimit);
+			this(new BodyStore(1), x, y, z, size, applet);
 		}
 
 
@@ -171,71 +238,8 @@ public class Cube extends SimpleGraphicObject3D {
 
 
 	/**
-	 * Computes the absolute bounding box of the cube object
-	 */
-	private void computeAbsoluteBoundingBox( )
-		{
-			final List <PVector> corners = getVertices();
-			float xMin = Float.POSITIVE_INFINITY, yMin = Float.POSITIVE_INFINITY, zMin = Float.POSITIVE_INFINITY;
-			float xMax = Float.NEGATIVE_INFINITY, yMax = Float.NEGATIVE_INFINITY, zMax = Float.NEGATIVE_INFINITY;
-
-			for (final PVector corner : corners)
-				{
-					xMax = Math.max(xMax, corner.x);
-					yMax = Math.max(yMax, corner.y);
-					zMax = Math.max(zMax, corner.z);
-
-					xMin = Math.min(xMin, corner.x);
-					yMin = Math.min(yMin, corner.y);
-					zMin = Math.min(zMin, corner.z);
-				}
-
-			absoluteBoundingBox = new BoundingBox3D(xMin, yMin, zMin, xMax - xMin, yMax - yMin, zMax - zMin);
-		}
-
-
-	/**
-	 * Checks to see if two cubes are disjoint along an axis
-	 *
-	 * @param myVertices
-	 *            A list of vertices of this cube object
-	 * @param otherVertices
-	 *            A list of vertices of another cube object
-	 * @param axis
-	 *            The axis of the cube object
-	 * @return True if the total span is greater than the total length
-	 */
-	private boolean disjointAlongAxis(List <PVector> myVertices, List <PVector> otherVertices, PVector axis)
-		{
-			if ((axis.x == 0) && (axis.y == 0) && (axis.z == 0)) { return false; }
-
-			float myMax = Float.NEGATIVE_INFINITY, myMin = Float.POSITIVE_INFINITY;
-			float cubeMax = Float.NEGATIVE_INFINITY, cubeMin = Float.POSITIVE_INFINITY;
-
-			// Find the max and min coordinate of each cube along the axis by
-			// projecting each corner onto the axis
-			for (final PVector corner : myVertices)
-				{
-					final float dist = corner.dot(axis) / axis.mag();
-					myMax = Math.max(myMax, dist);
-					myMin = Math.min(myMin, dist);
-				}
-
-			for (final PVector corner : otherVertices)
-				{
-					final float dist = corner.dot(axis) / axis.mag();
-					cubeMax = Math.max(cubeMax, dist);
-					cubeMin = Math.min(cubeMin, dist);
-				}
-
-			final float totalLength = (myMax - myMin) + (cubeMax - cubeMin);
-			final float totalSpan = Math.max(myMax, cubeMax) - Math.min(myMin, cubeMin);
-			return totalSpan > totalLength;
-		}
-
-
-	/**
-	 * The draw method for the cube
+	 * The draw method for the cube. It only draws the cube, which is moved by
+	 * update, interpolated between its last two poses.
 	 */
 	@Override
 	public void draw( )
@@ -243,10 +247,13 @@ public class Cube extends SimpleGraphicObject3D {
 			applet.pushMatrix();
 			applet.textureMode(PConstants.NORMAL);
 
-			applet.translate(translateX, translateY, translateZ);
-			applet.rotateX(rotationX);
-			applet.rotateY(rotationY);
-			applet.rotateZ(rotationZ);
+			// Draw the pose between the last two simulation steps
+			applet.translate(store.interpolate(store.previousPositionX, store.positionX, slot),
+			        store.interpolate(store.previousPositionY, store.positionY, slot),
+			        store.interpolate(store.previousPositionZ, store.positionZ, slot));
+			applet.rotateX(store.interpolate(store.previousRotationX, store.rotationX, slot));
+			applet.rotateY(store.interpolate(store.previousRotationY, store.rotationY, slot));
+			applet.rotateZ(store.interpolate(store.previousRotationZ, store.rotationZ, slot));
 
 			applet.stroke(1, 1, 1);
 			applet.strokeWeight(1f);
@@ -263,74 +270,49 @@ public class Cube extends SimpleGraphicObject3D {
 
 			applet.beginShape(PConstants.QUADS);
 
-			if (frontTexture != null)
+			if (faceTexture != null)
 				{
-					applet.texture(frontTexture);
+					applet.texture(faceTexture);
 				}
 
-			// Front side
-			applet.vertex(size / 2, size / 2, size / 2, 1, 1);
-			applet.vertex(-size / 2, size / 2, size / 2, 0, 1);
-			applet.vertex(-size / 2, -size / 2, size / 2, 0, 0);
-			applet.vertex(size / 2, -size / 2, size / 2, 1, 0);
-
-			applet.endShape();
-			applet.beginShape(PConstants.QUADS);
-
-			// Top side
-			applet.vertex(size / 2, size / 2, -size / 2);
-			applet.vertex(-size / 2, size / 2, -size / 2);
-			applet.vertex(-size / 2, size / 2, size / 2);
-			applet.vertex(size / 2, size / 2, size / 2);
-
-			// Bottom side
-			applet.vertex(size / 2, -size / 2, size / 2);
-			applet.vertex(-size / 2, -size / 2, size / 2);
-			applet.vertex(-size / 2, -size / 2, -size / 2);
-			applet.vertex(size / 2, -size / 2, -size / 2);
-
-			// Back side
-			applet.vertex(size / 2, -size / 2, -size / 2);
-			applet.vertex(-size / 2, -size / 2, -size / 2);
-			applet.vertex(-size / 2, size / 2, -size / 2);
-			applet.vertex(size / 2, size / 2, -size / 2);
-
-			applet.endShape();
-			applet.beginShape(PConstants.QUADS);
-
-			if (leftTexture != null)
+			for (int i = 0; i < TEXTURED_QUADS.length; i += 5)
 				{
-					applet.texture(leftTexture);
+					applet.vertex(TEXTURED_QUADS[i] * size, TEXTURED_QUADS[i + 1] * size, TEXTURED_QUADS[i + 2] * size,
+					        TEXTURED_QUADS[i + 3], TEXTURED_QUADS[i + 4]);
 				}
 
-			// Left side
-			applet.vertex(-size / 2, size / 2, size / 2, 1, 0);
-			applet.vertex(-size / 2, size / 2, -size / 2, 0, 0);
-			applet.vertex(-size / 2, -size / 2, -size / 2, 0, 1);
-			applet.vertex(-size / 2, -size / 2, size / 2, 1, 1);
-
 			applet.endShape();
 			applet.beginShape(PConstants.QUADS);
 
-			if (rightTexture != null)
+			for (int i = 0; i < SOLID_QUADS.length; i += 3)
 				{
-					applet.texture(rightTexture);
+					applet.vertex(SOLID_QUADS[i] * size, SOLID_QUADS[i + 1] * size, SOLID_QUADS[i + 2] * size);
 				}
 
-			// Right side
-			applet.vertex(size / 2, size / 2, -size / 2, 1, 1);
-			applet.vertex(size / 2, size / 2, size / 2, 0, 1);
-			applet.vertex(size / 2, -size / 2, size / 2, 0, 1);
-			applet.vertex(size / 2, -size / 2, -size / 2, 1, 0);
-
 			applet.endShape();
 
-			update();
-
 			applet.popMatrix();
 		}
 
 
+	/**
+	 * Finds an axis separating the oriented bounding box of a cube from the
+	 * one of another cube, testing a given axis before the others.
+	 *
+	 * @param cube
+	 *            The cube object to test
+	 * @param hint
+	 *            The axis to test first, or -1 to test them in order
+	 * @return The separating axis found, numbered as by
+	 *         OrientedBoundingBox.findSeparatingAxis, or -1 if the cubes
+	 *         intersect.
+	 */
+	public int findSeparatingAxis(Cube cube, int hint)
+		{
+			return getOrientedBoundingBox().findSeparatingAxis(cube.getOrientedBoundingBox(), hint);
+		}
+
+
 	/**
 	 * Gets the absolute bounding box
 	 *
@@ -338,6 +320,14 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public BoundingBox3D getAbsoluteBoundingBox( )
 		{
+			if (absoluteBoundingBoxVersion != getPoseVersion())
+				{
+					final BoundingBoxes boxes = store.getBoundingBoxes();
+					absoluteBoundingBox = new BoundingBox3D(boxes.getMinX(slot), boxes.getMinY(slot), boxes.getMinZ(slot),
+					        boxes.getMaxX(slot) - boxes.getMinX(slot), boxes.getMaxY(slot) - boxes.getMinY(slot),
+					        boxes.getMaxZ(slot) - boxes.getMinZ(slot));
+					absoluteBoundingBoxVersion = getPoseVersion();
+				}
 			return absoluteBoundingBox;
 		}
 
@@ -353,6 +343,35 @@ public class Cube extends SimpleGraphicObject3D {
 		}
 
 
+	/**
+	 * Gets the transformation the cube is drawn with, that is its pose
+	 * interpolated between the last two simulation steps
+	 *
+	 * @param target
+	 *            The matrix in which the transformation is stored
+	 */
+	public void getDrawMatrix(PMatrix3D target)
+		{
+			setTransformation(target, store.interpolate(store.previousPositionX, store.positionX, slot),
+			        store.interpolate(store.previousPositionY, store.positionY, slot),
+			        store.interpolate(store.previousPositionZ, store.positionZ, slot),
+			        store.interpolate(store.previousRotationX, store.rotationX, slot),
+			        store.interpolate(store.previousRotationY, store.rotationY, slot),
+			        store.interpolate(store.previousRotationZ, store.rotationZ, slot));
+		}
+
+
+	/**
+	 * Gets the face texture
+	 *
+	 * @return The face texture, or null if there is none
+	 */
+	public PImage getFaceTexture( )
+		{
+			return faceTexture;
+		}
+
+
 	/**
 	 * Gets the normal vectors of the cube object
 	 *
@@ -380,6 +399,25 @@ public class Cube extends SimpleGraphicObject3D {
 		}
 
 
+	/**
+	 * Gets the oriented bounding box of the cube, which is updated first if
+	 * the cube moved since it was last computed
+	 *
+	 * @return The box occupied by the cube in world coordinates
+	 */
+	public OrientedBoundingBox getOrientedBoundingBox( )
+		{
+			if (orientedBoundingBoxVersion != getPoseVersion())
+				{
+					orientedBoundingBox.setHalfExtents(size / 2, size / 2, size / 2);
+					orientedBoundingBox.setPose(getTranslationX(), getTranslationY(), getTranslationZ(), getRotationX(),
+					        getRotationY(), getRotationZ());
+					orientedBoundingBoxVersion = getPoseVersion();
+				}
+			return orientedBoundingBox;
+		}
+
+
 	/**
 	 * Gets the parent of the cube object
 	 */
@@ -390,6 +428,19 @@ public class Cube extends SimpleGraphicObject3D {
 		}
 
 
+	/**
+	 * Gets the version of the pose of the cube, which also changes when the
+	 * body store moves it
+	 *
+	 * @return The version of the pose
+	 */
+	@Override
+	protected long getPoseVersion( )
+		{
+			return super.getPoseVersion() + store.getVersion(slot);
+		}
+
+
 	/**
 	 * Gets the relative bounding box of the cube
 	 *
@@ -409,7 +460,7 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getRotationX( )
 		{
-			return rotationX;
+			return store.rotationX[slot];
 		}
 
 
@@ -421,7 +472,7 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getRotationY( )
 		{
-			return rotationY;
+			return store.rotationY[slot];
 		}
 
 
@@ -433,7 +484,30 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getRotationZ( )
 		{
-			return rotationZ;
+			return store.rotationZ[slot];
+		}
+
+
+	/**
+	 * Gets the size of the cube
+	 *
+	 * @return The length of the sides of the cube
+	 */
+	public float getSize( )
+		{
+			return size;
+		}
+
+
+	/**
+	 * Gets the version of the face texture
+	 *
+	 * @return The version passed with the current face texture, or -1 if there
+	 *         is no face texture
+	 */
+	public long getTextureVersion( )
+		{
+			return textureVersion;
 		}
 
 
@@ -445,7 +519,7 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getTranslationX( )
 		{
-			return translateX;
+			return store.positionX[slot];
 		}
 
 
@@ -457,7 +531,7 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getTranslationY( )
 		{
-			return translateY;
+			return store.positionY[slot];
 		}
 
 
@@ -469,7 +543,7 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public float getTranslationZ( )
 		{
-			return translateZ;
+			return store.positionZ[slot];
 		}
 
 
@@ -495,15 +569,42 @@ public class Cube extends SimpleGraphicObject3D {
 			vertices.add(new PVector(size / 2, -size / 2, -size / 2));
 
 			// Convert each corner to world coordinates
-			for (int i = 0; i < vertices.size(); i++)
+			for (final PVector vertex : vertices)
 				{
-					vertices.set(i, relativeToParentCoordinates(vertices.get(i)));
+					relativeToParentCoordinates(vertex.x, vertex.y, vertex.z, vertex);
 				}
 
 			return vertices;
 		}
 
 
+	/**
+	 * Stores the bounding box of the cube grown by the distance it moves in a
+	 * step, so that it contains the cube wherever it is drawn between its
+	 * last two poses.
+	 *
+	 * @param bounds
+	 *            The array in which the minimum x, y and z coordinates
+	 *            followed by the maximum x, y and z coordinates are stored
+	 * @param offset
+	 *            The index at which the minimum x coordinate is stored
+	 */
+	@Override
+	public void getWorldBounds(float[ ] bounds, int offset)
+		{
+			final BoundingBoxes boxes = store.getBoundingBoxes();
+			final float dx = Math.abs(store.velocityX[slot]);
+			final float dy = Math.abs(store.velocityY[slot]);
+			final float dz = Math.abs(store.velocityZ[slot]);
+			bounds[offset] = boxes.getMinX(slot) - dx;
+			bounds[offset + 1] = boxes.getMinY(slot) - dy;
+			bounds[offset + 2] = boxes.getMinZ(slot) - dz;
+			bounds[offset + 3] = boxes.getMaxX(slot) + dx;
+			bounds[offset + 4] = boxes.getMaxY(slot) + dy;
+			bounds[offset + 5] = boxes.getMaxZ(slot) + dz;
+		}
+
+
 	/**
 	 * Gets the rotational velocity in the X direction
 	 *
@@ -511,7 +612,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getXRotationalVelocity( )
 		{
-			return xRotationalVelocity;
+			return store.angularVelocityX[slot];
 		}
 
 
@@ -522,7 +623,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getXTranslationalVelocity( )
 		{
-			return xTranslationalVelocity;
+			return store.velocityX[slot];
 		}
 
 
@@ -533,7 +634,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getYRotationalVelocity( )
 		{
-			return yRotationalVelocity;
+			return store.angularVelocityY[slot];
 		}
 
 
@@ -544,7 +645,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getYTranslationalVelocity( )
 		{
-			return yTranslationalVelocity;
+			return store.velocityY[slot];
 		}
 
 
@@ -555,7 +656,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getZRotationalVelocity( )
 		{
-			return zRotationalVelocity;
+			return store.angularVelocityZ[slot];
 		}
 
 
@@ -566,12 +667,46 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public float getZTranslationalVelocity( )
 		{
-			return zTranslationalVelocity;
+			return store.velocityZ[slot];
+		}
+
+
+	/**
+	 * Finds where a ray hits the cube. The ray is first tested against the
+	 * bounding box of the cube, and only against its oriented box if it hits
+	 * the bounding box.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originY
+	 *            The y coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it hits the cube, or infinity if it misses.
+	 */
+	@Override
+	public float intersectRay(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ)
+		{
+			if (getAbsoluteBoundingBox().intersectRay(originX, originY, originZ, directionX, directionY,
+			        directionZ) == Float.POSITIVE_INFINITY) { return Float.POSITIVE_INFINITY; }
+			return getOrientedBoundingBox().intersectRay(originX, originY, originZ, directionX, directionY, directionZ);
 		}
 
 
 	/**
-	 * Detects if a cube intersects another cube
+	 * Detects if a cube intersects another cube, using the separating axis
+	 * test on their oriented bounding boxes
 	 *
 	 * @param cube
 	 *            The cube object to test
@@ -579,31 +714,41 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public boolean intersects(Cube cube)
 		{
-			final List <PVector> myVertices = getVertices();
-			final List <PVector> cubeVertices = cube.getVertices();
-			final List <PVector> normalVecs = getNormalVectors();
+			return getOrientedBoundingBox().intersects(cube.getOrientedBoundingBox());
+		}
 
-			for (final PVector normal : normalVecs)
-				{
-					if (disjointAlongAxis(myVertices, cubeVertices, normal)) { return false; }
-				}
 
-			final List <PVector> cubeNormals = cube.getNormalVectors();
+	/**
+	 * Detects if a cube intersects another cube at some point while both move
+	 * along their velocities during part of a step. The cubes are tested at
+	 * times close enough that neither can pass through the other between two
+	 * tests. Their rotations are not advanced.
+	 *
+	 * @param cube
+	 *            The cube object to test
+	 * @param start
+	 *            The fraction of the step at which to start testing, from 0
+	 *            to 1
+	 * @return True if it does, False if not
+	 */
+	public boolean intersectsDuring(Cube cube, float start)
+		{
+			final float vx = cube.getXTranslationalVelocity() - getXTranslationalVelocity();
+			final float vy = cube.getYTranslationalVelocity() - getYTranslationalVelocity();
+			final float vz = cube.getZTranslationalVelocity() - getZTranslationalVelocity();
 
-			for (final PVector normal : cubeNormals)
-				{
-					if (disjointAlongAxis(myVertices, cubeVertices, normal)) { return false; }
-				}
+			// Moving by less than half of the smaller cube between two tests
+			// cannot skip over it
+			final float distance = (float)Math.sqrt((vx * vx) + (vy * vy) + (vz * vz)) * (1 - start);
+			final int samples = Math.max(1, (int)Math.ceil(distance / (0.5f * Math.min(size, cube.size))));
 
-			for (final PVector myNormal : normalVecs)
+			final OrientedBoundingBox box = getOrientedBoundingBox(), other = cube.getOrientedBoundingBox();
+			for (int k = 0; k <= samples; k++)
 				{
-					for (final PVector normal : cubeNormals)
-						{
-							if (disjointAlongAxis(myVertices, cubeVertices, myNormal.cross(normal))) { return false; }
-						}
+					final float time = start + (((1 - start) * k) / samples);
+					if (box.intersects(other, vx * time, vy * time, vz * time)) { return true; }
 				}
-
-			return true;
+			return false;
 		}
 
 
@@ -616,74 +761,99 @@ public class Cube extends SimpleGraphicObject3D {
 		}
 
 
+	/**
+	 * Updates the bounding box of the cube in the store and the cached
+	 * matrices after the position or rotation was set
+	 */
+	private void moved( )
+		{
+			store.updateBoundingBox(slot);
+			invalidateTransformation();
+		}
+
+
 	/**
 	 * Reverses the translational velocity of the cube object
 	 */
 	public void reverseTranslationalVelocity( )
 		{
-			xTranslationalVelocity *= -1;
-			yTranslationalVelocity *= -1;
-			zTranslationalVelocity *= -1;
+			store.velocityX[slot] *= -1;
+			store.velocityY[slot] *= -1;
+			store.velocityZ[slot] *= -1;
 		}
 
 
 	/**
-	 * Sets the color
-	 *
-	 * @param color
-	 *            The color to set
+	 * Saves the current pose of the cube as its previous pose, before a
+	 * simulation step
 	 */
-	public void setColor(int color)
+	public void savePreviousPose( )
 		{
-			this.color = color;
+			store.savePreviousPose(slot);
 		}
 
 
 	/**
-	 * Sets the fill
+	 * Sets the color
 	 *
-	 * @param fill
-	 *            The fill to set
+	 * @param color
+	 *            The color to set
 	 */
-	public void setFill(boolean fill)
+	public void setColor(int color)
 		{
-			this.isBounding = fill;
+			this.color = color;
 		}
 
 
 	/**
-	 * Sets the front texture
+	 * Sets the face texture if it is newer than the current one. It has the
+	 * front of the face in its middle (between 20% and 80% of its width) and
+	 * the sides of the face on its right, which are wrapped onto the left and
+	 * right sides of the cube.
 	 *
-	 * @param frontTexture
-	 *            The front texture to set
+	 * @param faceTexture
+	 *            The face texture to set, the same PImage may be shared by
+	 *            many cubes
+	 * @param version
+	 *            The version of the face texture, which should increase every
+	 *            time the texture changes
+	 * @return True if the texture was replaced, false if this cube already
+	 *         had this version of the texture.
 	 */
-	public void setFrontTexture(PImage frontTexture)
+	public boolean setFaceTexture(PImage faceTexture, long version)
 		{
-			this.frontTexture = frontTexture;
+			if ((version == textureVersion) && (faceTexture == this.faceTexture)) { return false; }
+
+			this.faceTexture = faceTexture;
+			this.textureVersion = version;
+			return true;
 		}
 
 
 	/**
-	 * Sets the left texture
+	 * Sets the fill
 	 *
-	 * @param leftTexture
-	 *            The left texture to set
+	 * @param fill
+	 *            The fill to set
 	 */
-	public void setLeftTexture(PImage leftTexture)
+	public void setFill(boolean fill)
 		{
-			this.leftTexture = leftTexture;
+			this.isBounding = fill;
+			store.dynamic[slot] = fill;
 		}
 
 
 	/**
-	 * Sets the right texture
+	 * Sets how far the drawn pose is between the previous pose and the
+	 * current one. It applies to every cube sharing the body store.
 	 *
-	 * @param rightTexture
-	 *            The right texture to set
+	 * @param interpolation
+	 *            The interpolation factor, from 0 (previous pose) to 1
+	 *            (current pose)
 	 */
-	public void setRightTexture(PImage rightTexture)
+	public void setInterpolation(float interpolation)
 		{
-			this.rightTexture = rightTexture;
+			store.setInterpolation(interpolation);
 		}
 
 
@@ -696,7 +866,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setRotationX(float angle)
 		{
-			this.rotationX = angle;
+			store.rotationX[slot] = angle;
+			moved();
 		}
 
 
@@ -709,7 +880,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setRotationY(float angle)
 		{
-			this.rotationY = angle;
+			store.rotationY[slot] = angle;
+			moved();
 		}
 
 
@@ -722,7 +894,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setRotationZ(float angle)
 		{
-			this.rotationZ = angle;
+			store.rotationZ[slot] = angle;
+			moved();
 		}
 
 
@@ -735,7 +908,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setTranslationX(float x)
 		{
-			this.translateX = x;
+			store.positionX[slot] = x;
+			moved();
 		}
 
 
@@ -748,7 +922,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setTranslationY(float y)
 		{
-			this.translateY = y;
+			store.positionY[slot] = y;
+			moved();
 		}
 
 
@@ -761,7 +936,8 @@ public class Cube extends SimpleGraphicObject3D {
 	@Override
 	public void setTranslationZ(float z)
 		{
-			this.translateZ = z;
+			store.positionZ[slot] = z;
+			moved();
 		}
 
 
@@ -773,7 +949,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setXRotationalVelocity(float velocity)
 		{
-			this.xRotationalVelocity = velocity;
+			store.angularVelocityX[slot] = velocity;
 		}
 
 
@@ -785,7 +961,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setXTranslationalVelocity(float velocity)
 		{
-			this.xTranslationalVelocity = velocity;
+			store.velocityX[slot] = velocity;
 		}
 
 
@@ -797,7 +973,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setYRotationalVelocity(float velocity)
 		{
-			this.yRotationalVelocity = velocity;
+			store.angularVelocityY[slot] = velocity;
 		}
 
 
@@ -809,7 +985,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setYTranslationalVelocity(float velocity)
 		{
-			this.yTranslationalVelocity = velocity;
+			store.velocityY[slot] = velocity;
 		}
 
 
@@ -821,7 +997,7 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setZRotationalVelocity(float velocity)
 		{
-			this.zRotationalVelocity = velocity;
+			store.angularVelocityZ[slot] = velocity;
 		}
 
 
@@ -833,25 +1009,17 @@ public class Cube extends SimpleGraphicObject3D {
 	 */
 	public void setZTranslationalVelocity(float velocity)
 		{
-			this.zTranslationalVelocity = velocity;
+			store.velocityZ[slot] = velocity;
 		}
 
 
 	/**
-	 * The update function of the cube object
+	 * The update function of the cube object, which moves it by its
+	 * velocities if it is filled
 	 */
 	@Override
 	public void update( )
 		{
-			if (isBounding)
-				{
-					translateX += xTranslationalVelocity;
-					translateY += yTranslationalVelocity;
-					translateZ += zTranslationalVelocity;
-					rotationX += xRotationalVelocity;
-					rotationY += yRotationalVelocity;
-					rotationZ += zRotationalVelocity;
-				}
-			computeAbsoluteBoundingBox();
+			store.integrate(slot);
 		}
 }
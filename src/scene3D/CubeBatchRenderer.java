@@ -0,0 +1,254 @@
+package scene3D;
+
+
+import java.util.List;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+import processing.core.PMatrix3D;
+import processing.core.PShape;
+
+
+/**
+ * Draws many cubes with two retained shapes instead of two immediate-mode
+ * shapes per cube: one holding the textured quads of every cube and one
+ * holding the rest. The shapes are built once, and each frame only the
+ * positions of their vertices are updated, along with the colors of the cubes
+ * whose color changed. Cubes that are not visible are collapsed to a point
+ * once and then left alone until they become visible again.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class CubeBatchRenderer {
+
+	/**
+	 * The number of vertices of the quads that are not textured, for one cube
+	 */
+	private static final int	SOLID_VERTICES		= Cube.SOLID_QUADS.length / 3;
+
+	/**
+	 * The color of the edges of the cubes
+	 */
+	private static final int	STROKE_COLOR		= 0xFF010101;
+
+	/**
+	 * The number of vertices of the textured quads, for one cube
+	 */
+	private static final int	TEXTURED_VERTICES	= Cube.TEXTURED_QUADS.length / 5;
+
+	/**
+	 * The reference to the main application
+	 */
+	private final PApplet		applet;
+
+	/**
+	 * The color each cube was last drawn with
+	 */
+	private int[ ]				colors				= new int[0];
+
+	/**
+	 * The shape holding the two batches, or null until the first draw
+	 */
+	private PShape				group;
+
+	/**
+	 * Whether the vertices of each cube are currently collapsed to a point
+	 */
+	private boolean[ ]			hidden				= new boolean[0];
+
+	/**
+	 * Reused for the transformation of each cube
+	 */
+	private final PMatrix3D		matrix				= new PMatrix3D();
+
+	/**
+	 * The quads of every cube that are not textured
+	 */
+	private PShape				solid;
+
+	/**
+	 * The texture of the textured batch, or null if there is none
+	 */
+	private PImage				texture;
+
+	/**
+	 * The quads of every cube that are covered by the face texture
+	 */
+	private PShape				textured;
+
+
+	/**
+	 * Instantiates a renderer. The shapes are only built the first time cubes
+	 * are drawn, once the renderer of the applet exists.
+	 *
+	 * @param applet
+	 *            The reference to the processing applet
+	 */
+	public CubeBatchRenderer(PApplet applet)
+		{
+			this.applet = applet;
+		}
+
+
+	/**
+	 * Builds the shapes for a number of cubes, with every vertex at the
+	 * origin.
+	 *
+	 * @param count
+	 *            The number of cubes
+	 */
+	private void build(int count)
+		{
+			textured = applet.createShape();
+			textured.beginShape(PConstants.QUADS);
+			textured.textureMode(PConstants.NORMAL);
+			textured.stroke(STROKE_COLOR);
+			textured.strokeWeight(1f);
+			for (int i = 0; i < count; i++)
+				{
+					for (int k = 0; k < Cube.TEXTURED_QUADS.length; k += 5)
+						{
+							textured.vertex(0, 0, 0, Cube.TEXTURED_QUADS[k + 3], Cube.TEXTURED_QUADS[k + 4]);
+						}
+				}
+			textured.endShape();
+
+			solid = applet.createShape();
+			solid.beginShape(PConstants.QUADS);
+			solid.stroke(STROKE_COLOR);
+			solid.strokeWeight(1f);
+			for (int i = 0; i < (count * SOLID_VERTICES); i++)
+				{
+					solid.vertex(0, 0, 0);
+				}
+			solid.endShape();
+
+			group = applet.createShape(PConstants.GROUP);
+			group.addChild(textured);
+			group.addChild(solid);
+
+			// Force the colors of every cube to be set on the first frame
+			colors = new int[count];
+			hidden = new boolean[count];
+			texture = null;
+		}
+
+
+	/**
+	 * Draws the cubes. They must all be filled, and they should share the
+	 * same face texture.
+	 *
+	 * @param cubes
+	 *            The cubes to draw
+	 */
+	public void draw(List <Cube> cubes)
+		{
+			draw(cubes, null);
+		}
+
+
+	/**
+	 * Draws the visible cubes. They must all be filled, and they should share
+	 * the same face texture. The vertices of the cubes that are not visible
+	 * are not updated.
+	 *
+	 * @param cubes
+	 *            The cubes to draw
+	 * @param visible
+	 *            Whether each cube is visible, or null if they all are
+	 */
+	public void draw(List <Cube> cubes, boolean[ ] visible)
+		{
+			final int count = cubes.size();
+			if ((group == null) || (colors.length != count))
+				{
+					build(count);
+				}
+
+			if ((count > 0) && (cubes.get(0).getFaceTexture() != texture) && (cubes.get(0).getFaceTexture() != null))
+				{
+					texture = cubes.get(0).getFaceTexture();
+					textured.setTexture(texture);
+				}
+
+			for (int i = 0; i < count; i++)
+				{
+					if ((visible != null) && !visible[i])
+						{
+							if (!hidden[i])
+								{
+									hidden[i] = true;
+									setVertices(textured, i * TEXTURED_VERTICES, Cube.TEXTURED_QUADS, 5, 0);
+									setVertices(solid, i * SOLID_VERTICES, Cube.SOLID_QUADS, 3, 0);
+								}
+							continue;
+						}
+					hidden[i] = false;
+
+					final Cube cube = cubes.get(i);
+					final float size = cube.getSize();
+					cube.getDrawMatrix(matrix);
+
+					setVertices(textured, i * TEXTURED_VERTICES, Cube.TEXTURED_QUADS, 5, size);
+					setVertices(solid, i * SOLID_VERTICES, Cube.SOLID_QUADS, 3, size);
+
+					final int color = cube.getColor();
+					if ((colors[i] != color) || (colors[i] == 0))
+						{
+							colors[i] = color;
+							setFills(textured, i * TEXTURED_VERTICES, TEXTURED_VERTICES, color);
+							setFills(solid, i * SOLID_VERTICES, SOLID_VERTICES, color);
+						}
+				}
+
+			applet.shape(group);
+		}
+
+
+	/**
+	 * Sets the fill color of a range of vertices.
+	 *
+	 * @param shape
+	 *            The shape holding the vertices
+	 * @param first
+	 *            The index of the first vertex
+	 * @param count
+	 *            The number of vertices
+	 * @param color
+	 *            The fill color
+	 */
+	private void setFills(PShape shape, int first, int count, int color)
+		{
+			for (int k = 0; k < count; k++)
+				{
+					shape.setFill(first + k, color);
+				}
+		}
+
+
+	/**
+	 * Moves the vertices of a cube to its current transformation.
+	 *
+	 * @param shape
+	 *            The shape holding the vertices
+	 * @param first
+	 *            The index of the first vertex of the cube
+	 * @param corners
+	 *            The corners of the quads on a cube of size 1
+	 * @param stride
+	 *            The number of floats per corner
+	 * @param size
+	 *            The size of the cube
+	 */
+	private void setVertices(PShape shape, int first, float[ ] corners, int stride, float size)
+		{
+			for (int k = 0, v = first; k < corners.length; k += stride, v++)
+				{
+					final float x = corners[k] * size, y = corners[k + 1] * size, z = corners[k + 2] * size;
+					shape.setVertex(v, matrix.multX(x, y, z), matrix.multY(x, y, z), matrix.multZ(x, y, z));
+				}
+		}
+}
@@ -0,0 +1,155 @@
+package scene3D;
+
+
+import processing.core.PMatrix3D;
+import scene3Dabstract.BoundingVolumeHierarchy;
+
+
+/**
+ * The volume seen by the camera, described by its six planes in world
+ * coordinates. The planes are extracted from the product of the projection and
+ * modelview matrices, so that a point is inside when it is on the positive
+ * side of every plane. It can be used as a region to search a
+ * BoundingVolumeHierarchy.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class Frustum implements BoundingVolumeHierarchy.Region {
+
+	/**
+	 * The number of planes of the frustum
+	 */
+	private static final int	PLANES		= 6;
+
+	/**
+	 * The a, b, c and d coefficients of each plane, such that ax + by + cz + d
+	 * is positive inside the frustum
+	 */
+	private final float[ ]	planes		= new float[PLANES * 4];
+
+
+	/**
+	 * Classifies an axis-aligned box against the frustum. Boxes near the
+	 * corners of the frustum may be reported as intersecting although they
+	 * are outside, which only means that they are drawn for nothing.
+	 *
+	 * @param minX
+	 *            The minimum x coordinate of the box
+	 * @param minY
+	 *            The minimum y coordinate of the box
+	 * @param minZ
+	 *            The minimum z coordinate of the box
+	 * @param maxX
+	 *            The maximum x coordinate of the box
+	 * @param maxY
+	 *            The maximum y coordinate of the box
+	 * @param maxZ
+	 *            The maximum z coordinate of the box
+	 * @return OUTSIDE, INTERSECTS or INSIDE
+	 */
+	@Override
+	public int classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+		{
+			int result = INSIDE;
+			for (int p = 0; p < planes.length; p += 4)
+				{
+					final float a = planes[p], b = planes[p + 1], c = planes[p + 2], d = planes[p + 3];
+
+					// The corner furthest along the normal of the plane
+					final float far = (a * (a >= 0 ? maxX : minX)) + (b * (b >= 0 ? maxY : minY))
+					        + (c * (c >= 0 ? maxZ : minZ)) + d;
+					if (far < 0) { return OUTSIDE; }
+
+					// The corner furthest against the normal of the plane
+					final float near = (a * (a >= 0 ? minX : maxX)) + (b * (b >= 0 ? minY : maxY))
+					        + (c * (c >= 0 ? minZ : maxZ)) + d;
+					if (near < 0)
+						{
+							result = INTERSECTS;
+						}
+				}
+			return result;
+		}
+
+
+	/**
+	 * Classifies a bounding box against the frustum.
+	 *
+	 * @param box
+	 *            The box to classify
+	 * @return OUTSIDE, INTERSECTS or INSIDE
+	 */
+	public int classify(BoundingBox3D box)
+		{
+			return classify(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+		}
+
+
+	/**
+	 * Sets one of the planes to the sum or difference of the last row of the
+	 * matrix and another row.
+	 *
+	 * @param plane
+	 *            The index of the plane
+	 * @param m
+	 *            The product of the projection and modelview matrices
+	 * @param row
+	 *            The other row
+	 * @param sign
+	 *            1 to add the other row, -1 to subtract it
+	 */
+	private void setPlane(int plane, PMatrix3D m, int row, float sign)
+		{
+			final float r0, r1, r2, r3;
+			switch (row)
+				{
+					case 0:
+						r0 = m.m00;
+						r1 = m.m01;
+						r2 = m.m02;
+						r3 = m.m03;
+						break;
+					case 1:
+						r0 = m.m10;
+						r1 = m.m11;
+						r2 = m.m12;
+						r3 = m.m13;
+						break;
+					default:
+						r0 = m.m20;
+						r1 = m.m21;
+						r2 = m.m22;
+						r3 = m.m23;
+						break;
+				}
+			final int p = plane * 4;
+			planes[p] = m.m30 + (sign * r0);
+			planes[p + 1] = m.m31 + (sign * r1);
+			planes[p + 2] = m.m32 + (sign * r2);
+			planes[p + 3] = m.m33 + (sign * r3);
+		}
+
+
+	/**
+	 * Extracts the planes of the frustum from the product of the projection
+	 * and modelview matrices, which maps world coordinates to clip
+	 * coordinates.
+	 *
+	 * @param projectionModelview
+	 *            The product of the projection and modelview matrices
+	 */
+	public void update(PMatrix3D projectionModelview)
+		{
+			// Left and right
+			setPlane(0, projectionModelview, 0, 1);
+			setPlane(1, projectionModelview, 0, -1);
+			// Bottom and top
+			setPlane(2, projectionModelview, 1, 1);
+			setPlane(3, projectionModelview, 1, -1);
+			// Near and far
+			setPlane(4, projectionModelview, 2, 1);
+			setPlane(5, projectionModelview, 2, -1);
+		}
+}
@@ -0,0 +1,431 @@
+package scene3D;
+
+
+/**
+ * A box that can be rotated, described by its center, its half extents along
+ * each of its axes and the rotation matrix whose columns are its axes. Unlike
+ * BoundingBox3D it is mutable so that it can be updated every frame without
+ * allocating, and everything is stored in primitive floats.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class OrientedBoundingBox {
+
+	/**
+	 * The number of candidate axes of the separating axis test
+	 */
+	public static final int		AXIS_COUNT	= 15;
+
+	/**
+	 * Added to the absolute value of the rotation between the boxes so that
+	 * nearly parallel edges, whose cross product is close to zero, do not
+	 * produce false separations
+	 */
+	private static final float	EPSILON		= 1e-6f;
+
+
+	/**
+	 * Returns the dot product of a column of a matrix with a column of another
+	 * matrix.
+	 *
+	 * @param a
+	 *            The first matrix, in row-major order
+	 * @param i
+	 *            The column of the first matrix
+	 * @param b
+	 *            The second matrix, in row-major order
+	 * @param j
+	 *            The column of the second matrix
+	 * @return The dot product of the two columns.
+	 */
+	private static float dotColumns(float[ ] a, int i, float[ ] b, int j)
+		{
+			return (a[i] * b[j]) + (a[3 + i] * b[3 + j]) + (a[6 + i] * b[6 + j]);
+		}
+
+
+	/**
+	 * The center of the box
+	 */
+	private float			centerX, centerY, centerZ;
+
+	/**
+	 * Half of the size of the box along each of its axes
+	 */
+	private float			halfExtentX, halfExtentY, halfExtentZ;
+
+	/**
+	 * The rotation of the box in row-major order. Its columns are the axes of
+	 * the box in world coordinates.
+	 */
+	private final float[ ]	rotation	= { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+
+
+	/**
+	 * Finds an axis separating this box from another box, testing a given
+	 * axis before the others. A separating axis usually keeps separating the
+	 * same two boxes for a few frames, so testing the axis found during the
+	 * last frame first settles most separated pairs with a single test. The
+	 * axes are numbered 0 to 2 for the axes of this box, 3 to 5 for the axes
+	 * of the other box, and 6 + 3i + j for the cross product of axis i of this
+	 * box with axis j of the other box.
+	 *
+	 * @param other
+	 *            The other box
+	 * @param hint
+	 *            The axis to test first, or -1 to test them in order
+	 * @return The first axis found to separate the boxes, or -1 if the boxes
+	 *         intersect.
+	 */
+	public int findSeparatingAxis(OrientedBoundingBox other, int hint)
+		{
+			return findSeparatingAxis(other, hint, 0, 0, 0);
+		}
+
+
+	/**
+	 * Finds an axis separating this box from another box after the other box
+	 * was moved by some offset, testing a given axis before the others.
+	 *
+	 * @param other
+	 *            The other box
+	 * @param hint
+	 *            The axis to test first, or -1 to test them in order
+	 * @param offsetX
+	 *            How far the other box is moved along the x axis
+	 * @param offsetY
+	 *            How far the other box is moved along the y axis
+	 * @param offsetZ
+	 *            How far the other box is moved along the z axis
+	 * @return The first axis found to separate the boxes, or -1 if the boxes
+	 *         intersect.
+	 */
+	private int findSeparatingAxis(OrientedBoundingBox other, int hint, float offsetX, float offsetY, float offsetZ)
+		{
+			final float[ ] a = rotation, b = other.rotation;
+			final float ha0 = halfExtentX, ha1 = halfExtentY, ha2 = halfExtentZ;
+			final float hb0 = other.halfExtentX, hb1 = other.halfExtentY, hb2 = other.halfExtentZ;
+
+			// The axes of the other box expressed in the frame of this box
+			final float r00 = dotColumns(a, 0, b, 0), r01 = dotColumns(a, 0, b, 1), r02 = dotColumns(a, 0, b, 2);
+			final float r10 = dotColumns(a, 1, b, 0), r11 = dotColumns(a, 1, b, 1), r12 = dotColumns(a, 1, b, 2);
+			final float r20 = dotColumns(a, 2, b, 0), r21 = dotColumns(a, 2, b, 1), r22 = dotColumns(a, 2, b, 2);
+
+			final float ar00 = Math.abs(r00) + EPSILON, ar01 = Math.abs(r01) + EPSILON, ar02 = Math.abs(r02) + EPSILON;
+			final float ar10 = Math.abs(r10) + EPSILON, ar11 = Math.abs(r11) + EPSILON, ar12 = Math.abs(r12) + EPSILON;
+			final float ar20 = Math.abs(r20) + EPSILON, ar21 = Math.abs(r21) + EPSILON, ar22 = Math.abs(r22) + EPSILON;
+
+			// The vector between the centers expressed in the frame of this box
+			final float dx = (other.centerX + offsetX) - centerX;
+			final float dy = (other.centerY + offsetY) - centerY;
+			final float dz = (other.centerZ + offsetZ) - centerZ;
+			final float t0 = (a[0] * dx) + (a[3] * dy) + (a[6] * dz);
+			final float t1 = (a[1] * dx) + (a[4] * dy) + (a[7] * dz);
+			final float t2 = (a[2] * dx) + (a[5] * dy) + (a[8] * dz);
+
+			// The hint is tested first, then the other axes in order
+			for (int n = hint < 0 ? 1 : 0; n <= AXIS_COUNT; n++)
+				{
+					final int axis = n == 0 ? hint : n - 1;
+					if ((n > 0) && (axis == hint))
+						{
+							continue;
+						}
+
+					final float distance, radius;
+					switch (axis)
+						{
+						// The axes of this box
+						case 0:
+							distance = t0;
+							radius = ha0 + (hb0 * ar00) + (hb1 * ar01) + (hb2 * ar02);
+							break;
+						case 1:
+							distance = t1;
+							radius = ha1 + (hb0 * ar10) + (hb1 * ar11) + (hb2 * ar12);
+							break;
+						case 2:
+							distance = t2;
+							radius = ha2 + (hb0 * ar20) + (hb1 * ar21) + (hb2 * ar22);
+							break;
+
+						// The axes of the other box
+						case 3:
+							distance = (t0 * r00) + (t1 * r10) + (t2 * r20);
+							radius = (ha0 * ar00) + (ha1 * ar10) + (ha2 * ar20) + hb0;
+							break;
+						case 4:
+							distance = (t0 * r01) + (t1 * r11) + (t2 * r21);
+							radius = (ha0 * ar01) + (ha1 * ar11) + (ha2 * ar21) + hb1;
+							break;
+						case 5:
+							distance = (t0 * r02) + (t1 * r12) + (t2 * r22);
+							radius = (ha0 * ar02) + (ha1 * ar12) + (ha2 * ar22) + hb2;
+							break;
+
+						// The cross products of the x axis of this box with the
+						// other axes
+						case 6:
+							distance = (t2 * r10) - (t1 * r20);
+							radius = (ha1 * ar20) + (ha2 * ar10) + (hb1 * ar02) + (hb2 * ar01);
+							break;
+						case 7:
+							distance = (t2 * r11) - (t1 * r21);
+							radius = (ha1 * ar21) + (ha2 * ar11) + (hb0 * ar02) + (hb2 * ar00);
+							break;
+						case 8:
+							distance = (t2 * r12) - (t1 * r22);
+							radius = (ha1 * ar22) + (ha2 * ar12) + (hb0 * ar01) + (hb1 * ar00);
+							break;
+
+						// The cross products of the y axis of this box with the
+						// other axes
+						case 9:
+							distance = (t0 * r20) - (t2 * r00);
+							radius = (ha0 * ar20) + (ha2 * ar00) + (hb1 * ar12) + (hb2 * ar11);
+							break;
+						case 10:
+							distance = (t0 * r21) - (t2 * r01);
+							radius = (ha0 * ar21) + (ha2 * ar01) + (hb0 * ar12) + (hb2 * ar10);
+							break;
+						case 11:
+							distance = (t0 * r22) - (t2 * r02);
+							radius = (ha0 * ar22) + (ha2 * ar02) + (hb0 * ar11) + (hb1 * ar10);
+							break;
+
+						// The cross products of the z axis of this box with the
+						// other axes
+						case 12:
+							distance = (t1 * r00) - (t0 * r10);
+							radius = (ha0 * ar10) + (ha1 * ar00) + (hb1 * ar22) + (hb2 * ar21);
+							break;
+						case 13:
+							distance = (t1 * r01) - (t0 * r11);
+							radius = (ha0 * ar11) + (ha1 * ar01) + (hb0 * ar22) + (hb2 * ar20);
+							break;
+						default:
+							distance = (t1 * r02) - (t0 * r12);
+							radius = (ha0 * ar12) + (ha1 * ar02) + (hb0 * ar21) + (hb1 * ar20);
+							break;
+						}
+
+					if (Math.abs(distance) > radius) { return axis; }
+				}
+			return -1;
+		}
+
+
+	/**
+	 * Returns the x coordinate of the center of the box.
+	 *
+	 * @return The x coordinate of the center.
+	 */
+	public float getCenterX( )
+		{
+			return centerX;
+		}
+
+
+	/**
+	 * Returns the y coordinate of the center of the box.
+	 *
+	 * @return The y coordinate of the center.
+	 */
+	public float getCenterY( )
+		{
+			return centerY;
+		}
+
+
+	/**
+	 * Returns the z coordinate of the center of the box.
+	 *
+	 * @return The z coordinate of the center.
+	 */
+	public float getCenterZ( )
+		{
+			return centerZ;
+		}
+
+
+	/**
+	 * Returns half of the size of the box along its x axis.
+	 *
+	 * @return The half extent along the x axis.
+	 */
+	public float getHalfExtentX( )
+		{
+			return halfExtentX;
+		}
+
+
+	/**
+	 * Returns half of the size of the box along its y axis.
+	 *
+	 * @return The half extent along the y axis.
+	 */
+	public float getHalfExtentY( )
+		{
+			return halfExtentY;
+		}
+
+
+	/**
+	 * Returns half of the size of the box along its z axis.
+	 *
+	 * @return The half extent along the z axis.
+	 */
+	public float getHalfExtentZ( )
+		{
+			return halfExtentZ;
+		}
+
+
+	/**
+	 * Returns an element of the rotation of the box. Column i is the i-th axis
+	 * of the box in world coordinates.
+	 *
+	 * @param row
+	 *            The row of the element, from 0 to 2
+	 * @param column
+	 *            The column of the element, from 0 to 2
+	 * @return The element of the rotation matrix.
+	 */
+	public float getRotation(int row, int column)
+		{
+			return rotation[(3 * row) + column];
+		}
+
+
+	/**
+	 * Finds where a ray enters this box, by expressing the ray in the frame of
+	 * the box and using the slab test against its half extents.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it enters the box, 0 if it starts inside, or infinity if
+	 *         it misses the box.
+	 */
+	public float intersectRay(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ)
+		{
+			final float[ ] r = rotation;
+			final float px = originX - centerX, py = originY - centerY, pz = originZ - centerZ;
+
+			// Multiplying by the transpose of the rotation projects onto the
+			// axes of the box, which are its columns
+			return BoundingBox3D.intersectRay(-halfExtentX, -halfExtentY, -halfExtentZ, halfExtentX, halfExtentY,
+			        halfExtentZ, (r[0] * px) + (r[3] * py) + (r[6] * pz), (r[1] * px) + (r[4] * py) + (r[7] * pz),
+			        (r[2] * px) + (r[5] * py) + (r[8] * pz),
+			        (r[0] * directionX) + (r[3] * directionY) + (r[6] * directionZ),
+			        (r[1] * directionX) + (r[4] * directionY) + (r[7] * directionZ),
+			        (r[2] * directionX) + (r[5] * directionY) + (r[8] * directionZ));
+		}
+
+
+	/**
+	 * Checks if this box intersects another box with the separating axis
+	 * test on the fifteen candidate axes: the three axes of each box and the
+	 * nine cross products of an axis of this box with an axis of the other.
+	 * Boxes that only touch are considered to intersect. Nothing is allocated.
+	 *
+	 * @param other
+	 *            The other box
+	 * @return True if the boxes intersect, false if some axis separates them.
+	 */
+	public boolean intersects(OrientedBoundingBox other)
+		{
+			return intersects(other, 0, 0, 0);
+		}
+
+
+	/**
+	 * Checks if this box intersects another box after the other box was moved
+	 * by some offset, without moving it.
+	 *
+	 * @param other
+	 *            The other box
+	 * @param offsetX
+	 *            How far the other box is moved along the x axis
+	 * @param offsetY
+	 *            How far the other box is moved along the y axis
+	 * @param offsetZ
+	 *            How far the other box is moved along the z axis
+	 * @return True if the boxes intersect, false if some axis separates them.
+	 */
+	public boolean intersects(OrientedBoundingBox other, float offsetX, float offsetY, float offsetZ)
+		{
+			return findSeparatingAxis(other, -1, offsetX, offsetY, offsetZ) < 0;
+		}
+
+
+	/**
+	 * Sets the size of the box.
+	 *
+	 * @param halfExtentX
+	 *            Half of the size of the box along its x axis
+	 * @param halfExtentY
+	 *            Half of the size of the box along its y axis
+	 * @param halfExtentZ
+	 *            Half of the size of the box along its z axis
+	 */
+	public void setHalfExtents(float halfExtentX, float halfExtentY, float halfExtentZ)
+		{
+			this.halfExtentX = halfExtentX;
+			this.halfExtentY = halfExtentY;
+			this.halfExtentZ = halfExtentZ;
+		}
+
+
+	/**
+	 * Moves and rotates the box. The rotation is applied in the same order as
+	 * Processing's rotateX, rotateY and rotateZ, that is the rotation matrix is
+	 * the product of the rotations about x, y and z, in that order.
+	 *
+	 * @param x
+	 *            The x coordinate of the center
+	 * @param y
+	 *            The y coordinate of the center
+	 * @param z
+	 *            The z coordinate of the center
+	 * @param rotationX
+	 *            The rotation about the x axis in radians
+	 * @param rotationY
+	 *            The rotation about the y axis in radians
+	 * @param rotationZ
+	 *            The rotation about the z axis in radians
+	 */
+	public void setPose(float x, float y, float z, float rotationX, float rotationY, float rotationZ)
+		{
+			centerX = x;
+			centerY = y;
+			centerZ = z;
+
+			final float cx = (float)Math.cos(rotationX), sx = (float)Math.sin(rotationX);
+			final float cy = (float)Math.cos(rotationY), sy = (float)Math.sin(rotationY);
+			final float cz = (float)Math.cos(rotationZ), sz = (float)Math.sin(rotationZ);
+
+			rotation[0] = cy * cz;
+			rotation[1] = -cy * sz;
+			rotation[2] = sy;
+			rotation[3] = (cx * sz) + (sx * sy * cz);
+			rotation[4] = (cx * cz) - (sx * sy * sz);
+			rotation[5] = -sx * cy;
+			rotation[6] = (sx * sz) - (cx * sy * cz);
+			rotation[7] = (sx * cz) + (cx * sy * sz);
+			rotation[8] = cx * cy;
+		}
+}
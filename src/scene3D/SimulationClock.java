@@ -0,0 +1,135 @@
+package scene3D;
+
+
+/**
+ * Turns the variable time between frames into a whole number of simulation
+ * steps of a fixed length. The time left over is kept for the next frame and
+ * is used to interpolate the poses drawn between the last two steps. If a
+ * frame took so long that more than the maximum number of steps would be
+ * needed, the extra time is dropped rather than making the next frame even
+ * slower.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class SimulationClock {
+
+	/**
+	 * The simulated time that has not been stepped yet, in seconds
+	 */
+	private float		accumulator		= 0;
+
+	/**
+	 * The number of steps dropped because a frame needed too many
+	 */
+	private long		droppedSteps	= 0;
+
+	/**
+	 * The largest number of steps run for a single frame
+	 */
+	private final int	maxSteps;
+
+	/**
+	 * The length of a simulation step, in seconds
+	 */
+	private final float	step;
+
+	/**
+	 * The total number of steps run so far
+	 */
+	private long		totalSteps		= 0;
+
+
+	/**
+	 * Instantiates a clock.
+	 *
+	 * @param step
+	 *            The length of a simulation step in seconds, must be positive
+	 * @param maxSteps
+	 *            The largest number of steps run for a single frame, must be
+	 *            positive
+	 */
+	public SimulationClock(float step, int maxSteps)
+		{
+			if (!(step > 0)) { throw new IllegalArgumentException("The step must be positive"); }
+			if (maxSteps <= 0) { throw new IllegalArgumentException("The maximum number of steps must be positive"); }
+			this.step = step;
+			this.maxSteps = maxSteps;
+		}
+
+
+	/**
+	 * Adds the time elapsed since the last frame and returns the number of
+	 * steps to simulate for this frame.
+	 *
+	 * @param elapsedSeconds
+	 *            The time elapsed since the last frame, in seconds. Negative
+	 *            times are ignored.
+	 * @return The number of steps to simulate, from 0 to the maximum.
+	 */
+	public int advance(float elapsedSeconds)
+		{
+			accumulator += Math.max(elapsedSeconds, 0);
+
+			int steps = (int)(accumulator / step);
+			if (steps > maxSteps)
+				{
+					droppedSteps += steps - maxSteps;
+					steps = maxSteps;
+					accumulator = 0;
+				}
+			else
+				{
+					accumulator -= steps * step;
+				}
+			totalSteps += steps;
+			return steps;
+		}
+
+
+	/**
+	 * Returns how far the current time is between the last step and the next
+	 * one, which is used to interpolate the poses that are drawn.
+	 *
+	 * @return A fraction of a step in [0, 1]
+	 */
+	public float getAlpha( )
+		{
+			return Math.min(accumulator / step, 1);
+		}
+
+
+	/**
+	 * Returns the number of steps that were dropped because a frame needed
+	 * more than the maximum number of steps.
+	 *
+	 * @return The number of dropped steps so far.
+	 */
+	public long getDroppedStepCount( )
+		{
+			return droppedSteps;
+		}
+
+
+	/**
+	 * Returns the length of a simulation step.
+	 *
+	 * @return The length of a step in seconds.
+	 */
+	public float getStep( )
+		{
+			return step;
+		}
+
+
+	/**
+	 * Returns the total number of steps run so far.
+	 *
+	 * @return The number of steps returned by advance so far.
+	 */
+	public long getTotalStepCount( )
+		{
+			return totalSteps;
+		}
+}
@@ -0,0 +1,76 @@
+package scene3D;
+
+
+/**
+ * Sorts the boxes along the x axis and only tests the boxes whose x intervals
+ * overlap. The order of the boxes is kept from one call to the next and
+ * restored with an insertion sort, which is close to linear since the boxes
+ * only move a little between frames.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class SweepAndPruneBroadPhase implements BroadPhase {
+
+	/**
+	 * The indices of the boxes, sorted by their minimum x coordinate
+	 */
+	private int[ ]	order	= new int[0];
+
+
+	@Override
+	public void findPairs(BoundingBoxes boxes, PairHandler handler)
+		{
+			final int size = boxes.size();
+			if (order.length != size)
+				{
+					// The boxes changed, so start over from an unsorted order.
+					order = new int[size];
+					for (int i = 0; i < size; i++)
+						{
+							order[i] = i;
+						}
+				}
+
+			sortByMinX(boxes);
+
+			for (int a = 0; a < size; a++)
+				{
+					final int i = order[a];
+					final float maxX = boxes.getMaxX(i);
+					for (int b = a + 1; (b < size) && (boxes.getMinX(order[b]) <= maxX); b++)
+						{
+							final int j = order[b];
+							if (boxes.overlaps(i, j))
+								{
+									handler.handlePair(Math.min(i, j), Math.max(i, j));
+								}
+						}
+				}
+		}
+
+
+	/**
+	 * Sorts the order of the boxes by their minimum x coordinate with an
+	 * insertion sort.
+	 *
+	 * @param boxes
+	 *            The boxes being sorted
+	 */
+	private void sortByMinX(BoundingBoxes boxes)
+		{
+			for (int a = 1; a < order.length; a++)
+				{
+					final int i = order[a];
+					final float minX = boxes.getMinX(i);
+					int b = a - 1;
+					while ((b >= 0) && (boxes.getMinX(order[b]) > minX))
+						{
+							order[b + 1] = order[b];
+							b--;
+						}
+					order[b + 1] = i;
+				}
+		}
+}
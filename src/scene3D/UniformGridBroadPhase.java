@@ -0,0 +1,176 @@
+package scene3D;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Divides space into cubic cells of a fixed size and only tests the boxes that
+ * share a cell. It works best when the cells are about the size of the
+ * largest boxes. A pair that shares several cells is only reported from the
+ * cell at the minimum corner of the cells they share.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class UniformGridBroadPhase implements BroadPhase {
+
+	/**
+	 * The box of each cell entry
+	 */
+	private int[ ]		entryBox	= new int[64];
+
+	/**
+	 * The cell coordinates of each cell entry
+	 */
+	private int[ ]		entryX		= new int[64], entryY = new int[64], entryZ = new int[64];
+
+	/**
+	 * The inverse of the size of a cell
+	 */
+	private final float	inverseCellSize;
+
+	/**
+	 * The hash of the cell of each entry in the upper 32 bits and the index of
+	 * the entry in the lower 32 bits, so that sorting groups the entries by
+	 * cell
+	 */
+	private long[ ]		keys		= new long[64];
+
+
+	/**
+	 * Instantiates a grid.
+	 *
+	 * @param cellSize
+	 *            The length of the sides of the cells, must be positive
+	 */
+	public UniformGridBroadPhase(float cellSize)
+		{
+			if (!(cellSize > 0)) { throw new IllegalArgumentException("The cell size must be positive"); }
+			inverseCellSize = 1 / cellSize;
+		}
+
+
+	/**
+	 * Adds an entry for a box in a cell, growing the arrays if needed.
+	 *
+	 * @param entry
+	 *            The index of the entry
+	 * @param box
+	 *            The index of the box
+	 * @param x
+	 *            The x coordinate of the cell
+	 * @param y
+	 *            The y coordinate of the cell
+	 * @param z
+	 *            The z coordinate of the cell
+	 */
+	private void addEntry(int entry, int box, int x, int y, int z)
+		{
+			if (entry == keys.length)
+				{
+					final int capacity = entry * 2;
+					keys = Arrays.copyOf(keys, capacity);
+					entryBox = Arrays.copyOf(entryBox, capacity);
+					entryX = Arrays.copyOf(entryX, capacity);
+					entryY = Arrays.copyOf(entryY, capacity);
+					entryZ = Arrays.copyOf(entryZ, capacity);
+				}
+			final int hash = (x * 73856093) ^ (y * 19349663) ^ (z * 83492791);
+			keys[entry] = ((long)hash << 32) | entry;
+			entryBox[entry] = box;
+			entryX[entry] = x;
+			entryY[entry] = y;
+			entryZ[entry] = z;
+		}
+
+
+	/**
+	 * Returns the coordinate of the cell containing a coordinate.
+	 *
+	 * @param coordinate
+	 *            A coordinate along any axis
+	 * @return The coordinate of the cell along the same axis.
+	 */
+	private int cell(float coordinate)
+		{
+			return (int)Math.floor(coordinate * inverseCellSize);
+		}
+
+
+	@Override
+	public void findPairs(BoundingBoxes boxes, PairHandler handler)
+		{
+			int entries = 0;
+			for (int i = 0; i < boxes.size(); i++)
+				{
+					final int maxX = cell(boxes.getMaxX(i)), maxY = cell(boxes.getMaxY(i)), maxZ = cell(boxes.getMaxZ(i));
+					for (int x = cell(boxes.getMinX(i)); x <= maxX; x++)
+						{
+							for (int y = cell(boxes.getMinY(i)); y <= maxY; y++)
+								{
+									for (int z = cell(boxes.getMinZ(i)); z <= maxZ; z++)
+										{
+											addEntry(entries++, i, x, y, z);
+										}
+								}
+						}
+				}
+
+			Arrays.sort(keys, 0, entries);
+
+			int start = 0;
+			while (start < entries)
+				{
+					// Find the run of entries whose cells have the same hash.
+					final int hash = (int)(keys[start] >> 32);
+					int end = start + 1;
+					while ((end < entries) && ((int)(keys[end] >> 32) == hash))
+						{
+							end++;
+						}
+
+					for (int a = start; a < end; a++)
+						{
+							final int first = (int)keys[a];
+							for (int b = a + 1; b < end; b++)
+								{
+									final int second = (int)keys[b];
+									if (isReportedIn(boxes, first, second))
+										{
+											final int i = entryBox[first], j = entryBox[second];
+											handler.handlePair(Math.min(i, j), Math.max(i, j));
+										}
+								}
+						}
+					start = end;
+				}
+		}
+
+
+	/**
+	 * Checks if the boxes of two entries overlap and should be reported from
+	 * the cell of the entries. Entries whose cells only share a hash are
+	 * ignored.
+	 *
+	 * @param boxes
+	 *            The boxes being tested
+	 * @param first
+	 *            The index of the first entry
+	 * @param second
+	 *            The index of the second entry
+	 * @return True if the pair should be reported from this cell.
+	 */
+	private boolean isReportedIn(BoundingBoxes boxes, int first, int second)
+		{
+			final int i = entryBox[first], j = entryBox[second];
+			final int x = entryX[first], y = entryY[first], z = entryZ[first];
+			if ((i == j) || (x != entryX[second]) || (y != entryY[second]) || (z != entryZ[second])) { return false; }
+
+			// The first cell shared by both boxes is the one reporting the pair.
+			return (x == Math.max(cell(boxes.getMinX(i)), cell(boxes.getMinX(j))))
+			        && (y == Math.max(cell(boxes.getMinY(i)), cell(boxes.getMinY(j))))
+			        && (z == Math.max(cell(boxes.getMinZ(i)), cell(boxes.getMinZ(j)))) && boxes.overlaps(i, j);
+		}
+}
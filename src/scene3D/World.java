@@ -3,10 +3,17 @@ package scene3D;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import processing.core.PApplet;
+import processing.core.PImage;
+import processing.core.PMatrix3D;
+import processing.opengl.PGraphicsOpenGL;
+import scene3Dabstract.BoundingVolumeHierarchy;
 import scene3Dabstract.ComplexGraphicObject3D;
 import scene3Dabstract.GraphicObject3D;
+import scene3Dabstract.ParallelRange;
+import scene3Dabstract.RayHit;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 
@@ -23,16 +30,254 @@ public class World extends ComplexGraphicObject3D <Cube> {
 	 * Size of the bounding Cube
 	 */
 	private static final int		BOUNDING_CUBE_SIZE	= 400;
+
+	/**
+	 * The color of cubes that are colliding with another cube
+	 */
+	private static final int		COLLIDING_COLOR		= 0xFFA00000;
+
+	/**
+	 * The color of cubes that are not colliding
+	 */
+	private static final int		DEFAULT_COLOR		= 0xFF00A0A0;
+
+	/**
+	 * The largest number of simulation steps run for a single frame
+	 */
+	private static final int		MAX_STEPS_PER_FRAME	= 5;
+
+	/**
+	 * The length of a simulation step in seconds. The velocities of the cubes
+	 * are in units per step.
+	 */
+	private static final float		SIMULATION_STEP		= 1 / 60f;
 														
+	/**
+	 * Keeps a cube inside some bounds. A cube that sticks out of the bounds is
+	 * moved back inside and its velocity along that axis is reversed.
+	 *
+	 * @param cube
+	 *            The cube to clamp
+	 * @param bounds
+	 *            The box the cube must stay in
+	 */
+	private static void clamp(Cube cube, BoundingBox3D bounds)
+		{
+			final BoundingBox3D absolute = cube.getAbsoluteBoundingBox();
+
+			if (absolute.getMinX() < bounds.getMinX())
+				{
+					cube.setTranslationX(bounds.getMinX() + Math.abs(cube.getTranslationX() - absolute.getMinX()));
+					cube.setXTranslationalVelocity(-cube.getXTranslationalVelocity());
+				}
+			else
+				if (absolute.getMaxX() > bounds.getMaxX())
+					{
+						cube.setTranslationX(bounds.getMaxX() - Math.abs(cube.getTranslationX() - absolute.getMaxX()));
+						cube.setXTranslationalVelocity(-cube.getXTranslationalVelocity());
+					}
+
+			if (absolute.getMinY() < bounds.getMinY())
+				{
+					cube.setTranslationY(bounds.getMinY() + Math.abs(cube.getTranslationY() - absolute.getMinY()));
+					cube.setYTranslationalVelocity(-cube.getYTranslationalVelocity());
+				}
+			else
+				if (absolute.getMaxY() > bounds.getMaxY())
+					{
+						cube.setTranslationY(bounds.getMaxY() - Math.abs(cube.getTranslationY() - absolute.getMaxY()));
+						cube.setYTranslationalVelocity(-cube.getYTranslationalVelocity());
+					}
+
+			if (absolute.getMinZ() < bounds.getMinZ())
+				{
+					cube.setTranslationZ(bounds.getMinZ() + Math.abs(cube.getTranslationZ() - absolute.getMinZ()));
+					cube.setZTranslationalVelocity(-cube.getZTranslationalVelocity());
+				}
+			else
+				if (absolute.getMaxZ() > bounds.getMaxZ())
+					{
+						cube.setTranslationZ(bounds.getMaxZ() - Math.abs(cube.getTranslationZ() - absolute.getMaxZ()));
+						cube.setZTranslationalVelocity(-cube.getZTranslationalVelocity());
+					}
+		}
+
+
+	/**
+	 * The applet the world is drawn in
+	 */
+	private final PApplet			applet;
+
+	/**
+	 * Whether the cubes are drawn in a batch rather than one at a time
+	 */
+	private boolean					batchRendering			= true;
+
+	/**
+	 * The store shared by all of the cubes, or null if every cube has its own
+	 */
+	private final BodyStore			bodies;
+
+	/**
+	 * The absolute bounding boxes of the cubes, in the same order as the cubes
+	 */
+	private final BoundingBoxes		boundingBoxes;
+
 	/**
 	 * The bounding cube
 	 */
 	private final Cube				boundingCube;
+
+	/**
+	 * Finds the pairs of cubes whose bounding boxes overlap
+	 */
+	private BroadPhase				broadPhase				= new SweepAndPruneBroadPhase();
+
+	/**
+	 * Decides how many fixed simulation steps are run for each frame
+	 */
+	private final SimulationClock	clock					= new SimulationClock(SIMULATION_STEP, MAX_STEPS_PER_FRAME);
+
+	/**
+	 * Records the pairs found by the broad phase
+	 */
+	private final BroadPhase.PairHandler	collisionHandler;
 									
+	/**
+	 * Caches the pairs of cubes between updates, reports their contacts and
+	 * pushes touching cubes apart
+	 */
+	private final ContactManager	contacts;
+
+	/**
+	 * Whether collisions are detected along the motion of the cubes during a
+	 * step rather than only at their poses
+	 */
+	private boolean					continuousCollisionDetection	= true;
+
+	/**
+	 * Reused for the world bounds of each cube when culling without the
+	 * hierarchy
+	 */
+	private final float[ ]			cubeBounds				= new float[6];
+
 	/**
 	 * The list of all cubes in the world (except the bounding cube).
 	 */
 	private final ArrayList <Cube>	cubesInWorld;
+
+	/**
+	 * The number of cubes that were outside of the view during the last draw
+	 */
+	private int						culledCubes				= 0;
+
+	/**
+	 * Marks the cubes found in the view by the hierarchy as visible
+	 */
+	private final BoundingVolumeHierarchy.Visitor <Cube>	cullingVisitor;
+
+	/**
+	 * The volume seen by the camera during the current draw
+	 */
+	private final Frustum			frustum					= new Frustum();
+
+	/**
+	 * Whether the cubes outside of the view are skipped when drawing
+	 */
+	private boolean					frustumCulling			= true;
+
+	/**
+	 * Reused for the inverse of the view projection when picking
+	 */
+	private final PMatrix3D			inverseViewProjection	= new PMatrix3D();
+
+	/**
+	 * The number of exact intersection tests done during the last update
+	 */
+	private int						narrowPhaseTests		= 0;
+
+	/**
+	 * The axis found to separate the cubes of each pair, or -1 if they
+	 * intersect
+	 */
+	private int[ ]					pairAxes				= new int[16];
+
+	/**
+	 * The number of pairs found by the broad phase during the current update
+	 */
+	private int						pairCount				= 0;
+
+	/**
+	 * The indices of the cubes of each pair found by the broad phase
+	 */
+	private int[ ]					pairFirst				= new int[16], pairSecond = new int[16];
+
+	/**
+	 * Whether the cubes of each pair intersect
+	 */
+	private boolean[ ]				pairHits				= new boolean[16];
+
+	/**
+	 * Whether the cubes of each pair only intersect later during the step
+	 */
+	private boolean[ ]				pairSwept				= new boolean[16];
+
+	/**
+	 * Draws the cubes in a batch
+	 */
+	private final CubeBatchRenderer	renderer;
+
+	/**
+	 * The bounding boxes of the cubes swept along their velocities during a
+	 * step, in the same order as the cubes
+	 */
+	private final BoundingBoxes		sweptBoxes;
+
+	/**
+	 * The number of pairs of cubes found to collide during the last update
+	 * that did not intersect at their poses
+	 */
+	private int						sweptHits				= 0;
+
+	/**
+	 * The number of cubes whose face texture was replaced during the current
+	 * frame
+	 */
+	private int						textureInvalidations	= 0;
+
+	/**
+	 * The number of new face textures adopted during the current frame
+	 */
+	private int						textureUploads			= 0;
+
+	/**
+	 * The version of the face texture shared by the cubes, or -1 if there is
+	 * none
+	 */
+	private long					textureVersion			= -1;
+
+	/**
+	 * The product of the projection and modelview matrices during the last
+	 * draw, which maps world coordinates to clip coordinates
+	 */
+	private final PMatrix3D			viewProjection			= new PMatrix3D();
+
+	/**
+	 * Whether the view projection was recorded, which it is not until the
+	 * world is drawn with an OpenGL renderer
+	 */
+	private boolean					viewProjectionKnown		= false;
+
+	/**
+	 * Whether each cube was inside the view during the last draw, in the same
+	 * order as the cubes
+	 */
+	private boolean[ ]				visibility				= new boolean[0];
+
+	/**
+	 * The number of cubes that were inside the view during the last draw
+	 */
+	private int						visibleCubes			= 0;
 									
 									
 	/**
@@ -42,8 +287,42 @@ public class World extends ComplexGraphicObject3D <Cube> {
 	 *            The applet for the world to be drawn in.
 	 */
 	public World(PApplet theApp)
+		{
+			// Randomly decide the number of cubes we should generate.
+			this(theApp, (int)theApp.random(3.0f, 10.0f));
+		}
+
+
+	/**
+	 * Initializes the scene with the given number of cubes.
+	 *
+	 * @param theApp
+	 *            The applet for the world to be drawn in.
+	 * @param numberOfCubesToGenerate
+	 *            The number of cubes inside the bounding cube
+	 */
+	public World(PApplet theApp, int numberOfCubesToGenerate)
+		{
+			this(theApp, numberOfCubesToGenerate, true);
+		}
+
+
+	/**
+	 * Initializes the scene with the given number of cubes.
+	 *
+	 * @param theApp
+	 *            The applet for the world to be drawn in.
+	 * @param numberOfCubesToGenerate
+	 *            The number of cubes inside the bounding cube
+	 * @param sharedBodyStore
+	 *            True if the cubes should be views over a single body store
+	 *            which is moved in one pass, false if every cube should move
+	 *            itself
+	 */
+	public World(PApplet theApp, int numberOfCubesToGenerate, boolean sharedBodyStore)
 		{
 			super(new ArrayList <Cube>());
+			applet = theApp;
 			cubesInWorld = (ArrayList <Cube>)super.getCollection();
 
 			// Create a cube that will contain all the other cubes in the
@@ -52,8 +331,8 @@ public class World extends ComplexGraphicObject3D <Cube> {
 			boundingCube = new Cube(0, 0, 0, BOUNDING_CUBE_SIZE, theApp);
 			boundingCube.setFill(false);
 
-			// Randomly decide the number of cubes we should generate.
-			final int numberOfCubesToGenerate = (int)theApp.random(3.0f, 10.0f);
+			bodies = sharedBodyStore ? new BodyStore(numberOfCubesToGenerate) : null;
+			renderer = new CubeBatchRenderer(theApp);
 
 			// Generate the cubes and add them to the array list.
 			for (int i = 0; i < numberOfCubesToGenerate; i++)
@@ -66,105 +345,353 @@ public class World extends ComplexGraphicObject3D <Cube> {
 					final float xRot = theApp.random(2.0f, 10.0f);
 					final float yRot = theApp.random(2.0f, 10.0f);
 					final float zRot = theApp.random(2.0f, 10.0f);
-					final Cube interiorCube = new Cube(xPos, yPos, zPos, size, xRot, yRot, zRot, theApp);
+					final Cube interiorCube = bodies != null ? new Cube(bodies, xPos, yPos, zPos, size, theApp)
+					        : new Cube(xPos, yPos, zPos, size, xRot, yRot, zRot, theApp);
 					cubesInWorld.add(interiorCube);
 				}
+
+			boundingBoxes = new BoundingBoxes(numberOfCubesToGenerate);
+			contacts = new ContactManager(cubesInWorld);
+			sweptBoxes = new BoundingBoxes(numberOfCubesToGenerate);
+			collisionHandler = new BroadPhase.PairHandler() {
+
+				@Override
+				public void handlePair(int first, int second)
+					{
+						if (pairCount == pairFirst.length)
+							{
+								pairAxes = Arrays.copyOf(pairAxes, pairCount * 2);
+								pairFirst = Arrays.copyOf(pairFirst, pairCount * 2);
+								pairSecond = Arrays.copyOf(pairSecond, pairCount * 2);
+								pairHits = Arrays.copyOf(pairHits, pairCount * 2);
+								pairSwept = Arrays.copyOf(pairSwept, pairCount * 2);
+							}
+						pairFirst[pairCount] = first;
+						pairSecond[pairCount] = second;
+						pairCount++;
+					}
+			};
+			cullingVisitor = new BoundingVolumeHierarchy.Visitor <Cube>() {
+
+				@Override
+				public boolean visit(int index, Cube cube)
+					{
+						visibility[index] = true;
+						visibleCubes++;
+						return true;
+					}
+			};
 		}
 
 
 	/**
-	 * Makes sure that all cube in the world stay inside the bounding cube.
+	 * Advances the simulation by the time elapsed since the last frame. The
+	 * world is updated a whole number of fixed steps, so the simulation does
+	 * not depend on the frame rate, and the cubes are then drawn between
+	 * their last two poses. The texture counters start over, since a frame
+	 * can run no step at all.
+	 *
+	 * @param elapsedSeconds
+	 *            The time elapsed since the last frame, in seconds
+	 * @return The number of simulation steps that were run.
 	 */
-	private void checkForCollisionsWithBoundingCube( )
+	public int advance(float elapsedSeconds)
 		{
-			final BoundingBox3D bounds = boundingCube.getAbsoluteBoundingBox();
-			for (final Cube cube : cubesInWorld)
-				{
-					final BoundingBox3D absolute = cube.getAbsoluteBoundingBox();
+			textureInvalidations = 0;
+			textureUploads = 0;
 
-					if (absolute.getMinX() < bounds.getMinX())
+			final int steps = clock.advance(elapsedSeconds);
+			for (int i = 0; i < steps; i++)
+				{
+					if (bodies != null)
 						{
-							cube.setTranslationX(
-							        bounds.getMinX() + Math.abs(cube.getTranslationX() - absolute.getMinX()));
-							cube.setXTranslationalVelocity(-cube.getXTranslationalVelocity());
+							bodies.savePreviousPoses();
 						}
 					else
-						if (absolute.getMaxX() > bounds.getMaxX())
-							{
-								cube.setTranslationX(
-								        bounds.getMaxX() - Math.abs(cube.getTranslationX() - absolute.getMaxX()));
-								cube.setXTranslationalVelocity(-cube.getXTranslationalVelocity());
-							}
+						{
+							for (final Cube cube : cubesInWorld)
+								{
+									cube.savePreviousPose();
+								}
+						}
+					update();
+				}
 
-					if (absolute.getMinY() < bounds.getMinY())
+			final float alpha = clock.getAlpha();
+			if (bodies != null)
+				{
+					bodies.setInterpolation(alpha);
+				}
+			else
+				{
+					for (final Cube cube : cubesInWorld)
 						{
-							cube.setTranslationY(
-							        bounds.getMinY() + Math.abs(cube.getTranslationY() - absolute.getMinY()));
-							cube.setYTranslationalVelocity(-cube.getYTranslationalVelocity());
+							cube.setInterpolation(alpha);
 						}
-					else
-						if (absolute.getMaxY() > bounds.getMaxY())
+				}
+			return steps;
+		}
+
+
+	/**
+	 * Makes sure that all cube in the world stay inside the bounding cube.
+	 * When the cubes share a body store, it is done in a single pass over it.
+	 * Each cube is clamped independently, so it is split between threads when
+	 * there are more cubes than the parallel threshold.
+	 */
+	private void checkForCollisionsWithBoundingCube( )
+		{
+			final BoundingBox3D bounds = boundingCube.getAbsoluteBoundingBox();
+			final int size = bodies != null ? bodies.size() : cubesInWorld.size();
+			ParallelRange.apply(0, size, getParallelThreshold(), new ParallelRange.Operation() {
+
+				@Override
+				public void apply(int start, int end)
+					{
+						if (bodies != null)
 							{
-								cube.setTranslationY(
-								        bounds.getMaxY() - Math.abs(cube.getTranslationY() - absolute.getMaxY()));
-								cube.setYTranslationalVelocity(-cube.getYTranslationalVelocity());
+								bodies.clampTo(bounds, start, end);
+								return;
 							}
 
-					if (absolute.getMinZ() < bounds.getMinZ())
+						for (int i = start; i < end; i++)
+							{
+								clamp(cubesInWorld.get(i), bounds);
+							}
+					}
+			});
+		}
+
+
+	/**
+	 * Checks for collisions between cubes in the world, colors any collided
+	 * cubes red and hands the pairs to the contact manager, which pushes the
+	 * colliding cubes apart. Only the pairs of cubes whose bounding boxes
+	 * overlap are tested exactly, in parallel if there are more pairs than
+	 * the parallel threshold, starting from the axis that separated them
+	 * during the last update. With continuous collision detection, the
+	 * bounding boxes are swept along the velocities of the cubes, and a pair
+	 * that does not intersect now is tested from the time its boxes first
+	 * touch during the step, so that fast cubes cannot pass through each
+	 * other between two updates.
+	 */
+	private void checkForCubeCollisions( )
+		{
+			boundingBoxes.clear();
+			for (final Cube c : cubesInWorld)
+				{
+					c.setColor(DEFAULT_COLOR);
+					if (bodies == null)
 						{
-							cube.setTranslationZ(
-							        bounds.getMinZ() + Math.abs(cube.getTranslationZ() - absolute.getMinZ()));
-							cube.setZTranslationalVelocity(-cube.getZTranslationalVelocity());
+							boundingBoxes.add(c.getAbsoluteBoundingBox());
 						}
-					else
-						if (absolute.getMaxZ() > bounds.getMaxZ())
+				}
+
+			final BoundingBoxes boxes = bodies != null ? bodies.getBoundingBoxes() : boundingBoxes;
+			final boolean continuous = continuousCollisionDetection;
+			if (continuous)
+				{
+					sweptBoxes.clear();
+					for (int i = 0; i < boxes.size(); i++)
+						{
+							final Cube c = cubesInWorld.get(i);
+							final float vx = c.getXTranslationalVelocity(), vy = c.getYTranslationalVelocity();
+							final float vz = c.getZTranslationalVelocity();
+							sweptBoxes.add(boxes.getMinX(i) + Math.min(vx, 0), boxes.getMinY(i) + Math.min(vy, 0),
+							        boxes.getMinZ(i) + Math.min(vz, 0), boxes.getMaxX(i) + Math.max(vx, 0),
+							        boxes.getMaxY(i) + Math.max(vy, 0), boxes.getMaxZ(i) + Math.max(vz, 0));
+						}
+				}
+
+			pairCount = 0;
+			broadPhase.findPairs(continuous ? sweptBoxes : boxes, collisionHandler);
+			narrowPhaseTests = pairCount;
+
+			final int threshold = getParallelThreshold();
+			if (threshold > 0)
+				{
+					// Compute the oriented bounding boxes up front so that the
+					// parallel narrow phase only reads them.
+					ParallelRange.apply(0, cubesInWorld.size(), threshold, new ParallelRange.Operation() {
+
+						@Override
+						public void apply(int start, int end)
 							{
-								cube.setTranslationZ(
-								        bounds.getMaxZ() - Math.abs(cube.getTranslationZ() - absolute.getMaxZ()));
-								cube.setZTranslationalVelocity(-cube.getZTranslationalVelocity());
+								for (int i = start; i < end; i++)
+									{
+										cubesInWorld.get(i).getOrientedBoundingBox();
+									}
 							}
+					});
 				}
 
+			ParallelRange.apply(0, pairCount, threshold, new ParallelRange.Operation() {
+
+				@Override
+				public void apply(int start, int end)
+					{
+						for (int k = start; k < end; k++)
+							{
+								pairAxes[k] = contacts.findSeparatingAxis(pairFirst[k], pairSecond[k]);
+								pairHits[k] = pairAxes[k] < 0;
+								pairSwept[k] = false;
+								if (!pairHits[k] && continuous)
+									{
+										final Cube first = cubesInWorld.get(pairFirst[k]);
+										final Cube second = cubesInWorld.get(pairSecond[k]);
+										final float time = boxes.timeOfImpact(pairFirst[k], pairSecond[k],
+										        first.getXTranslationalVelocity() - second.getXTranslationalVelocity(),
+										        first.getYTranslationalVelocity() - second.getYTranslationalVelocity(),
+										        first.getZTranslationalVelocity() - second.getZTranslationalVelocity());
+										pairSwept[k] = (time <= 1) && first.intersectsDuring(second, time);
+										pairHits[k] = pairSwept[k];
+									}
+							}
+					}
+			});
+
+			// Color the cubes serially so that the result does not depend on
+			// the threads.
+			sweptHits = 0;
+			for (int k = 0; k < pairCount; k++)
+				{
+					if (pairHits[k])
+						{
+							cubesInWorld.get(pairFirst[k]).setColor(COLLIDING_COLOR);
+							cubesInWorld.get(pairSecond[k]).setColor(COLLIDING_COLOR);
+						}
+					if (pairSwept[k])
+						{
+							sweptHits++;
+						}
+				}
+			contacts.update(pairFirst, pairSecond, pairAxes, pairHits, pairCount, boxes);
 		}
 
 
 	/**
-	 * Checks for collisions between cubes in the world and colors an collided
-	 * cubes red.
+	 * Decides which cubes are inside the view of the camera. The bounding
+	 * cube contains every other cube, so it is tested first: when it is
+	 * entirely inside or outside of the view, so are all of the cubes and none
+	 * of them needs to be tested. Otherwise, the world bounds of the cubes
+	 * are tested, through the hierarchy if it is enabled.
 	 */
-	private void checkForCubeCollisions( )
+	private void cull( )
 		{
 			final int size = cubesInWorld.size();
-			for (final Cube c : cubesInWorld)
+			if (visibility.length != size)
+				{
+					visibility = new boolean[size];
+				}
+
+			int group = Frustum.INSIDE;
+			if (applet.g instanceof PGraphicsOpenGL)
+				{
+					// Kept so that the cubes can be picked between frames
+					viewProjection.set(((PGraphicsOpenGL)applet.g).projmodelview);
+					viewProjectionKnown = true;
+					if (frustumCulling)
+						{
+							frustum.update(viewProjection);
+							group = frustum.classify(boundingCube.getAbsoluteBoundingBox());
+						}
+				}
+
+			if (group != Frustum.INTERSECTS)
 				{
-					c.setColor(0xFF00A0A0);
+					Arrays.fill(visibility, group == Frustum.INSIDE);
+					visibleCubes = group == Frustum.INSIDE ? size : 0;
+					culledCubes = size - visibleCubes;
+					return;
 				}
 
-			for (int i = 0; i < size; i++)
+			visibleCubes = 0;
+			final BoundingVolumeHierarchy <Cube> tree = getHierarchy();
+			if (tree != null)
+				{
+					Arrays.fill(visibility, false);
+					tree.query(frustum, cullingVisitor);
+				}
+			else
 				{
-					for (int j = i + 1; j < size; j++)
+					for (int i = 0; i < size; i++)
 						{
-							if (cubesInWorld.get(i).intersects(cubesInWorld.get(j)))
+							cubesInWorld.get(i).getWorldBounds(cubeBounds, 0);
+							visibility[i] = frustum.classify(cubeBounds[0], cubeBounds[1], cubeBounds[2], cubeBounds[3],
+							        cubeBounds[4], cubeBounds[5]) != Frustum.OUTSIDE;
+							if (visibility[i])
 								{
-									cubesInWorld.get(i).setColor(0xFFA00000);
-									cubesInWorld.get(j).setColor(0xFFA00000);
+									visibleCubes++;
 								}
 						}
 				}
+			culledCubes = size - visibleCubes;
 		}
 
 
 	/**
-	 * Draws the world.
+	 * Draws the world. The cubes are drawn in a batch unless batch rendering
+	 * was turned off, and the cubes outside of the view are skipped unless
+	 * frustum culling was turned off.
 	 */
 	@Override
 	public void draw( )
 		{
-			super.draw();
+			cull();
+			if (batchRendering)
+				{
+					renderer.draw(cubesInWorld, visibility);
+				}
+			else
+				{
+					for (int i = 0; i < cubesInWorld.size(); i++)
+						{
+							if (visibility[i])
+								{
+									cubesInWorld.get(i).draw();
+								}
+						}
+				}
 			boundingCube.draw();
 		}
 
 
+	/**
+	 * Returns the contact manager, which reports the contacts between cubes
+	 * and decides how they respond.
+	 *
+	 * @return The contact manager of the world.
+	 */
+	public ContactManager getContactManager( )
+		{
+			return contacts;
+		}
+
+
+	/**
+	 * Returns the number of cubes that were skipped during the last draw
+	 * because they were outside of the view.
+	 *
+	 * @return The number of cubes that were not drawn.
+	 */
+	public int getCulledCount( )
+		{
+			return culledCubes;
+		}
+
+
+	/**
+	 * Returns the number of exact intersection tests done during the last
+	 * update, that is the number of pairs found by the broad phase.
+	 *
+	 * @return The number of pairs of cubes tested exactly.
+	 */
+	public int getNarrowPhaseTestCount( )
+		{
+			return narrowPhaseTests;
+		}
+
+
 	/**
 	 * Always returns null since the world has no rotation
 	 *
@@ -207,6 +734,59 @@ public class World extends ComplexGraphicObject3D <Cube> {
 		}
 
 
+	/**
+	 * Returns the clock deciding how many simulation steps are run for each
+	 * frame.
+	 *
+	 * @return The simulation clock.
+	 */
+	public SimulationClock getSimulationClock( )
+		{
+			return clock;
+		}
+
+
+	/**
+	 * Returns the number of pairs of cubes found to collide during the last
+	 * update that did not intersect at their poses, which would have passed
+	 * through each other without continuous collision detection.
+	 *
+	 * @return The number of collisions found by sweeping the cubes.
+	 */
+	public int getSweptHitCount( )
+		{
+			return sweptHits;
+		}
+
+
+	/**
+	 * Returns the number of cubes whose face texture was replaced during the
+	 * current frame.
+	 *
+	 * @return The number of cubes that were given a new face texture since
+	 *         the world was last advanced.
+	 */
+	public int getTextureInvalidationCount( )
+		{
+			return textureInvalidations;
+		}
+
+
+	/**
+	 * Returns the number of new face textures adopted during the current
+	 * frame. Since the cubes share the same PImage, each new texture is
+	 * uploaded to the GPU once, so this is 0 on frames where the face did not
+	 * change.
+	 *
+	 * @return The number of texture uploads since the world was last
+	 *         advanced.
+	 */
+	public int getTextureUploadCount( )
+		{
+			return textureUploads;
+		}
+
+
 	/**
 	 * Returns 0 since the World is defined in the world reference frame.
 	 */
@@ -237,6 +817,40 @@ public class World extends ComplexGraphicObject3D <Cube> {
 		}
 
 
+	/**
+	 * Returns the number of cubes that were inside the view during the last
+	 * draw.
+	 *
+	 * @return The number of cubes that were drawn.
+	 */
+	public int getVisibleCount( )
+		{
+			return visibleCubes;
+		}
+
+
+	/**
+	 * Stores the box of the bounding cube, which contains every other cube.
+	 *
+	 * @param bounds
+	 *            The array in which the minimum x, y and z coordinates
+	 *            followed by the maximum x, y and z coordinates are stored
+	 * @param offset
+	 *            The index at which the minimum x coordinate is stored
+	 */
+	@Override
+	public void getWorldBounds(float[ ] bounds, int offset)
+		{
+			final BoundingBox3D box = boundingCube.getAbsoluteBoundingBox();
+			bounds[offset] = box.getMinX();
+			bounds[offset + 1] = box.getMinY();
+			bounds[offset + 2] = box.getMinZ();
+			bounds[offset + 3] = box.getMaxX();
+			bounds[offset + 4] = box.getMaxY();
+			bounds[offset + 5] = box.getMaxZ();
+		}
+
+
 	/**
 	 * Checks if a point is within the bounds of the scene
 	 *
@@ -255,6 +869,115 @@ public class World extends ComplexGraphicObject3D <Cube> {
 		}
 
 
+	/**
+	 * Finds the nearest cube under a point of the screen, as seen during the
+	 * last draw. The point is turned into a ray from the near plane to the far
+	 * plane of the view.
+	 *
+	 * @param screenX
+	 *            The x coordinate of the point on the screen, in pixels
+	 * @param screenY
+	 *            The y coordinate of the point on the screen, in pixels
+	 * @return The nearest cube under the point, with its distance from the
+	 *         near plane in world units, or null if there is none.
+	 */
+	public RayHit <Cube> pick(float screenX, float screenY)
+		{
+			inverseViewProjection.set(viewProjection);
+			if (!viewProjectionKnown || !inverseViewProjection.invert()) { return null; }
+
+			// Processing's y axis points down the screen
+			final float x = ((2 * screenX) / applet.width) - 1;
+			final float y = 1 - ((2 * screenY) / applet.height);
+			final float[ ] near = unproject(x, y, -1), far = unproject(x, y, 1);
+
+			final float dx = far[0] - near[0], dy = far[1] - near[1], dz = far[2] - near[2];
+			final float length = (float)Math.sqrt((dx * dx) + (dy * dy) + (dz * dz));
+			if (length == 0) { return null; }
+			return raycast(near[0], near[1], near[2], dx / length, dy / length, dz / length, length);
+		}
+
+
+	/**
+	 * Sets whether the cubes are drawn in a batch, with a couple of draw calls
+	 * for all of them, or one at a time.
+	 *
+	 * @param batchRendering
+	 *            True to draw the cubes in a batch
+	 */
+	public void setBatchRendering(boolean batchRendering)
+		{
+			this.batchRendering = batchRendering;
+		}
+
+
+	/**
+	 * Sets the broad phase used to find the pairs of cubes that might
+	 * collide.
+	 *
+	 * @param broadPhase
+	 *            The new broad phase
+	 */
+	public void setBroadPhase(BroadPhase broadPhase)
+		{
+			if (broadPhase == null) { throw new NullPointerException("The broad phase cannot be null"); }
+			this.broadPhase = broadPhase;
+		}
+
+
+	/**
+	 * Sets whether collisions are detected along the motion of the cubes
+	 * during a step or only at their poses. Without it, cubes that move more
+	 * than their size in a step can pass through each other.
+	 *
+	 * @param continuousCollisionDetection
+	 *            True to sweep the cubes along their velocities
+	 */
+	public void setContinuousCollisionDetection(boolean continuousCollisionDetection)
+		{
+			this.continuousCollisionDetection = continuousCollisionDetection;
+		}
+
+
+	/**
+	 * Gives the face texture to every cube in the world if its version is
+	 * newer than the one the cubes already have. Nothing is done if the
+	 * version has not changed.
+	 *
+	 * @param faceTexture
+	 *            The face texture shared by the cubes
+	 * @param version
+	 *            The version of the face texture
+	 */
+	public void setFaceTexture(PImage faceTexture, long version)
+		{
+			if (version == textureVersion) { return; }
+
+			textureVersion = version;
+			textureUploads++;
+			for (final Cube cube : cubesInWorld)
+				{
+					if (cube.setFaceTexture(faceTexture, version))
+						{
+							textureInvalidations++;
+						}
+				}
+		}
+
+
+	/**
+	 * Sets whether the cubes outside of the view of the camera are skipped
+	 * when drawing.
+	 *
+	 * @param frustumCulling
+	 *            True to only draw the cubes inside the view
+	 */
+	public void setFrustumCulling(boolean frustumCulling)
+		{
+			this.frustumCulling = frustumCulling;
+		}
+
+
 	/**
 	 * @throws NotImplementedException
 	 *             This method has not been implemented.
@@ -322,13 +1045,55 @@ public class World extends ComplexGraphicObject3D <Cube> {
 
 
 	/**
-	 * Updates the world.
+	 * Converts a point in normalized device coordinates to world coordinates
+	 * with the inverse of the view projection.
+	 *
+	 * @param x
+	 *            The x coordinate, from -1 on the left to 1 on the right
+	 * @param y
+	 *            The y coordinate, from -1 at the bottom to 1 at the top
+	 * @param z
+	 *            The z coordinate, from -1 on the near plane to 1 on the far
+	 *            plane
+	 * @return The x, y and z coordinates of the point in world coordinates.
+	 */
+	private float[ ] unproject(float x, float y, float z)
+		{
+			final PMatrix3D m = inverseViewProjection;
+			final float w = (m.m30 * x) + (m.m31 * y) + (m.m32 * z) + m.m33;
+			return new float[ ] { ((m.m00 * x) + (m.m01 * y) + (m.m02 * z) + m.m03) / w,
+			        ((m.m10 * x) + (m.m11 * y) + (m.m12 * z) + m.m13) / w,
+			        ((m.m20 * x) + (m.m21 * y) + (m.m22 * z) + m.m23) / w };
+		}
+
+
+	/**
+	 * Updates the world by a single simulation step. When the cubes share a
+	 * body store they are all moved in a single pass over it, and the
+	 * hierarchy is marked out of date as the update of the sub-parts would.
+	 * Setting a parallel threshold splits every pass between threads without
+	 * changing the result.
 	 */
 	@Override
 	public void update( )
 		{
 			checkForCubeCollisions();
 			checkForCollisionsWithBoundingCube();
-			super.update();
+			if (bodies != null)
+				{
+					ParallelRange.apply(0, bodies.size(), getParallelThreshold(), new ParallelRange.Operation() {
+
+						@Override
+						public void apply(int start, int end)
+							{
+								bodies.integrate(start, end);
+							}
+					});
+					invalidateHierarchy();
+				}
+			else
+				{
+					super.update();
+				}
 		}
 }
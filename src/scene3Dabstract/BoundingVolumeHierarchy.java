@@ -0,0 +1,884 @@
+package scene3Dabstract;
+
+
+import java.util.Arrays;
+import java.util.Collection;
+
+
+/**
+ * A tree of axis-aligned boxes over a set of graphic objects, so that the
+ * objects near a point, a box or a ray can be found without testing every one
+ * of them. The tree is built by splitting the objects at the median of the
+ * longest axis until at most a few are left in each leaf. When the objects
+ * move, the boxes of the nodes are refitted without changing the tree, which
+ * is rebuilt once refitting has made it much looser than when it was built.
+ *
+ * The nodes are stored in flat arrays and queries do not allocate, so a
+ * hierarchy must not be queried from several threads at once.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class BoundingVolumeHierarchy <E extends GraphicObject3D> {
+
+	/**
+	 * A volume the objects of the hierarchy can be searched in
+	 */
+	public interface Region {
+
+		/**
+		 * Returned when a box is partly inside the region
+		 */
+		int	INTERSECTS	= 1;
+
+		/**
+		 * Returned when a box is entirely inside the region
+		 */
+		int	INSIDE		= 2;
+
+		/**
+		 * Returned when a box is entirely outside the region
+		 */
+		int	OUTSIDE		= 0;
+
+
+		/**
+		 * Classifies an axis-aligned box against the region. A box may be
+		 * reported as intersecting when it is not, but never as outside when
+		 * it is not.
+		 *
+		 * @param minX
+		 *            The minimum x coordinate of the box
+		 * @param minY
+		 *            The minimum y coordinate of the box
+		 * @param minZ
+		 *            The minimum z coordinate of the box
+		 * @param maxX
+		 *            The maximum x coordinate of the box
+		 * @param maxY
+		 *            The maximum y coordinate of the box
+		 * @param maxZ
+		 *            The maximum z coordinate of the box
+		 * @return OUTSIDE, INTERSECTS or INSIDE
+		 */
+		int classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
+	}
+
+
+	/**
+	 * Receives the objects found by a query
+	 */
+	public interface Visitor <E> {
+
+		/**
+		 * Called for each object found by a query.
+		 *
+		 * @param index
+		 *            The index of the object in the collection the hierarchy
+		 *            was built from
+		 * @param object
+		 *            The object
+		 * @return True to continue the query, false to stop it.
+		 */
+		boolean visit(int index, E object);
+	}
+
+
+	/**
+	 * The largest number of objects in a leaf
+	 */
+	private static final int	LEAF_SIZE		= 4;
+
+	/**
+	 * How much looser than when it was built the tree may become before it is
+	 * rebuilt, as a ratio of the total surface area of the nodes
+	 */
+	private static final float	REBUILD_RATIO	= 2f;
+
+
+	/**
+	 * Computes the surface area of a box, used to measure how tight the tree
+	 * is.
+	 *
+	 * @param bounds
+	 *            The boxes
+	 * @param offset
+	 *            The index of the minimum x coordinate of the box
+	 * @return The surface area of the box.
+	 */
+	private static float surfaceArea(float[ ] bounds, int offset)
+		{
+			final float dx = bounds[offset + 3] - bounds[offset];
+			final float dy = bounds[offset + 4] - bounds[offset + 1];
+			final float dz = bounds[offset + 5] - bounds[offset + 2];
+			return 2 * ((dx * dy) + (dy * dz) + (dz * dx));
+		}
+
+
+	/**
+	 * The total surface area of the nodes right after the tree was built
+	 */
+	private float				builtCost;
+
+	/**
+	 * The index of the first child of each internal node, the second being
+	 * right after it
+	 */
+	private int[ ]				child			= new int[0];
+
+	/**
+	 * The number of objects in each leaf, or 0 for internal nodes
+	 */
+	private int[ ]				count			= new int[0];
+
+	/**
+	 * The index in items of the first object of each leaf
+	 */
+	private int[ ]				first			= new int[0];
+
+	/**
+	 * The indices of the objects, ordered so that the objects of each leaf are
+	 * contiguous
+	 */
+	private int[ ]				items			= new int[0];
+
+	/**
+	 * The minimum and maximum coordinates of the box of each node
+	 */
+	private float[ ]			nodeBounds		= new float[0];
+
+	/**
+	 * The number of nodes in the tree
+	 */
+	private int					nodeCount		= 0;
+
+	/**
+	 * The minimum and maximum coordinates of the box of each object
+	 */
+	private float[ ]			objectBounds	= new float[0];
+
+	/**
+	 * The objects, in the order of the collection the tree was built from
+	 */
+	private GraphicObject3D[ ]	objects			= new GraphicObject3D[0];
+
+	/**
+	 * The box searched by the box and point queries
+	 */
+	private final float[ ]		queryBox		= new float[6];
+
+	/**
+	 * The region used by the box and point queries
+	 */
+	private final Region		queryRegion		= new Region() {
+
+													@Override
+													public int classify(float minX, float minY, float minZ,
+													        float maxX, float maxY, float maxZ)
+														{
+															if ((minX > queryBox[3]) || (maxX < queryBox[0])
+															        || (minY > queryBox[4]) || (maxY < queryBox[1])
+															        || (minZ > queryBox[5]) || (maxZ < queryBox[2])) { return OUTSIDE; }
+															return INTERSECTS;
+														}
+												};
+
+	/**
+	 * The number of times the tree was built
+	 */
+	private int					rebuildCount	= 0;
+
+	/**
+	 * The number of objects
+	 */
+	private int					size			= 0;
+
+	/**
+	 * The nodes left to visit during a query
+	 */
+	private int[ ]				stack			= new int[64];
+
+
+	/**
+	 * Builds the tree over a collection of objects, which must all have world
+	 * bounds.
+	 *
+	 * @param collection
+	 *            The objects
+	 */
+	public void build(Collection <? extends E> collection)
+		{
+			size = collection.size();
+			objects = collection.toArray(objects.length >= size ? objects : new GraphicObject3D[size]);
+			final int nodes = Math.max((2 * size) - 1, 1);
+			if ((count.length < nodes) || (items.length < size))
+				{
+					objectBounds = new float[size * 6];
+					items = new int[size];
+					child = new int[nodes];
+					count = new int[nodes];
+					first = new int[nodes];
+					nodeBounds = new float[nodes * 6];
+				}
+
+			for (int i = 0; i < size; i++)
+				{
+					objects[i].getWorldBounds(objectBounds, i * 6);
+				}
+			buildTree();
+		}
+
+
+	/**
+	 * Builds the tree over the objects, whose bounds were just read.
+	 */
+	private void buildTree( )
+		{
+			for (int i = 0; i < size; i++)
+				{
+					items[i] = i;
+				}
+
+			// Nodes are numbered in the order they are created, so that the
+			// children of a node always come after it
+			nodeCount = 1;
+			int top = 0;
+			stack[top++] = 0;
+			stack[top++] = 0;
+			stack[top++] = size;
+			while (top > 0)
+				{
+					final int end = stack[--top], start = stack[--top], node = stack[--top];
+					if ((end - start) <= LEAF_SIZE)
+						{
+							first[node] = start;
+							count[node] = end - start;
+							continue;
+						}
+
+					final int axis = longestCentroidAxis(start, end);
+					final int middle = (start + end) >>> 1;
+					select(start, end, middle, axis);
+
+					final int left = nodeCount;
+					nodeCount += 2;
+					child[node] = left;
+					count[node] = 0;
+
+					if ((top + 6) > stack.length)
+						{
+							stack = Arrays.copyOf(stack, stack.length * 2);
+						}
+					stack[top++] = left;
+					stack[top++] = start;
+					stack[top++] = middle;
+					stack[top++] = left + 1;
+					stack[top++] = middle;
+					stack[top++] = end;
+				}
+
+			builtCost = fitNodes();
+			rebuildCount++;
+		}
+
+
+	/**
+	 * Returns the center of an object along an axis, doubled.
+	 *
+	 * @param object
+	 *            The index of the object
+	 * @param axis
+	 *            0, 1 or 2 for the x, y or z axis
+	 * @return The sum of the minimum and maximum coordinates of the box of the
+	 *         object along the axis.
+	 */
+	private float centroid(int object, int axis)
+		{
+			final int b = (object * 6) + axis;
+			return objectBounds[b] + objectBounds[b + 3];
+		}
+
+
+	/**
+	 * Sets the box of every node to the union of the boxes below it, starting
+	 * from the leaves.
+	 *
+	 * @return The total surface area of the nodes.
+	 */
+	private float fitNodes( )
+		{
+			float cost = 0;
+			for (int node = nodeCount - 1; node >= 0; node--)
+				{
+					final int n = node * 6;
+					if (count[node] > 0)
+						{
+							final int start = first[node], end = start + count[node];
+							System.arraycopy(objectBounds, items[start] * 6, nodeBounds, n, 6);
+							for (int k = start + 1; k < end; k++)
+								{
+									union(n, objectBounds, items[k] * 6);
+								}
+						}
+					else
+						if (size == 0)
+							{
+								Arrays.fill(nodeBounds, n, n + 6, 0);
+							}
+						else
+							{
+								System.arraycopy(nodeBounds, child[node] * 6, nodeBounds, n, 6);
+								union(n, nodeBounds, (child[node] + 1) * 6);
+							}
+					cost += surfaceArea(nodeBounds, n);
+				}
+			return cost;
+		}
+
+
+	/**
+	 * Stores the box containing every object in the hierarchy.
+	 *
+	 * @param bounds
+	 *            The array in which the minimum x, y and z coordinates
+	 *            followed by the maximum x, y and z coordinates are stored
+	 * @param offset
+	 *            The index at which the minimum x coordinate is stored
+	 */
+	public void getBounds(float[ ] bounds, int offset)
+		{
+			System.arraycopy(nodeBounds, 0, bounds, offset, 6);
+		}
+
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return The number of internal nodes and leaves.
+	 */
+	public int getNodeCount( )
+		{
+			return nodeCount;
+		}
+
+
+	/**
+	 * Returns the number of times the tree was built, either explicitly or
+	 * because refitting made it too loose.
+	 *
+	 * @return The number of builds so far.
+	 */
+	public int getRebuildCount( )
+		{
+			return rebuildCount;
+		}
+
+
+	/**
+	 * Finds the axis along which the centers of a range of objects are the
+	 * most spread out.
+	 *
+	 * @param start
+	 *            The index in items of the first object
+	 * @param end
+	 *            The index in items after the last object
+	 * @return 0, 1 or 2 for the x, y or z axis.
+	 */
+	private int longestCentroidAxis(int start, int end)
+		{
+			float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+			float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+			for (int k = start; k < end; k++)
+				{
+					final float x = centroid(items[k], 0), y = centroid(items[k], 1), z = centroid(items[k], 2);
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+					minZ = Math.min(minZ, z);
+					maxZ = Math.max(maxZ, z);
+				}
+
+			final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+			if ((dx >= dy) && (dx >= dz)) { return 0; }
+			return dy >= dz ? 1 : 2;
+		}
+
+
+	/**
+	 * Visits the objects whose boxes are not outside of a region. When the
+	 * box of a node is entirely inside the region, all of the objects below it
+	 * are visited without testing them.
+	 *
+	 * @param region
+	 *            The region to search
+	 * @param visitor
+	 *            Receives the objects that were found
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean query(Region region, Visitor <? super E> visitor)
+		{
+			if (size == 0) { return true; }
+
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0)
+				{
+					final int node = stack[--top];
+					final int n = node * 6;
+					final int result = region.classify(nodeBounds[n], nodeBounds[n + 1], nodeBounds[n + 2],
+					        nodeBounds[n + 3], nodeBounds[n + 4], nodeBounds[n + 5]);
+					if (result == Region.OUTSIDE)
+						{
+							continue;
+						}
+
+					if (result == Region.INSIDE)
+						{
+							if (!visitAll(node, visitor)) { return false; }
+							continue;
+						}
+
+					if (count[node] == 0)
+						{
+							if ((top + 2) > stack.length)
+								{
+									stack = Arrays.copyOf(stack, stack.length * 2);
+								}
+							stack[top++] = child[node] + 1;
+							stack[top++] = child[node];
+							continue;
+						}
+
+					for (int k = first[node], end = k + count[node]; k < end; k++)
+						{
+							final int b = items[k] * 6;
+							if ((region.classify(objectBounds[b], objectBounds[b + 1], objectBounds[b + 2],
+							        objectBounds[b + 3], objectBounds[b + 4], objectBounds[b + 5]) != Region.OUTSIDE)
+							        && !visitor.visit(items[k], (E)objects[items[k]])) { return false; }
+						}
+				}
+			return true;
+		}
+
+
+	/**
+	 * Visits the objects whose boxes overlap a box.
+	 *
+	 * @param minX
+	 *            The minimum x coordinate of the box
+	 * @param minY
+	 *            The minimum y coordinate of the box
+	 * @param minZ
+	 *            The minimum z coordinate of the box
+	 * @param maxX
+	 *            The maximum x coordinate of the box
+	 * @param maxY
+	 *            The maximum y coordinate of the box
+	 * @param maxZ
+	 *            The maximum z coordinate of the box
+	 * @param visitor
+	 *            Receives the objects that were found
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	public boolean queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+	        Visitor <? super E> visitor)
+		{
+			queryBox[0] = minX;
+			queryBox[1] = minY;
+			queryBox[2] = minZ;
+			queryBox[3] = maxX;
+			queryBox[4] = maxY;
+			queryBox[5] = maxZ;
+			return query(queryRegion, visitor);
+		}
+
+
+	/**
+	 * Visits the objects whose boxes contain a point.
+	 *
+	 * @param x
+	 *            The x coordinate of the point (in world coordinates)
+	 * @param y
+	 *            The y coordinate of the point (in world coordinates)
+	 * @param z
+	 *            The z coordinate of the point (in world coordinates)
+	 * @param visitor
+	 *            Receives the objects that were found
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	public boolean queryPoint(float x, float y, float z, Visitor <? super E> visitor)
+		{
+			return queryBox(x, y, z, x, y, z, visitor);
+		}
+
+
+	/**
+	 * Visits the objects whose boxes are crossed by a ray, in no particular
+	 * order.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @param maxDistance
+	 *            The length of the ray, in multiples of its direction
+	 * @param visitor
+	 *            Receives the objects that were found
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean raycast(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ, float maxDistance, Visitor <? super E> visitor)
+		{
+			if (size == 0) { return true; }
+
+			final float inverseX = 1 / directionX, inverseY = 1 / directionY, inverseZ = 1 / directionZ;
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0)
+				{
+					final int node = stack[--top];
+					if (rayEntry(nodeBounds, node * 6, originX, originY, originZ, inverseX, inverseY, inverseZ,
+					        maxDistance) < 0)
+						{
+							continue;
+						}
+
+					if (count[node] == 0)
+						{
+							if ((top + 2) > stack.length)
+								{
+									stack = Arrays.copyOf(stack, stack.length * 2);
+								}
+							stack[top++] = child[node] + 1;
+							stack[top++] = child[node];
+							continue;
+						}
+
+					for (int k = first[node], end = k + count[node]; k < end; k++)
+						{
+							if ((rayEntry(objectBounds, items[k] * 6, originX, originY, originZ, inverseX, inverseY,
+							        inverseZ, maxDistance) >= 0)
+							        && !visitor.visit(items[k], (E)objects[items[k]])) { return false; }
+						}
+				}
+			return true;
+		}
+
+
+	/**
+	 * Finds the nearest object hit by a ray. The children of each node are
+	 * visited nearest first, and the nodes the ray enters beyond the nearest
+	 * hit found so far are skipped.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @param maxDistance
+	 *            The length of the ray, in multiples of its direction
+	 * @return The nearest hit, or null if the ray misses every object.
+	 */
+	@SuppressWarnings("unchecked")
+	public RayHit <E> raycastNearest(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ, float maxDistance)
+		{
+			if (size == 0) { return null; }
+
+			final float inverseX = 1 / directionX, inverseY = 1 / directionY, inverseZ = 1 / directionZ;
+			float nearest = maxDistance;
+			int hit = -1;
+
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0)
+				{
+					final int node = stack[--top];
+					if (rayEntry(nodeBounds, node * 6, originX, originY, originZ, inverseX, inverseY, inverseZ,
+					        nearest) < 0)
+						{
+							continue;
+						}
+
+					if (count[node] == 0)
+						{
+							final int left = child[node], right = left + 1;
+							final float leftEntry = rayEntry(nodeBounds, left * 6, originX, originY, originZ, inverseX,
+							        inverseY, inverseZ, nearest);
+							final float rightEntry = rayEntry(nodeBounds, right * 6, originX, originY, originZ, inverseX,
+							        inverseY, inverseZ, nearest);
+							if ((top + 2) > stack.length)
+								{
+									stack = Arrays.copyOf(stack, stack.length * 2);
+								}
+
+							// When the ray enters both children, the nearer one is
+							// pushed last so that it is visited first
+							if ((leftEntry >= 0) && (rightEntry >= 0))
+								{
+									stack[top++] = leftEntry <= rightEntry ? right : left;
+									stack[top++] = leftEntry <= rightEntry ? left : right;
+								}
+							else
+								if (leftEntry >= 0)
+									{
+										stack[top++] = left;
+									}
+								else
+									if (rightEntry >= 0)
+										{
+											stack[top++] = right;
+										}
+							continue;
+						}
+
+					for (int k = first[node], end = k + count[node]; k < end; k++)
+						{
+							final int object = items[k];
+							if (rayEntry(objectBounds, object * 6, originX, originY, originZ, inverseX, inverseY, inverseZ,
+							        nearest) < 0)
+								{
+									continue;
+								}
+
+							final float distance = objects[object].intersectRay(originX, originY, originZ, directionX,
+							        directionY, directionZ);
+							// Ties keep the first object found, and misses are
+							// never kept
+							if ((distance < nearest)
+							        || ((distance == nearest) && (hit < 0) && (distance != Float.POSITIVE_INFINITY)))
+								{
+									nearest = distance;
+									hit = object;
+								}
+						}
+				}
+			return hit < 0 ? null : new RayHit <E>((E)objects[hit], nearest);
+		}
+
+
+	/**
+	 * Finds where a ray enters a box with the slab test, intersecting the
+	 * intervals of the ray between the two planes of each axis.
+	 *
+	 * @param bounds
+	 *            The boxes
+	 * @param offset
+	 *            The index of the minimum x coordinate of the box
+	 * @param originX
+	 *            The x coordinate of the origin of the ray
+	 * @param originY
+	 *            The y coordinate of the origin of the ray
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray
+	 * @param inverseX
+	 *            The inverse of the x component of the direction of the ray
+	 * @param inverseY
+	 *            The inverse of the y component of the direction of the ray
+	 * @param inverseZ
+	 *            The inverse of the z component of the direction of the ray
+	 * @param maxDistance
+	 *            The length of the ray, in multiples of its direction
+	 * @return The distance along the ray at which it enters the box, 0 if the
+	 *         origin is inside, or -1 if the ray misses the box or only
+	 *         reaches it beyond the maximum distance.
+	 */
+	private float rayEntry(float[ ] bounds, int offset, float originX, float originY, float originZ, float inverseX,
+	        float inverseY, float inverseZ, float maxDistance)
+		{
+			float near = 0, far = maxDistance;
+
+			float t1 = (bounds[offset] - originX) * inverseX, t2 = (bounds[offset + 3] - originX) * inverseX;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+
+			t1 = (bounds[offset + 1] - originY) * inverseY;
+			t2 = (bounds[offset + 4] - originY) * inverseY;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+
+			t1 = (bounds[offset + 2] - originZ) * inverseZ;
+			t2 = (bounds[offset + 5] - originZ) * inverseZ;
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+
+			return near <= far ? near : -1;
+		}
+
+
+	/**
+	 * Reads the bounds of the objects again and refits the boxes of the nodes
+	 * without changing the tree. The tree is rebuilt instead if refitting made
+	 * it much looser than when it was built.
+	 */
+	public void refit( )
+		{
+			for (int i = 0; i < size; i++)
+				{
+					objects[i].getWorldBounds(objectBounds, i * 6);
+				}
+
+			if (fitNodes() > (REBUILD_RATIO * builtCost))
+				{
+					buildTree();
+				}
+		}
+
+
+	/**
+	 * Moves the object that would be at some index in items if the range was
+	 * sorted along an axis to that index, with smaller objects before it and
+	 * larger ones after it.
+	 *
+	 * @param start
+	 *            The index in items of the first object
+	 * @param end
+	 *            The index in items after the last object
+	 * @param nth
+	 *            The index to sort
+	 * @param axis
+	 *            0, 1 or 2 to compare the centers along the x, y or z axis
+	 */
+	private void select(int start, int end, int nth, int axis)
+		{
+			int low = start, high = end - 1;
+			while (low < high)
+				{
+					final float pivot = centroid(items[(low + high) >>> 1], axis);
+					int i = low, j = high;
+					while (i <= j)
+						{
+							while (centroid(items[i], axis) < pivot)
+								{
+									i++;
+								}
+							while (centroid(items[j], axis) > pivot)
+								{
+									j--;
+								}
+							if (i <= j)
+								{
+									final int swap = items[i];
+									items[i++] = items[j];
+									items[j--] = swap;
+								}
+						}
+
+					if (nth <= j)
+						{
+							high = j;
+						}
+					else
+						if (nth >= i)
+							{
+								low = i;
+							}
+						else
+							{
+								return;
+							}
+				}
+		}
+
+
+	/**
+	 * Returns the number of objects in the hierarchy.
+	 *
+	 * @return The number of objects the tree was built over.
+	 */
+	public int size( )
+		{
+			return size;
+		}
+
+
+	/**
+	 * Grows the box of a node to contain another box.
+	 *
+	 * @param node
+	 *            The index of the minimum x coordinate of the node
+	 * @param bounds
+	 *            The boxes
+	 * @param offset
+	 *            The index of the minimum x coordinate of the other box
+	 */
+	private void union(int node, float[ ] bounds, int offset)
+		{
+			for (int k = 0; k < 3; k++)
+				{
+					nodeBounds[node + k] = Math.min(nodeBounds[node + k], bounds[offset + k]);
+					nodeBounds[node + k + 3] = Math.max(nodeBounds[node + k + 3], bounds[offset + k + 3]);
+				}
+		}
+
+
+	/**
+	 * Updates the tree after the objects moved. It is rebuilt if objects were
+	 * added or removed since it was last built, and refitted otherwise.
+	 *
+	 * @param collection
+	 *            The objects, in the same order as when the tree was built
+	 */
+	public void update(Collection <? extends E> collection)
+		{
+			if ((collection.size() != size) || (nodeCount == 0))
+				{
+					build(collection);
+				}
+			else
+				{
+					refit();
+				}
+		}
+
+
+	/**
+	 * Visits every object below a node.
+	 *
+	 * @param root
+	 *            The node
+	 * @param visitor
+	 *            Receives the objects
+	 * @return False if the visitor stopped, true otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean visitAll(int root, Visitor <? super E> visitor)
+		{
+			// The objects below a node are contiguous in items, from the first
+			// object of its leftmost leaf to the last of its rightmost leaf
+			int leftmost = root, rightmost = root;
+			while (count[leftmost] == 0)
+				{
+					leftmost = child[leftmost];
+				}
+			while (count[rightmost] == 0)
+				{
+					rightmost = child[rightmost] + 1;
+				}
+
+			for (int k = first[leftmost], end = first[rightmost] + count[rightmost]; k < end; k++)
+				{
+					if (!visitor.visit(items[k], (E)objects[items[k]])) { return false; }
+				}
+			return true;
+		}
+}
@@ -2,11 +2,17 @@
 package scene3Dabstract;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 
 /**
- * A graphic object that is composed of multiple graphic objects.
+ * A graphic object that is composed of multiple graphic objects. It can keep
+ * a BoundingVolumeHierarchy over its sub-parts so that they can be searched
+ * without testing every one of them. The hierarchy is refitted the first time
+ * it is used after an update, and rebuilt when sub-parts were added.
  *
  * @author Robert Tatoian
  * @author Warren Godone-Maresca
@@ -14,10 +20,33 @@ import java.util.Collection;
  */
 public abstract class ComplexGraphicObject3D <E extends GraphicObject3D> extends GraphicObject3D {
 
+	/**
+	 * The hierarchy over the sub-parts, or null if it is disabled
+	 */
+	private BoundingVolumeHierarchy <E>	hierarchy			= null;
+
+	/**
+	 * Whether the sub-parts may have moved since the hierarchy was last
+	 * refitted
+	 */
+	private boolean						hierarchyStale		= true;
+
 	/**
 	 * The collection of sub-parts
 	 */
-	private final Collection <E> objects;
+	private final Collection <E>		objects;
+
+	/**
+	 * The largest number of sub-parts updated on a single thread, or 0 to
+	 * update them all serially
+	 */
+	private int							parallelThreshold	= 0;
+
+	/**
+	 * The sub-parts copied into an array so that they can be split between
+	 * threads, reused from one update to the next
+	 */
+	private GraphicObject3D[ ]			snapshot			= new GraphicObject3D[0];
 
 
 	/**
@@ -41,6 +70,7 @@ public abstract class ComplexGraphicObject3D <E extends GraphicObject3D> extends
 	public void addElement(E obj)
 		{
 			objects.add(obj);
+			invalidateHierarchy();
 		}
 
 
@@ -57,6 +87,48 @@ public abstract class ComplexGraphicObject3D <E extends GraphicObject3D> extends
 		}
 
 
+	/**
+	 * Finds a sub-part containing a point, using the hierarchy if it is
+	 * enabled to only test the sub-parts whose bounds contain the point.
+	 *
+	 * @param x
+	 *            The x coordinate of the point (in world coordinates)
+	 * @param y
+	 *            The y coordinate of the point (in world coordinates)
+	 * @param z
+	 *            The z coordinate of the point (in world coordinates)
+	 * @return A sub-part containing the point, or null if there is none.
+	 */
+	public E findElementAt(final float x, final float y, final float z)
+		{
+			final BoundingVolumeHierarchy <E> tree = getHierarchy();
+			if (tree == null)
+				{
+					for (final E object : objects)
+						{
+							if (object.isInside(x, y, z)) { return object; }
+						}
+					return null;
+				}
+
+			final List <E> found = new ArrayList <E>(1);
+			tree.queryPoint(x, y, z, new BoundingVolumeHierarchy.Visitor <E>() {
+
+				@Override
+				public boolean visit(int index, E object)
+					{
+						if (object.isInside(x, y, z))
+							{
+								found.add(object);
+								return false;
+							}
+						return true;
+					}
+			});
+			return found.isEmpty() ? null : found.get(0);
+		}
+
+
 	/**
 	 * Accessor for the underlying collection of sub-parts
 	 *
@@ -69,14 +141,218 @@ public abstract class ComplexGraphicObject3D <E extends GraphicObject3D> extends
 
 
 	/**
-	 * Updates each the internal state. By default it will update each sub-part.
+	 * Returns the hierarchy over the sub-parts, refitting it first if they
+	 * were updated since it was last used.
+	 *
+	 * @return The hierarchy, or null if it is disabled.
+	 */
+	public BoundingVolumeHierarchy <E> getHierarchy( )
+		{
+			if ((hierarchy != null) && hierarchyStale)
+				{
+					hierarchy.update(objects);
+					hierarchyStale = false;
+				}
+			return hierarchy;
+		}
+
+
+	/**
+	 * Returns the largest number of sub-parts updated on a single thread.
+	 *
+	 * @return The parallel threshold, or 0 if the sub-parts are updated
+	 *         serially
+	 */
+	public int getParallelThreshold( )
+		{
+			return parallelThreshold;
+		}
+
+
+	/**
+	 * Stores the box containing all of the sub-parts, which must all have
+	 * bounds.
+	 *
+	 * @param bounds
+	 *            The array in which the minimum x, y and z coordinates
+	 *            followed by the maximum x, y and z coordinates are stored
+	 * @param offset
+	 *            The index at which the minimum x coordinate is stored
+	 */
+	@Override
+	public void getWorldBounds(float[ ] bounds, int offset)
+		{
+			final BoundingVolumeHierarchy <E> tree = getHierarchy();
+			if (tree != null)
+				{
+					tree.getBounds(bounds, offset);
+					return;
+				}
+
+			final float[ ] part = new float[6];
+			Arrays.fill(bounds, offset, offset + 3, Float.POSITIVE_INFINITY);
+			Arrays.fill(bounds, offset + 3, offset + 6, Float.NEGATIVE_INFINITY);
+			for (final E object : objects)
+				{
+					object.getWorldBounds(part, 0);
+					for (int k = 0; k < 3; k++)
+						{
+							bounds[offset + k] = Math.min(bounds[offset + k], part[k]);
+							bounds[offset + k + 3] = Math.max(bounds[offset + k + 3], part[k + 3]);
+						}
+				}
+		}
+
+
+	/**
+	 * Finds where a ray hits the nearest sub-part.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originY
+	 *            The y coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it hits a sub-part, or infinity if it misses all of them.
+	 */
+	@Override
+	public float intersectRay(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ)
+		{
+			final RayHit <E> hit = raycast(originX, originY, originZ, directionX, directionY, directionZ,
+			        Float.POSITIVE_INFINITY);
+			return hit == null ? Float.POSITIVE_INFINITY : hit.getDistance();
+		}
+
+
+	/**
+	 * Marks the hierarchy as out of date, so that it is refitted the next time
+	 * it is used. Subclasses must call it when they move sub-parts outside of
+	 * update.
+	 */
+	protected void invalidateHierarchy( )
+		{
+			hierarchyStale = true;
+		}
+
+
+	/**
+	 * Finds the nearest sub-part hit by a ray. When the hierarchy is enabled,
+	 * only the sub-parts whose bounds are crossed by the ray before the
+	 * nearest hit are tested.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originY
+	 *            The y coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @param maxDistance
+	 *            The length of the ray, in multiples of its direction
+	 * @return The nearest hit, or null if the ray misses every sub-part.
+	 */
+	public RayHit <E> raycast(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ, float maxDistance)
+		{
+			final BoundingVolumeHierarchy <E> tree = getHierarchy();
+			if (tree != null) { return tree.raycastNearest(originX, originY, originZ, directionX, directionY, directionZ,
+			        maxDistance); }
+
+			E nearest = null;
+			float distance = maxDistance;
+			for (final E object : objects)
+				{
+					final float d = object.intersectRay(originX, originY, originZ, directionX, directionY, directionZ);
+					// Ties keep the first object found, and misses are never kept
+					if ((d < distance) || ((d == distance) && (nearest == null) && (d != Float.POSITIVE_INFINITY)))
+						{
+							distance = d;
+							nearest = object;
+						}
+				}
+			return nearest == null ? null : new RayHit <E>(nearest, distance);
+		}
+
+
+	/**
+	 * Sets whether a hierarchy is kept over the sub-parts, which must then
+	 * all have bounds.
+	 *
+	 * @param enabled
+	 *            True to keep a hierarchy
+	 */
+	public void setHierarchyEnabled(boolean enabled)
+		{
+			if (enabled == (hierarchy != null)) { return; }
+			hierarchy = enabled ? new BoundingVolumeHierarchy <E>() : null;
+			hierarchyStale = true;
+		}
+
+
+	/**
+	 * Sets the largest number of sub-parts updated on a single thread. When
+	 * there are more sub-parts, they are split between the threads of the
+	 * common fork/join pool. The sub-parts must then be independent of each
+	 * other when they are updated.
+	 *
+	 * @param parallelThreshold
+	 *            The parallel threshold, or 0 to update the sub-parts serially
+	 */
+	public void setParallelThreshold(int parallelThreshold)
+		{
+			if (parallelThreshold < 0) { throw new IllegalArgumentException("The threshold cannot be negative"); }
+			this.parallelThreshold = parallelThreshold;
+		}
+
+
+	/**
+	 * Updates each the internal state. By default it will update each sub-part,
+	 * in parallel if there are more than the parallel threshold.
 	 */
 	@Override
 	public void update( )
 		{
-			for (final GraphicObject3D object : objects)
+			invalidateHierarchy();
+			if ((parallelThreshold == 0) || (objects.size() <= parallelThreshold))
 				{
-					object.update();
+					for (final GraphicObject3D object : objects)
+						{
+							object.update();
+						}
+					return;
 				}
+
+			snapshot = objects.toArray(snapshot);
+			final GraphicObject3D[ ] children = snapshot;
+			ParallelRange.apply(0, objects.size(), parallelThreshold, new ParallelRange.Operation() {
+
+				@Override
+				public void apply(int start, int end)
+					{
+						for (int i = start; i < end; i++)
+							{
+								children[i].update();
+							}
+					}
+			});
 		}
 }
@@ -2,10 +2,9 @@
 package scene3Dabstract;
 
 
-import processing.core.PGraphics;
 import processing.core.PMatrix;
+import processing.core.PMatrix3D;
 import processing.core.PVector;
-import processing.opengl.PGraphics3D;
 
 
 /**
@@ -14,6 +13,8 @@ import processing.opengl.PGraphics3D;
  * here. - has a rotation and translation relative to the parent if it is not
  * null, or relative to the world coordinates otherwise - can be drawn - can be
  * updated - can determine if it contains some point given in world coordinates
+ * The transformation matrices are cached and only recomputed after the pose of
+ * the object changes, which subclasses report with invalidateTransformation.
  *
  * @author Robert Tatoian
  * @author Warren Godone-Maresca
@@ -21,6 +22,79 @@ import processing.opengl.PGraphics3D;
  */
 public abstract class GraphicObject3D {
 
+	/**
+	 * Sets a matrix to a translation followed by rotations about the x, y and
+	 * z axes, in the same order as Processing's translate, rotateX, rotateY and
+	 * rotateZ.
+	 *
+	 * @param m
+	 *            The matrix to set
+	 * @param x
+	 *            The translation along the x axis
+	 * @param y
+	 *            The translation along the y axis
+	 * @param z
+	 *            The translation along the z axis
+	 * @param rotationX
+	 *            The rotation about the x axis in radians
+	 * @param rotationY
+	 *            The rotation about the y axis in radians
+	 * @param rotationZ
+	 *            The rotation about the z axis in radians
+	 */
+	protected static void setTransformation(PMatrix3D m, float x, float y, float z, float rotationX, float rotationY,
+	        float rotationZ)
+		{
+			final float cx = (float)Math.cos(rotationX), sx = (float)Math.sin(rotationX);
+			final float cy = (float)Math.cos(rotationY), sy = (float)Math.sin(rotationY);
+			final float cz = (float)Math.cos(rotationZ), sz = (float)Math.sin(rotationZ);
+
+			m.set(cy * cz, -cy * sz, sy, x,
+			        (cx * sz) + (sx * sy * cz), (cx * cz) - (sx * sy * sz), -sx * cy, y,
+			        (sx * sz) - (cx * sy * cz), (sx * cz) + (cx * sy * sz), cx * cy, z,
+			        0, 0, 0, 1);
+		}
+
+
+	/**
+	 * The transformation from this object's reference frame to the parent's
+	 */
+	private final PMatrix3D	localMatrix				= new PMatrix3D();
+
+	/**
+	 * The pose version the local matrix was computed for, or -1 if it never
+	 * was
+	 */
+	private long			localMatrixVersion		= -1;
+
+	/**
+	 * Incremented every time the translation or rotation changes
+	 */
+	private long			poseVersion				= 0;
+
+	/**
+	 * The rotation of this object relative to the parent
+	 */
+	private final PMatrix3D	rotationMatrix			= new PMatrix3D();
+
+	/**
+	 * The pose version the rotation matrix was computed for, or -1 if it never
+	 * was
+	 */
+	private long			rotationMatrixVersion	= -1;
+
+	/**
+	 * The transformation from this object's reference frame to the world's
+	 */
+	private final PMatrix3D	worldMatrix				= new PMatrix3D();
+
+	/**
+	 * The world pose version the world matrix was computed for, or -1 if it
+	 * never was
+	 */
+	private long			worldMatrixVersion		= -1;
+
+
 	/**
 	 * Draws this object
 	 */
@@ -37,17 +111,35 @@ public abstract class GraphicObject3D {
 	public abstract GraphicObject3D getParent( );
 
 
-	public PMatrix getRotationMatrix( )
+	/**
+	 * Returns the version of the pose of this object, which changes every time
+	 * its translation or rotation changes. Subclasses whose pose can also be
+	 * changed elsewhere may add their own version, as long as the result only
+	 * increases.
+	 *
+	 * @return The number of changes to the pose so far.
+	 */
+	protected long getPoseVersion( )
+		{
+			return poseVersion;
+		}
+
+
+	/**
+	 * Returns the rotation of this object relative to the parent. The matrix
+	 * is cached and shared, so it must not be modified.
+	 *
+	 * @return A 4-dimensional matrix with no translation
+	 */
+	public PMatrix3D getRotationMatrix( )
 		{
-			// Use PGraphics to get the transformation matrix. Might induce some
-			// overhead,
-			// but it's much simpler.
-			final PGraphics g = new PGraphics3D();
-			g.rotateX(getRotationX());
-			g.rotateY(getRotationY());
-			g.rotateZ(getRotationZ());
-
-			return g.getMatrix();
+			final long version = getPoseVersion();
+			if (rotationMatrixVersion != version)
+				{
+					setTransformation(rotationMatrix, 0, 0, 0, getRotationX(), getRotationY(), getRotationZ());
+					rotationMatrixVersion = version;
+				}
+			return rotationMatrix;
 		}
 
 
@@ -80,22 +172,21 @@ public abstract class GraphicObject3D {
 
 	/**
 	 * Returns the transformation matrix from the parent's reference frame to
-	 * this object's reference frame.
+	 * this object's reference frame. The matrix is cached and shared, so it
+	 * must not be modified.
 	 *
 	 * @return A 4-dimensional matrix (that is, PMatrix3d)
 	 */
-	public PMatrix getTransformationMatrix( )
+	public PMatrix3D getTransformationMatrix( )
 		{
-			// Use PGraphics to get the transformation matrix. Might induce some
-			// overhead,
-			// but it's much simpler.
-			final PGraphics g = new PGraphics3D();
-			g.translate(getTranslationX(), getTranslationY(), getTranslationZ());
-			g.rotateX(getRotationX());
-			g.rotateY(getRotationY());
-			g.rotateZ(getRotationZ());
-
-			return g.getMatrix();
+			final long version = getPoseVersion();
+			if (localMatrixVersion != version)
+				{
+					setTransformation(localMatrix, getTranslationX(), getTranslationY(), getTranslationZ(), getRotationX(),
+					        getRotationY(), getRotationZ());
+					localMatrixVersion = version;
+				}
+			return localMatrix;
 		}
 
 
@@ -129,6 +220,101 @@ public abstract class GraphicObject3D {
 	public abstract float getTranslationZ( );
 
 
+	/**
+	 * Stores an axis-aligned box containing this object in world coordinates,
+	 * which is how it is placed in a BoundingVolumeHierarchy.
+	 *
+	 * @param bounds
+	 *            The array in which the minimum x, y and z coordinates
+	 *            followed by the maximum x, y and z coordinates are stored
+	 * @param offset
+	 *            The index at which the minimum x coordinate is stored
+	 */
+	public abstract void getWorldBounds(float[ ] bounds, int offset);
+
+
+	/**
+	 * Returns the transformation from this object's reference frame to the
+	 * world's, that is the transformations of all of the parents followed by
+	 * this object's. The matrix is cached and shared, so it must not be
+	 * modified.
+	 *
+	 * @return A 4-dimensional matrix (that is, PMatrix3d)
+	 */
+	public PMatrix3D getWorldMatrix( )
+		{
+			final long version = getWorldPoseVersion();
+			if (worldMatrixVersion != version)
+				{
+					final GraphicObject3D parent = getParent();
+					if (parent == null)
+						{
+							worldMatrix.set(getTransformationMatrix());
+						}
+					else
+						{
+							worldMatrix.set(parent.getWorldMatrix());
+							worldMatrix.apply(getTransformationMatrix());
+						}
+					worldMatrixVersion = version;
+				}
+			return worldMatrix;
+		}
+
+
+	/**
+	 * Returns the version of the pose of this object in the world. Since pose
+	 * versions only increase, the sum of the versions of this object and all
+	 * of its parents changes whenever any of them moves.
+	 *
+	 * @return The sum of the pose versions of this object and its parents.
+	 */
+	public long getWorldPoseVersion( )
+		{
+			final GraphicObject3D parent = getParent();
+			return parent == null ? getPoseVersion() : getPoseVersion() + parent.getWorldPoseVersion();
+		}
+
+
+	/**
+	 * Finds where a ray hits this object. By default the object cannot be
+	 * hit.
+	 *
+	 * @param originX
+	 *            The x coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originY
+	 *            The y coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param originZ
+	 *            The z coordinate of the origin of the ray (in world
+	 *            coordinates)
+	 * @param directionX
+	 *            The x component of the direction of the ray
+	 * @param directionY
+	 *            The y component of the direction of the ray
+	 * @param directionZ
+	 *            The z component of the direction of the ray
+	 * @return The distance along the ray, in multiples of its direction, at
+	 *         which it hits this object, or infinity if it misses.
+	 */
+	public float intersectRay(float originX, float originY, float originZ, float directionX, float directionY,
+	        float directionZ)
+		{
+			return Float.POSITIVE_INFINITY;
+		}
+
+
+	/**
+	 * Marks the cached matrices as out of date. Subclasses must call it
+	 * whenever their translation or rotation changes.
+	 */
+	protected void invalidateTransformation( )
+		{
+			poseVersion++;
+		}
+
+
 	/**
 	 * Determines if the given point (in world-coordinates) is inside this
 	 * object. Note that this method is guaranteed to be fast, but necessarily
@@ -224,6 +410,28 @@ public abstract class GraphicObject3D {
 		}
 
 
+	/**
+	 * Converts a point in this object's reference frame to the reference frame
+	 * of the parent without allocating.
+	 *
+	 * @param x
+	 *            The X coordinate
+	 * @param y
+	 *            The Y coordinate
+	 * @param z
+	 *            The Z coordinate
+	 * @param target
+	 *            The vector in which the result is stored
+	 * @return The target, holding the point in the parent's reference frame.
+	 */
+	public PVector relativeToParentCoordinates(float x, float y, float z, PVector target)
+		{
+			final PMatrix3D m = getTransformationMatrix();
+			target.set(m.multX(x, y, z), m.multY(x, y, z), m.multZ(x, y, z));
+			return target;
+		}
+
+
 	/**
 	 * Sets the rotation of the object about the x-axis (relative to the
 	 * parent's reference frame).
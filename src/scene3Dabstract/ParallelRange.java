@@ -0,0 +1,116 @@
+package scene3Dabstract;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Runs an operation over a range of indices, splitting the range in half on
+ * the common fork/join pool until the pieces are no larger than a threshold.
+ * The operation must only touch the elements of the indices it is given, so
+ * that the result does not depend on how the range was split.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class ParallelRange extends RecursiveAction {
+
+	/**
+	 * An operation over a contiguous range of indices.
+	 */
+	public interface Operation {
+
+		/**
+		 * Applies the operation to a range of indices.
+		 *
+		 * @param start
+		 *            The first index (inclusive)
+		 * @param end
+		 *            The last index (exclusive)
+		 */
+		void apply(int start, int end);
+	}
+
+
+	/**
+	 * Applies an operation to a range of indices, in parallel if the range is
+	 * larger than the threshold.
+	 *
+	 * @param start
+	 *            The first index (inclusive)
+	 * @param end
+	 *            The last index (exclusive)
+	 * @param threshold
+	 *            The largest range applied on a single thread, or 0 or less
+	 *            to always apply the operation serially
+	 * @param operation
+	 *            The operation to apply
+	 */
+	public static void apply(int start, int end, int threshold, Operation operation)
+		{
+			if ((threshold <= 0) || ((end - start) <= threshold))
+				{
+					operation.apply(start, end);
+				}
+			else
+				{
+					ForkJoinPool.commonPool().invoke(new ParallelRange(start, end, threshold, operation));
+				}
+		}
+
+
+	/**
+	 * The operation to apply
+	 */
+	private final Operation	operation;
+
+	/**
+	 * The first index (inclusive) and the last index (exclusive) of the range
+	 */
+	private final int		start, end;
+
+	/**
+	 * The largest range applied on a single thread
+	 */
+	private final int		threshold;
+
+
+	/**
+	 * Instantiates the task for a range of indices.
+	 *
+	 * @param start
+	 *            The first index (inclusive)
+	 * @param end
+	 *            The last index (exclusive)
+	 * @param threshold
+	 *            The largest range applied on a single thread, must be
+	 *            positive
+	 * @param operation
+	 *            The operation to apply
+	 */
+	private ParallelRange(int start, int end, int threshold, Operation operation)
+		{
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+			this.operation = operation;
+		}
+
+
+	@Override
+	protected void compute( )
+		{
+			if ((end - start) <= threshold)
+				{
+					operation.apply(start, end);
+				}
+			else
+				{
+					final int middle = (start + end) >>> 1;
+					invokeAll(new ParallelRange(start, middle, threshold, operation),
+					        new ParallelRange(middle, end, threshold, operation));
+				}
+		}
+}
@@ -0,0 +1,63 @@
+package scene3Dabstract;
+
+
+/**
+ * The nearest object hit by a ray, along with how far along the ray it was
+ * hit.
+ *
+ * @author Robert Tatoian
+ * @author Warren Godone-Maresca
+ * @version 1.0
+ */
+public class RayHit <E extends GraphicObject3D> {
+
+	/**
+	 * The distance along the ray at which the object was hit, in multiples of
+	 * the direction of the ray
+	 */
+	private final float	distance;
+
+	/**
+	 * The object that was hit
+	 */
+	private final E		object;
+
+
+	/**
+	 * Instantiates a hit.
+	 *
+	 * @param object
+	 *            The object that was hit
+	 * @param distance
+	 *            The distance along the ray at which the object was hit
+	 */
+	public RayHit(E object, float distance)
+		{
+			this.object = object;
+			this.distance = distance;
+		}
+
+
+	/**
+	 * Returns how far along the ray the object was hit.
+	 *
+	 * @return The distance from the origin of the ray, in multiples of its
+	 *         direction, or in world units if the direction has a length of
+	 *         1.
+	 */
+	public float getDistance( )
+		{
+			return distance;
+		}
+
+
+	/**
+	 * Returns the object that was hit.
+	 *
+	 * @return The nearest object along the ray.
+	 */
+	public E getObject( )
+		{
+			return object;
+		}
+}